@@ -0,0 +1,54 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.net.wifi.ScanResult;
+import android.os.Build;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Converts Android scan results to platform independent {@link AccessPoint}s
+ */
+final class AccessPoints {
+
+    private AccessPoints() {
+    }
+
+    /**
+     * @param scanResults scan results from the wifi manager, may be null
+     * @return the scan results as access points
+     */
+    static List<AccessPoint> from(List<ScanResult> scanResults) {
+        if (scanResults == null) {
+            return Collections.emptyList();
+        }
+        boolean hasChannelWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+        List<AccessPoint> accessPoints = new ArrayList<>(scanResults.size());
+        for (ScanResult scanResult : scanResults) {
+            accessPoints.add(new AccessPoint(scanResult.SSID, scanResult.BSSID,
+                    scanResult.capabilities, scanResult.level, scanResult.frequency,
+                    hasChannelWidth ? getChannelWidth(scanResult) : 20));
+        }
+        return accessPoints;
+    }
+
+    /**
+     * @return channel width of the scan result in MHz
+     */
+    private static int getChannelWidth(ScanResult scanResult) {
+        switch (scanResult.channelWidth) {
+            case ScanResult.CHANNEL_WIDTH_40MHZ:
+                return 40;
+            case ScanResult.CHANNEL_WIDTH_80MHZ:
+                return 80;
+            case ScanResult.CHANNEL_WIDTH_160MHZ:
+            case ScanResult.CHANNEL_WIDTH_80MHZ_PLUS_MHZ:
+                return 160;
+            default:
+                return 20;
+        }
+    }
+}
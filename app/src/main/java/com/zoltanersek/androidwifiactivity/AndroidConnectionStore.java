@@ -0,0 +1,40 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectionStore;
+import com.zoltanersek.androidwifiactivity.core.NetworkCache;
+
+/**
+ * {@link ConnectionStore} backed by the files of {@link ConnectHistoryStore} and
+ * {@link NetworkCacheStore}
+ */
+final class AndroidConnectionStore implements ConnectionStore {
+
+    private final Context context;
+
+    AndroidConnectionStore(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public long getAdaptiveTimeoutMillis(String ssid, long timeoutMillis) {
+        return ConnectHistoryStore.get(context).getTimeoutMillis(ssid, timeoutMillis);
+    }
+
+    @Override
+    public void recordConnectDuration(String ssid, long durationMillis) {
+        ConnectHistoryStore.record(context, ssid, durationMillis);
+    }
+
+    @Override
+    public NetworkCache.Entry getCachedNetwork(String ssid, int cacheSize) {
+        return NetworkCacheStore.get(context, cacheSize).get(ssid);
+    }
+
+    @Override
+    public void putCachedNetwork(NetworkCache.Entry entry, int cacheSize) {
+        NetworkCacheStore.get(context, cacheSize).put(entry);
+        NetworkCacheStore.save(context);
+    }
+}
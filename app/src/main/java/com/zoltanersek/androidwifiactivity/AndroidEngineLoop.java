@@ -0,0 +1,46 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.os.SystemClock;
+
+import com.zoltanersek.androidwifiactivity.core.EngineLoop;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EngineLoop} on the shared {@link WifiScheduler} thread with the
+ * {@link SystemClock#elapsedRealtime()} clock
+ */
+final class AndroidEngineLoop implements EngineLoop {
+
+    static final AndroidEngineLoop INSTANCE = new AndroidEngineLoop();
+
+    private AndroidEngineLoop() {
+    }
+
+    @Override
+    public long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        WifiScheduler.get().execute(task);
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delayMillis) {
+        final ScheduledFuture future = WifiScheduler.get().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        return new Cancellable() {
+            @Override
+            public void cancel() {
+                future.cancel(false);
+            }
+        };
+    }
+}
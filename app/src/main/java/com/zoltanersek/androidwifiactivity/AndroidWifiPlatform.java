@@ -0,0 +1,455 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.AsyncTask;
+import android.os.Build;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectionStore;
+import com.zoltanersek.androidwifiactivity.core.EngineLoop;
+import com.zoltanersek.androidwifiactivity.core.ForeignNetworkPolicy;
+import com.zoltanersek.androidwifiactivity.core.LinkEvent;
+import com.zoltanersek.androidwifiactivity.core.LinkInfo;
+import com.zoltanersek.androidwifiactivity.core.ListenerRegistry;
+import com.zoltanersek.androidwifiactivity.core.MacAddresses;
+import com.zoltanersek.androidwifiactivity.core.NetworkSpec;
+import com.zoltanersek.androidwifiactivity.core.ProbeResult;
+import com.zoltanersek.androidwifiactivity.core.ReachabilityProbe;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+import com.zoltanersek.androidwifiactivity.core.WifiPlatform;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link WifiPlatform} on the Android framework: {@link WifiManager}, {@link ConnectivityManager},
+ * the {@link ScanScheduler} and the broadcasts of the {@link WifiEventHub}. Broadcasts arrive on
+ * the main thread; the time spent there before they are handed to the engine loop is added to a
+ * {@link MainThreadTimer}. On Android 10 and later networks are joined with network requests
+ * through the {@link WifiNetworkRequester}, whose callbacks are handed to the engine loop too.
+ * <p>
+ * Broadcasts go through a {@link LinkStateCoalescer}, so only distinct link changes reach the
+ * engine loop and the connection state is read from the broadcasts while they are received.
+ * Every call into {@link WifiManager}, {@link ConnectivityManager} and the network requester is a
+ * binder transaction and is counted, see {@link #getServiceCallCount()}; the scans of the process
+ * wide {@link ScanScheduler} are not.
+ * <p>
+ * Reachability probes run on the {@link AsyncTask#THREAD_POOL_EXECUTOR}, bound to the wifi network
+ * on Android 5 and later so they never go out over mobile data.
+ * <p>
+ * While link listeners are added, a network callback follows the validation of wifi networks on
+ * Android 6 and later and reports it as {@link LinkEvent#VALIDATED}; validation of another
+ * transport, such as mobile data during a handover, is never taken for the wifi network.
+ */
+final class AndroidWifiPlatform implements WifiPlatform {
+
+    private final Context context;
+    private final WifiManager wifi;
+    private final ConnectivityManager connectivity;
+    private final ConnectionStore store;
+    private final MainThreadTimer mainThreadTimer;
+    private final LinkStateCoalescer coalescer = new LinkStateCoalescer();
+    private final AtomicInteger serviceCalls = new AtomicInteger();
+    private final WifiEventHub.Listener hubListener = new HubListener();
+    private final ValidationCallback validationCallback =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? new ValidationCallback() : null;
+    // the broadcasts are only received while an attempt listens for link changes
+    private final ListenerRegistry<LinkListener> linkListeners = new ListenerRegistry<>(new ListenerRegistry.Source() {
+        @Override
+        public void attach() {
+            coalescer.setReceiving(true);
+            WifiEventHub.getInstance(context).subscribe(hubListener);
+            if (validationCallback != null) {
+                serviceCalls.incrementAndGet();
+                validationCallback.register();
+            }
+        }
+
+        @Override
+        public void detach() {
+            if (validationCallback != null) {
+                serviceCalls.incrementAndGet();
+                validationCallback.unregister();
+            }
+            WifiEventHub.getInstance(context).unsubscribe(hubListener);
+            coalescer.setReceiving(false);
+        }
+    });
+
+    /**
+     * @param context         any context, the application context is kept
+     * @param mainThreadTimer receives the main thread time spent on broadcasts
+     */
+    AndroidWifiPlatform(Context context, MainThreadTimer mainThreadTimer) {
+        this.context = context.getApplicationContext();
+        this.wifi = (WifiManager) this.context.getSystemService(Context.WIFI_SERVICE);
+        this.connectivity = (ConnectivityManager) this.context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.store = new AndroidConnectionStore(this.context);
+        this.mainThreadTimer = mainThreadTimer;
+    }
+
+    /**
+     * Build the configuration of a network
+     *
+     * @param spec the network
+     * @return the configuration
+     */
+    static WifiConfiguration buildConfiguration(NetworkSpec spec) {
+        // configure based on security
+        final WifiConfiguration conf = new WifiConfiguration();
+        conf.SSID = spec.getSsid().toConfigString();
+        conf.BSSID = spec.getBssid();
+        switch (spec.getSecurityType()) {
+            case WEP:
+                conf.wepKeys[0] = "\"" + spec.getPassword() + "\"";
+                conf.wepTxKeyIndex = 0;
+                conf.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                conf.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
+                break;
+            case PSK:
+                conf.preSharedKey = "\"" + spec.getPassword() + "\"";
+                break;
+            case OPEN:
+                conf.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                break;
+        }
+        return conf;
+    }
+
+    @Override
+    public EngineLoop getLoop() {
+        return AndroidEngineLoop.INSTANCE;
+    }
+
+    @Override
+    public ConnectionStore getStore() {
+        return store;
+    }
+
+    @Override
+    public boolean isConnectedTo(Ssid ssid) {
+        if (isNetworkRequestSupported() && WifiNetworkRequester.getInstance(context).getNetwork(ssid) != null) {
+            return true;
+        }
+        int known = coalescer.isConnectedTo(ssid);
+        if (known != LinkStateCoalescer.UNKNOWN) {
+            return known == LinkStateCoalescer.CONNECTED;
+        }
+        int version = coalescer.getNetworkStateVersion();
+        serviceCalls.incrementAndGet();
+        NetworkInfo networkInfo = connectivity.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
+        if (!networkInfo.isConnected()) {
+            coalescer.setNetworkState(version, false, null);
+            return false;
+        }
+        serviceCalls.incrementAndGet();
+        WifiInfo wifiInfo = wifi.getConnectionInfo();
+        coalescer.setNetworkState(version, true, wifiInfo.getSSID());
+        return ssid.matches(wifiInfo.getSSID());
+    }
+
+    @Override
+    public boolean isValidated() {
+        if (validationCallback == null) {
+            return false;
+        }
+        if (linkListeners.isAttached()) {
+            // kept up to date by the callback
+            return validationCallback.isValidated();
+        }
+        serviceCalls.incrementAndGet();
+        for (Network network : connectivity.getAllNetworks()) {
+            serviceCalls.incrementAndGet();
+            if (isValidatedWifi(connectivity.getNetworkCapabilities(network))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the capabilities are those of a wifi network the system validated
+     */
+    private static boolean isValidatedWifi(NetworkCapabilities capabilities) {
+        return capabilities != null && capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+
+    @Override
+    public void probe(final ReachabilityProbe probe, final ProbeListener listener) {
+        final Network network = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? findWifiNetwork() : null;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ProbeResult result = probe.run(new ReachabilityProbe.ConnectionFactory() {
+                    @Override
+                    public URLConnection open(URL url) throws IOException {
+                        return network != null ? network.openConnection(url) : url.openConnection();
+                    }
+                });
+                AndroidEngineLoop.INSTANCE.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onProbeResult(result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return the connected wifi network, null if there is none
+     */
+    private Network findWifiNetwork() {
+        if (isNetworkRequestSupported()) {
+            Network network = WifiNetworkRequester.getInstance(context).getNetwork();
+            if (network != null) {
+                return network;
+            }
+        }
+        serviceCalls.incrementAndGet();
+        Network[] networks = connectivity.getAllNetworks();
+        for (Network network : networks) {
+            serviceCalls.incrementAndGet();
+            NetworkCapabilities capabilities = connectivity.getNetworkCapabilities(network);
+            if (capabilities != null && capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+                return network;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public LinkInfo getConnectionInfo() {
+        serviceCalls.incrementAndGet();
+        WifiInfo wifiInfo = wifi.getConnectionInfo();
+        int frequency = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? wifiInfo.getFrequency() : 0;
+        // the BSSID is redacted without the location permission
+        return new LinkInfo(wifiInfo.getNetworkId(), MacAddresses.normalize(wifiInfo.getBSSID()), frequency);
+    }
+
+    @Override
+    public void disconnect() {
+        serviceCalls.incrementAndGet();
+        wifi.disconnect();
+    }
+
+    @Override
+    public int findSavedNetwork(Ssid ssid) {
+        serviceCalls.incrementAndGet();
+        List<WifiConfiguration> list = wifi.getConfiguredNetworks();
+        if (list == null) {
+            return -1;
+        }
+        for (WifiConfiguration config : list) {
+            if (ssid.matches(config.SSID)) {
+                return config.networkId;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int addNetwork(NetworkSpec spec, ForeignNetworkPolicy policy) {
+        return NetworkConfigReconciler.reconcile(wifi, buildConfiguration(spec), policy, serviceCalls);
+    }
+
+    @Override
+    public boolean enableNetwork(int networkId) {
+        serviceCalls.incrementAndGet();
+        if (!wifi.enableNetwork(networkId, true)) {
+            return false;
+        }
+        serviceCalls.incrementAndGet();
+        wifi.reconnect();
+        return true;
+    }
+
+    @Override
+    public void removeNetwork(int networkId) {
+        serviceCalls.incrementAndGet();
+        wifi.removeNetwork(networkId);
+    }
+
+    @Override
+    public boolean isNetworkRequestSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+    }
+
+    @Override
+    public void requestNetwork(NetworkSpec spec, long timeoutMillis) {
+        serviceCalls.incrementAndGet();
+        WifiNetworkRequester.getInstance(context).request(spec, timeoutMillis, new WifiNetworkRequester.Listener() {
+            @Override
+            public void onAvailable() {
+                dispatchLinkEvent(LinkEvent.NETWORK_CONNECTED);
+            }
+
+            @Override
+            public void onUnavailable() {
+                dispatchLinkEvent(LinkEvent.UNAVAILABLE);
+            }
+
+            @Override
+            public void onLost() {
+                dispatchLinkEvent(LinkEvent.OTHER);
+            }
+        });
+    }
+
+    @Override
+    public void releaseNetworkRequest() {
+        serviceCalls.incrementAndGet();
+        WifiNetworkRequester.getInstance(context).release();
+    }
+
+    /**
+     * Hand a network request callback to the link listeners on the engine loop
+     */
+    private void dispatchLinkEvent(final LinkEvent event) {
+        AndroidEngineLoop.INSTANCE.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (LinkListener listener : linkListeners) {
+                    listener.onLinkEvent(event);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void requestScan(ScanListener listener, long maxCacheAgeMillis, long prewarmMaxAgeMillis) {
+        ScanScheduler.getInstance(context).requestScan(listener, maxCacheAgeMillis, prewarmMaxAgeMillis);
+    }
+
+    @Override
+    public void prewarmScan(long freshnessMillis) {
+        ScanScheduler.getInstance(context).prewarm(freshnessMillis);
+    }
+
+    @Override
+    public void cancelScan(ScanListener listener) {
+        ScanScheduler.getInstance(context).cancel(listener);
+    }
+
+    @Override
+    public void addLinkListener(LinkListener listener) {
+        linkListeners.add(listener);
+    }
+
+    @Override
+    public void removeLinkListener(LinkListener listener) {
+        linkListeners.remove(listener);
+    }
+
+    @Override
+    public int getServiceCallCount() {
+        return serviceCalls.get();
+    }
+
+    /**
+     * Follows the validation of the wifi networks. Called on a framework thread.
+     */
+    private class ValidationCallback extends ConnectivityManager.NetworkCallback {
+
+        private Network validatedNetwork;
+
+        void register() {
+            NetworkRequest request = new NetworkRequest.Builder()
+                    .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+                    // also networks without internet access, like those joined by a request
+                    .removeCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+            connectivity.registerNetworkCallback(request, this);
+        }
+
+        synchronized void unregister() {
+            connectivity.unregisterNetworkCallback(this);
+            validatedNetwork = null;
+        }
+
+        synchronized boolean isValidated() {
+            return validatedNetwork != null;
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            boolean validated = isValidatedWifi(capabilities);
+            synchronized (this) {
+                if (validated == network.equals(validatedNetwork)) {
+                    return;
+                }
+                if (!validated) {
+                    validatedNetwork = null;
+                    return;
+                }
+                validatedNetwork = network;
+            }
+            dispatchLinkEvent(LinkEvent.VALIDATED);
+        }
+
+        @Override
+        public synchronized void onLost(Network network) {
+            if (network.equals(validatedNetwork)) {
+                validatedNetwork = null;
+            }
+        }
+    }
+
+    /**
+     * Passes the distinct link changes of the broadcasts to the link listeners
+     */
+    private class HubListener implements WifiEventHub.Listener {
+
+        @Override
+        public void onWifiEvent(Intent intent) {
+            if (WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(intent.getAction())) {
+                return;
+            }
+            long begin = System.nanoTime();
+            LinkEvent event = coalescer.onBroadcast(intent);
+            if (event != null) {
+                dispatchLinkEvent(event);
+            }
+            mainThreadTimer.record(begin);
+        }
+    }
+
+    /**
+     * @param intent a supplicant or network state broadcast
+     * @return the link change the broadcast reports
+     */
+    static LinkEvent toLinkEvent(Intent intent) {
+        if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(intent.getAction())) {
+            if (intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, 0) == WifiManager.ERROR_AUTHENTICATING) {
+                return LinkEvent.AUTH_FAILED;
+            }
+            SupplicantState supplicantState = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
+            if (supplicantState == SupplicantState.ASSOCIATING) {
+                return LinkEvent.ASSOCIATING;
+            } else if (supplicantState == SupplicantState.FOUR_WAY_HANDSHAKE) {
+                return LinkEvent.FOUR_WAY_HANDSHAKE;
+            } else if (supplicantState == SupplicantState.COMPLETED) {
+                return LinkEvent.COMPLETED;
+            }
+        } else if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(intent.getAction())) {
+            NetworkInfo networkInfo = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+            if (networkInfo != null && networkInfo.getDetailedState() == NetworkInfo.DetailedState.CONNECTED) {
+                return LinkEvent.NETWORK_CONNECTED;
+            }
+        }
+        return LinkEvent.OTHER;
+    }
+}
@@ -0,0 +1,62 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectDurationHistory;
+
+import java.io.File;
+
+/**
+ * Keeps the process wide {@link ConnectDurationHistory} in a small file in the app's files
+ * directory. The file is read with a single read the first time the history is needed and
+ * written on the shared scheduler thread after it changes.
+ */
+final class ConnectHistoryStore {
+
+    private static final String FILE_NAME = "wifi_connect_history.bin";
+    private static final int MAX_NETWORKS = 64;
+
+    private static ConnectDurationHistory history;
+
+    private ConnectHistoryStore() {
+    }
+
+    /**
+     * @param context any context
+     * @return the history, loaded from disk on first use
+     */
+    static synchronized ConnectDurationHistory get(Context context) {
+        if (history == null) {
+            history = new ConnectDurationHistory(MAX_NETWORKS);
+            byte[] data = StoreFiles.read(getFile(context));
+            if (data != null) {
+                history.load(data);
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Record a successful connection and write the history to disk in the background
+     *
+     * @param context        any context
+     * @param ssid           SSID of the network
+     * @param durationMillis time it took to connect
+     */
+    static void record(Context context, String ssid, long durationMillis) {
+        ConnectDurationHistory history = get(context);
+        history.record(ssid, durationMillis);
+        final byte[] data = history.toByteArray();
+        final File file = getFile(context);
+        WifiScheduler.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                StoreFiles.write(file, data);
+            }
+        });
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+    }
+}
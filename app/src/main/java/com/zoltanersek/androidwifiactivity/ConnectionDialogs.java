@@ -0,0 +1,134 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.ProgressDialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.provider.Settings;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+
+/**
+ * Dialogs shown by {@link WifiBase} and {@link WifiBaseActivity} while a {@link WifiConnector}
+ * runs. Shows progress while the attempt is running and lets the user exit when it fails.
+ * Apps that need no user interface use {@link WifiConnection} instead.
+ */
+class ConnectionDialogs implements WifiConnector.Callback {
+
+    private final Context context;
+    private final Activity activity;
+    private final String ssid;
+    private final WifiBase.WifiConnectedListener connectedListener;
+    private final WifiBase.ConnectionMetricsListener metricsListener;
+
+    private ProgressDialog progressDialog;
+
+    ConnectionDialogs(Context context, Activity activity, String ssid,
+                      WifiBase.WifiConnectedListener connectedListener,
+                      WifiBase.ConnectionMetricsListener metricsListener) {
+        this.context = context;
+        this.activity = activity;
+        this.ssid = ssid;
+        this.connectedListener = connectedListener;
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Ask user to go to settings and enable wifi
+     *
+     * @param context     context used to show the dialog
+     * @param activity    activity that starts the settings screen or finishes
+     * @param requestCode request code of the settings screen
+     */
+    static void showWifiDisabledDialog(Context context, final Activity activity, final int requestCode) {
+        new AlertDialog.Builder(context)
+                .setCancelable(false)
+                .setMessage(context.getString(R.string.wifi_disabled))
+                .setPositiveButton(context.getString(R.string.enable_wifi), new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int which) {
+                        // open settings screen
+                        Intent intent = new Intent(Settings.ACTION_WIFI_SETTINGS);
+                        activity.startActivityForResult(intent, requestCode);
+                    }
+                })
+                .setNegativeButton(context.getString(R.string.exit_app), new DialogInterface.OnClickListener() {
+
+                    public void onClick(DialogInterface dialog, int which) {
+                        activity.finish();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Dismiss the progress dialog if it is showing
+     */
+    void dismiss() {
+        if (progressDialog != null) {
+            progressDialog.dismiss();
+            progressDialog = null;
+        }
+    }
+
+    @Override
+    public void onStateChanged(ConnectionState state) {
+        if ((state == ConnectionState.SCANNING || state == ConnectionState.ASSOCIATING
+                || state == ConnectionState.VALIDATING)
+                && progressDialog == null) {
+            progressDialog = ProgressDialog.show(context, context.getString(R.string.connecting), String.format(context.getString(R.string.connecting_to_wifi), ssid));
+        }
+    }
+
+    @Override
+    public void onResult(ConnectResult result) {
+        switch (result.getStatus()) {
+            case CONNECTED:
+                dismiss();
+                if (connectedListener != null) {
+                    connectedListener.onWifiConnected(result.getPath());
+                }
+                break;
+            case NOT_FOUND:
+                // if no wifi network with the specified ssid is found exit
+                showExitDialog(String.format(context.getString(R.string.wifi_not_found), ssid));
+                break;
+            case AUTH_FAILED:
+                showExitDialog(String.format(context.getString(R.string.wifi_auth_failed), ssid));
+                break;
+            case UNSUPPORTED_SECURITY:
+                showExitDialog(String.format(context.getString(R.string.wifi_unsupported_security), ssid, result.getSecurityType()));
+                break;
+            case TIMEOUT:
+                showExitDialog(String.format(context.getString(R.string.wifi_not_connected), ssid));
+                break;
+            case CAPTIVE_PORTAL:
+                showExitDialog(String.format(context.getString(R.string.wifi_captive_portal), ssid));
+                break;
+            case UNREACHABLE:
+                showExitDialog(String.format(context.getString(R.string.wifi_unreachable), ssid));
+                break;
+            default:
+                dismiss();
+                break;
+        }
+        if (metricsListener != null) {
+            metricsListener.onConnectionMetrics(result.getMetrics());
+        }
+    }
+
+    private void showExitDialog(String message) {
+        dismiss();
+        new AlertDialog.Builder(context)
+                .setCancelable(false)
+                .setMessage(message)
+                .setPositiveButton(context.getString(R.string.exit_app), new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int which) {
+                        activity.finish();
+                    }
+                })
+                .show();
+    }
+}
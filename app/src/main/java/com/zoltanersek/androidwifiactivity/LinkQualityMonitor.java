@@ -0,0 +1,239 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.zoltanersek.androidwifiactivity.core.LinkQualityHistory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the signal level, link speed and frequency of the connected wifi network at a fixed
+ * interval into a {@link LinkQualityHistory}, and tells the listener when the link gets worse than
+ * the thresholds so the app can roam or reconnect before throughput collapses. Create instances
+ * with {@link Builder}.
+ * <p>
+ * Sampling runs on the shared {@link WifiScheduler} thread and costs one
+ * {@link WifiManager#getConnectionInfo()} call per sample; apart from the {@link WifiInfo} the
+ * platform returns nothing is allocated. The listener is called on the main thread.
+ * <p>
+ * The link counts as dropped when the mean of the newest samples is below the signal level
+ * threshold or the link speed threshold. It counts as restored once the signal is
+ * {@value #RESTORE_MARGIN_DB} dB above the threshold again and the link speed is back above its
+ * threshold, so a link on the edge does not flap.
+ */
+public final class LinkQualityMonitor {
+
+    static final int RESTORE_MARGIN_DB = 5;
+
+    /**
+     * Receives link quality changes, on the main thread
+     */
+    public interface Listener {
+        void onQualityDropped(LinkQualityHistory history);
+
+        void onQualityRestored(LinkQualityHistory history);
+    }
+
+    private final Context context;
+    private final WifiManager wifi;
+    private final long intervalMillis;
+    private final int levelThreshold;
+    private final int linkSpeedThreshold;
+    private final int window;
+    private final Listener listener;
+    private final LinkQualityHistory history;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable sampleTask = new Runnable() {
+        @Override
+        public void run() {
+            sample();
+        }
+    };
+
+    private ScheduledFuture taskHandler;
+    // scheduler thread
+    private boolean dropped;
+
+    private LinkQualityMonitor(Context context, Builder builder) {
+        this.context = context.getApplicationContext();
+        this.wifi = (WifiManager) this.context.getSystemService(Context.WIFI_SERVICE);
+        this.intervalMillis = builder.intervalMillis;
+        this.levelThreshold = builder.levelThreshold;
+        this.linkSpeedThreshold = builder.linkSpeedThreshold;
+        this.window = builder.window;
+        this.listener = builder.listener;
+        this.history = new LinkQualityHistory(builder.historySize);
+    }
+
+    /**
+     * @return the samples taken so far
+     */
+    public LinkQualityHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Start sampling. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (taskHandler == null) {
+            taskHandler = WifiScheduler.get().scheduleWithFixedDelay(sampleTask, 0, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop sampling. The history is kept.
+     */
+    public synchronized void stop() {
+        if (taskHandler != null) {
+            taskHandler.cancel(false);
+            taskHandler = null;
+        }
+    }
+
+    private void sample() {
+        WifiInfo wifiInfo = wifi.getConnectionInfo();
+        if (wifiInfo == null || wifiInfo.getNetworkId() == -1) {
+            // not connected, nothing to measure
+            return;
+        }
+        int frequency = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? wifiInfo.getFrequency() : 0;
+        history.add(SystemClock.elapsedRealtime(), wifiInfo.getRssi(), wifiInfo.getLinkSpeed(), frequency);
+        if (listener == null || history.size() < window) {
+            return;
+        }
+        double level = history.getRecentMeanLevel(window);
+        double linkSpeed = history.getRecentMeanLinkSpeed(window);
+        if (!dropped && (level < levelThreshold || linkSpeed < linkSpeedThreshold)) {
+            dropped = true;
+            notifyListener(true);
+        } else if (dropped && level >= levelThreshold + RESTORE_MARGIN_DB && linkSpeed >= linkSpeedThreshold) {
+            dropped = false;
+            notifyListener(false);
+        }
+    }
+
+    private void notifyListener(final boolean drop) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (drop) {
+                    listener.onQualityDropped(history);
+                } else {
+                    listener.onQualityRestored(history);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builder for {@link LinkQualityMonitor}
+     */
+    public static final class Builder {
+
+        private long intervalMillis = 2000;
+        private int historySize = 30;
+        private int levelThreshold = -75;
+        private int linkSpeedThreshold;
+        private int window = 3;
+        private Listener listener;
+
+        /**
+         * Set the time between samples. Defaults to 2 seconds.
+         *
+         * @param intervalMillis sampling interval in milliseconds
+         * @return this builder
+         */
+        public Builder setIntervalMillis(long intervalMillis) {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("intervalMillis must be positive");
+            }
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Set the number of samples kept in the history. Defaults to 30.
+         *
+         * @param size number of samples
+         * @return this builder
+         */
+        public Builder setHistorySize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("size must be positive");
+            }
+            this.historySize = size;
+            return this;
+        }
+
+        /**
+         * Set the signal level below which the link counts as dropped. Defaults to -75 dBm.
+         *
+         * @param dbm signal level threshold in dBm
+         * @return this builder
+         */
+        public Builder setLevelThreshold(int dbm) {
+            this.levelThreshold = dbm;
+            return this;
+        }
+
+        /**
+         * Set the link speed below which the link counts as dropped. Defaults to 0, which
+         * disables the link speed check.
+         *
+         * @param mbps link speed threshold in Mbps
+         * @return this builder
+         */
+        public Builder setLinkSpeedThreshold(int mbps) {
+            if (mbps < 0) {
+                throw new IllegalArgumentException("mbps must not be negative");
+            }
+            this.linkSpeedThreshold = mbps;
+            return this;
+        }
+
+        /**
+         * Set the number of newest samples averaged before comparing with the thresholds.
+         * Defaults to 3.
+         *
+         * @param samples number of samples
+         * @return this builder
+         */
+        public Builder setWindow(int samples) {
+            if (samples <= 0) {
+                throw new IllegalArgumentException("samples must be positive");
+            }
+            this.window = samples;
+            return this;
+        }
+
+        /**
+         * @param listener receives link quality changes, may be null to only record the history
+         * @return this builder
+         */
+        public Builder setListener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @param context any context, the application context is kept
+         * @return the monitor, not started yet
+         */
+        public LinkQualityMonitor build(Context context) {
+            if (window > historySize) {
+                throw new IllegalStateException("window must not be larger than the history");
+            }
+            return new LinkQualityMonitor(context, this);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Intent;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+
+import com.zoltanersek.androidwifiactivity.core.LinkEvent;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+
+/**
+ * Turns the burst of supplicant and network state broadcasts of a handshake into the distinct
+ * link changes, and remembers the network state they carry so the connection state can be
+ * answered without asking the wifi service.
+ * <p>
+ * A broadcast that repeats the last supplicant or network state, or reports a supplicant state
+ * the engine does not act on, yields no event. The network state comes from
+ * {@link WifiManager#EXTRA_NETWORK_INFO} and {@link WifiManager#EXTRA_WIFI_INFO}; it is known only
+ * while broadcasts are being received, since a change is missed otherwise, and not known when the
+ * extras leave it open, for example when the SSID is hidden from an app without the location
+ * permission.
+ * <p>
+ * Broadcasts arrive on the main thread and the state is read on the engine loop, so methods are
+ * synchronized.
+ */
+final class LinkStateCoalescer {
+
+    static final int NOT_CONNECTED = 0;
+    static final int CONNECTED = 1;
+    static final int UNKNOWN = -1;
+
+    private boolean receiving;
+    private LinkEvent lastSupplicantEvent;
+    private NetworkInfo.DetailedState lastDetailedState;
+    private boolean supplicantConnected = true;
+
+    private boolean networkStateKnown;
+    private boolean networkConnected;
+    private String connectedSsid;
+    // incremented with every network state broadcast, so a query does not overwrite a newer state
+    private int networkStateVersion;
+
+    /**
+     * Start or stop taking broadcasts, forgetting everything learned from them
+     *
+     * @param receiving true while broadcasts are passed to {@link #onBroadcast}
+     */
+    synchronized void setReceiving(boolean receiving) {
+        this.receiving = receiving;
+        lastSupplicantEvent = null;
+        lastDetailedState = null;
+        supplicantConnected = true;
+        networkStateKnown = false;
+        connectedSsid = null;
+        networkStateVersion++;
+    }
+
+    /**
+     * @param intent a supplicant or network state broadcast
+     * @return the link change the broadcast reports, null if it reports nothing new
+     */
+    synchronized LinkEvent onBroadcast(Intent intent) {
+        String action = intent.getAction();
+        if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(action)) {
+            LinkEvent event = AndroidWifiPlatform.toLinkEvent(intent);
+            if (event == LinkEvent.OTHER) {
+                // disconnected, scanning and the like: nothing to act on, but the next
+                // association is a new one
+                lastSupplicantEvent = null;
+                return null;
+            }
+            if (event == lastSupplicantEvent) {
+                return null;
+            }
+            lastSupplicantEvent = event;
+            return event;
+        }
+        if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(action)) {
+            NetworkInfo networkInfo = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+            networkStateVersion++;
+            if (networkInfo == null) {
+                // can't tell, let the state be queried
+                networkStateKnown = false;
+                lastDetailedState = null;
+                return LinkEvent.OTHER;
+            }
+            networkStateKnown = receiving;
+            networkConnected = networkInfo.isConnected();
+            connectedSsid = null;
+            if (networkConnected) {
+                WifiInfo wifiInfo = intent.getParcelableExtra(WifiManager.EXTRA_WIFI_INFO);
+                connectedSsid = wifiInfo != null ? wifiInfo.getSSID() : null;
+            }
+            NetworkInfo.DetailedState detailedState = networkInfo.getDetailedState();
+            if (detailedState == lastDetailedState) {
+                return null;
+            }
+            lastDetailedState = detailedState;
+            return networkConnected ? LinkEvent.NETWORK_CONNECTED : LinkEvent.OTHER;
+        }
+        if (WifiManager.SUPPLICANT_CONNECTION_CHANGE_ACTION.equals(action)) {
+            boolean connected = intent.getBooleanExtra(WifiManager.EXTRA_SUPPLICANT_CONNECTED, false);
+            if (connected == supplicantConnected) {
+                return null;
+            }
+            supplicantConnected = connected;
+            return LinkEvent.OTHER;
+        }
+        return null;
+    }
+
+    /**
+     * @param ssid SSID of a network
+     * @return {@link #CONNECTED} or {@link #NOT_CONNECTED} if the broadcasts tell, {@link #UNKNOWN}
+     * if the wifi service has to be asked
+     */
+    synchronized int isConnectedTo(Ssid ssid) {
+        if (!networkStateKnown) {
+            return UNKNOWN;
+        }
+        if (!networkConnected) {
+            return NOT_CONNECTED;
+        }
+        if (connectedSsid == null || Ssid.UNKNOWN_SSID.equals(connectedSsid)) {
+            return UNKNOWN;
+        }
+        return ssid.matches(connectedSsid) ? CONNECTED : NOT_CONNECTED;
+    }
+
+    /**
+     * @return version of the network state, pass it to {@link #setNetworkState}
+     */
+    synchronized int getNetworkStateVersion() {
+        return networkStateVersion;
+    }
+
+    /**
+     * Remember the network state queried from the wifi service, unless a broadcast changed it
+     * since the version was read or broadcasts are not being received
+     *
+     * @param version       {@link #getNetworkStateVersion()} before the query
+     * @param connected     true if the wifi network is connected
+     * @param connectedSsid SSID reported by {@code WifiInfo} if connected, null otherwise
+     */
+    synchronized void setNetworkState(int version, boolean connected, String connectedSsid) {
+        if (!receiving || version != networkStateVersion) {
+            return;
+        }
+        networkStateKnown = true;
+        networkConnected = connected;
+        this.connectedSsid = connectedSsid;
+    }
+}
@@ -19,7 +19,7 @@ public class MainActivity extends WifiBaseActivity  {
 
     @Override
     protected int getSecondsTimeout() {
-        return 10000;
+        return 30;
     }
 
     @Override
@@ -40,6 +40,13 @@ public class MainActivity extends WifiBaseActivity  {
         setContentView(R.layout.activity_main);
 
     }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // scan while the user types, so the connection does not wait for it
+        prepare();
+    }
     public void onClick(View view){
         EditText wifiSSIDName = (EditText) findViewById(R.id.wifiSSIDName);
         EditText wifiSSIDPass = (EditText) findViewById(R.id.wifiSSIDPass);
@@ -0,0 +1,36 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.os.Looper;
+
+/**
+ * Adds up the stretches of work one connection attempt does on the main thread. Only used on the
+ * main thread.
+ */
+final class MainThreadTimer {
+
+    private long maxNanos;
+    private long totalNanos;
+
+    static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * Add a stretch of main thread work
+     *
+     * @param begin {@link System#nanoTime()} when the work started
+     */
+    void record(long begin) {
+        long duration = System.nanoTime() - begin;
+        maxNanos = Math.max(maxNanos, duration);
+        totalNanos += duration;
+    }
+
+    long getMaxNanos() {
+        return maxNanos;
+    }
+
+    long getTotalNanos() {
+        return totalNanos;
+    }
+}
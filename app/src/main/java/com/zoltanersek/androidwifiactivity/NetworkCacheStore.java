@@ -0,0 +1,67 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+
+import com.zoltanersek.androidwifiactivity.core.NetworkCache;
+
+import java.io.File;
+
+/**
+ * Keeps the process wide {@link NetworkCache} in a small file in the app's files directory. The
+ * file is read with a single read the first time the cache is needed and written on the shared
+ * scheduler thread after it changes.
+ */
+final class NetworkCacheStore {
+
+    private static final String FILE_NAME = "wifi_network_cache.bin";
+
+    private static NetworkCache cache;
+
+    private NetworkCacheStore() {
+    }
+
+    /**
+     * @param context    any context
+     * @param maxEntries number of networks kept
+     * @return the cache, loaded from disk on first use
+     */
+    static synchronized NetworkCache get(Context context, int maxEntries) {
+        if (cache == null) {
+            cache = new NetworkCache(maxEntries);
+            byte[] data = StoreFiles.read(getFile(context));
+            if (data != null) {
+                cache.load(data);
+            }
+        } else {
+            cache.setMaxEntries(maxEntries);
+        }
+        return cache;
+    }
+
+    /**
+     * Write the cache to disk in the background
+     *
+     * @param context any context
+     */
+    static void save(Context context) {
+        NetworkCache current;
+        synchronized (NetworkCacheStore.class) {
+            current = cache;
+        }
+        if (current == null) {
+            return;
+        }
+        final byte[] data = current.toByteArray();
+        final File file = getFile(context);
+        WifiScheduler.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                StoreFiles.write(file, data);
+            }
+        });
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+    }
+}
@@ -0,0 +1,75 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+
+import com.zoltanersek.androidwifiactivity.core.ForeignNetworkPolicy;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Brings the configured networks of the device in line with the network to connect to. Only the
+ * entries that differ are added, updated or removed and the configuration is saved once at the end.
+ */
+final class NetworkConfigReconciler {
+
+    private NetworkConfigReconciler() {
+    }
+
+    /**
+     * Reconcile the configured networks with the desired configuration
+     *
+     * @param wifi    the wifi manager
+     * @param desired the configuration of the network to connect to
+     * @param policy  what to do with networks that have a different SSID
+     * @param calls   incremented for every call into the wifi manager
+     * @return the network id of the desired configuration, -1 if it could not be added
+     */
+    static int reconcile(WifiManager wifi, WifiConfiguration desired, ForeignNetworkPolicy policy,
+                         AtomicInteger calls) {
+        calls.incrementAndGet();
+        List<WifiConfiguration> existing = wifi.getConfiguredNetworks();
+        Ssid ssid = Ssid.parse(desired.SSID);
+        int netId = -1;
+        boolean changed = false;
+        if (existing != null) {
+            for (WifiConfiguration config : existing) {
+                if (ssid.matches(config.SSID)) {
+                    if (netId == -1) {
+                        // stored keys can't be read back so the entry is always updated in place
+                        desired.networkId = config.networkId;
+                        calls.incrementAndGet();
+                        netId = wifi.updateNetwork(desired);
+                        if (netId == -1) {
+                            // entry owned by another app, replace it
+                            calls.incrementAndGet();
+                            wifi.removeNetwork(config.networkId);
+                        }
+                    } else {
+                        // duplicate entry for the same SSID
+                        calls.incrementAndGet();
+                        wifi.removeNetwork(config.networkId);
+                    }
+                    changed = true;
+                } else if (policy == ForeignNetworkPolicy.REMOVE) {
+                    calls.incrementAndGet();
+                    wifi.removeNetwork(config.networkId);
+                    changed = true;
+                }
+            }
+        }
+        if (netId == -1) {
+            desired.networkId = -1;
+            calls.incrementAndGet();
+            netId = wifi.addNetwork(desired);
+            changed = true;
+        }
+        if (changed) {
+            calls.incrementAndGet();
+            wifi.saveConfiguration();
+        }
+        return netId;
+    }
+}
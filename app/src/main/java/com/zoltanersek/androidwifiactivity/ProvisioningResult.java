@@ -0,0 +1,84 @@
+package com.zoltanersek.androidwifiactivity;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectionMetrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a {@link WifiProvisioner} batch: the result of every step that ran and the time the
+ * whole batch took.
+ */
+public final class ProvisioningResult {
+
+    private final List<ConnectResult> steps;
+    private final int stepCount;
+    private final long scanMillis;
+    private final long totalMillis;
+
+    ProvisioningResult(List<ConnectResult> steps, int stepCount, long scanMillis, long totalMillis) {
+        this.steps = Collections.unmodifiableList(steps);
+        this.stepCount = stepCount;
+        this.scanMillis = scanMillis;
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * @return true if every network of the batch connected
+     */
+    public boolean isSuccessful() {
+        if (steps.size() != stepCount) {
+            return false;
+        }
+        for (ConnectResult step : steps) {
+            if (!step.isConnected()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return results of the steps that ran, in order. Shorter than the batch if it stopped at a
+     * failed step.
+     */
+    public List<ConnectResult> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @param index index of the step
+     * @return milliseconds the step took, -1 if it did not finish
+     */
+    public long getStepMillis(int index) {
+        ConnectionMetrics metrics = steps.get(index).getMetrics();
+        return metrics == null ? -1 : metrics.getTotalMillis();
+    }
+
+    /**
+     * @return milliseconds spent on the scan shared by all steps
+     */
+    public long getScanMillis() {
+        return scanMillis;
+    }
+
+    /**
+     * @return milliseconds from the start of the batch to its end, including the shared scan
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ProvisioningResult{successful=").append(isSuccessful())
+                .append(", scan=").append(scanMillis).append("ms")
+                .append(", total=").append(totalMillis).append("ms");
+        for (int i = 0; i < steps.size(); i++) {
+            builder.append(", ").append(steps.get(i).getSsid()).append('=').append(steps.get(i).getStatus())
+                    .append(' ').append(getStepMillis(i)).append("ms");
+        }
+        return builder.append('}').toString();
+    }
+}
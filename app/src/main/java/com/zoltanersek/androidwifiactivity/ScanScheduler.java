@@ -0,0 +1,312 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.SystemClock;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+import com.zoltanersek.androidwifiactivity.core.TokenBucket;
+import com.zoltanersek.androidwifiactivity.core.WifiPlatform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide gate for wifi scans. Since Android 9 an app may start 4 scans per 2 minutes;
+ * further {@link WifiManager#startScan()} calls are ignored and no result broadcast follows. The
+ * scheduler tracks that budget with a {@link TokenBucket}. When the budget is spent it serves the
+ * last scan results if they are recent enough, otherwise it waits for the next scan the system
+ * runs on its own. A scan whose result broadcast does not arrive within
+ * {@link #SCAN_TIMEOUT_MILLIS} is given up, and its requests get the results the system has.
+ * <p>
+ * A scan can be prewarmed before an attempt needs it, see {@link #prewarm}. Its results are kept
+ * and handed at once to requests that accept results of that age, as the first scan of an
+ * attempt does for the prewarm freshness of its options.
+ * <p>
+ * Must be used from the {@link WifiScheduler} thread; scan broadcasts are handed to that thread
+ * so reading the results never blocks the main thread.
+ */
+public final class ScanScheduler {
+
+    /**
+     * Scans allowed per window on Android 9 and later
+     */
+    static final int SCAN_BUDGET = 4;
+
+    /**
+     * Length of the scan throttling window
+     */
+    static final long SCAN_WINDOW_MILLIS = 2 * 60 * 1000;
+
+    /**
+     * Time after which a started scan whose result broadcast did not arrive is given up
+     */
+    static final long SCAN_TIMEOUT_MILLIS = 10 * 1000;
+
+    private static ScanScheduler instance;
+
+    private final Context context;
+    private final WifiManager wifi;
+    private final TokenBucket budget;
+    private final List<WifiPlatform.ScanListener> pending = new ArrayList<>();
+    private final ScanEventListener scanEventListener = new ScanEventListener();
+    private boolean scanInFlight;
+    private ScheduledFuture<?> scanTimeout;
+    private boolean prewarmPending;
+    private List<AccessPoint> prewarmResults;
+    private long prewarmResultsTime;
+
+    private final AtomicLong scansRequested = new AtomicLong();
+    private final AtomicLong scansStarted = new AtomicLong();
+    private final AtomicLong scansThrottled = new AtomicLong();
+    private final AtomicLong scansServedFromCache = new AtomicLong();
+    private final AtomicLong scansPrewarmed = new AtomicLong();
+    private final AtomicLong scansServedFromPrewarm = new AtomicLong();
+    private final AtomicLong scansTimedOut = new AtomicLong();
+
+    private ScanScheduler(Context context) {
+        this.context = context.getApplicationContext();
+        this.wifi = (WifiManager) this.context.getSystemService(Context.WIFI_SERVICE);
+        this.budget = new TokenBucket(SCAN_BUDGET, SCAN_WINDOW_MILLIS, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @param context any context, the application context is kept
+     * @return the process wide scan scheduler
+     */
+    public static synchronized ScanScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScanScheduler(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @return number of scans requested by connection attempts
+     */
+    public long getScansRequested() {
+        return scansRequested.get();
+    }
+
+    /**
+     * @return number of scans actually started
+     */
+    public long getScansStarted() {
+        return scansStarted.get();
+    }
+
+    /**
+     * @return number of requests that could not start a scan because the budget was spent
+     */
+    public long getScansThrottled() {
+        return scansThrottled.get();
+    }
+
+    /**
+     * @return number of requests answered with recent results without scanning
+     */
+    public long getScansServedFromCache() {
+        return scansServedFromCache.get();
+    }
+
+    /**
+     * @return number of scans started by {@link #prewarm}
+     */
+    public long getScansPrewarmed() {
+        return scansPrewarmed.get();
+    }
+
+    /**
+     * @return number of requests answered with the results of a prewarmed scan
+     */
+    public long getScansServedFromPrewarm() {
+        return scansServedFromPrewarm.get();
+    }
+
+    /**
+     * @return number of started scans whose result broadcast did not arrive in time
+     */
+    public long getScansTimedOut() {
+        return scansTimedOut.get();
+    }
+
+    /**
+     * Scan ahead of a connection attempt. Starts a scan if none is running, none finished within
+     * the window and the budget allows; otherwise the running scan or the next system scan is
+     * kept instead.
+     *
+     * @param freshnessMillis age up to which results already prewarmed are good enough
+     */
+    void prewarm(long freshnessMillis) {
+        long now = SystemClock.elapsedRealtime();
+        if (prewarmResults != null && now - prewarmResultsTime <= freshnessMillis) {
+            return;
+        }
+        prewarmPending = true;
+        register();
+        if (scanInFlight) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P || budget.tryAcquire(now)) {
+            if (wifi.startScan()) {
+                onScanStarted();
+                scansPrewarmed.incrementAndGet();
+                return;
+            }
+            budget.drain(now);
+        }
+        scansThrottled.incrementAndGet();
+    }
+
+    /**
+     * Request scan results. The listener is called once, possibly before this method returns if
+     * the budget is spent and recent results are available.
+     *
+     * @param listener            receives the results
+     * @param maxCacheAgeMillis   how old cached results may be when the budget is spent
+     * @param prewarmMaxAgeMillis how old the results of a prewarmed scan may be, 0 never uses them
+     */
+    void requestScan(WifiPlatform.ScanListener listener, long maxCacheAgeMillis, long prewarmMaxAgeMillis) {
+        scansRequested.incrementAndGet();
+        if (prewarmResults != null && prewarmMaxAgeMillis > 0
+                && SystemClock.elapsedRealtime() - prewarmResultsTime <= prewarmMaxAgeMillis) {
+            scansServedFromPrewarm.incrementAndGet();
+            listener.onScanResults(prewarmResults, true);
+            return;
+        }
+        if (scanInFlight) {
+            // share the results of the running scan
+            pending.add(listener);
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P || budget.tryAcquire(now)) {
+            register();
+            if (wifi.startScan()) {
+                onScanStarted();
+                pending.add(listener);
+                return;
+            }
+            // the platform throttled us earlier than the bucket expected
+            budget.drain(now);
+        }
+        scansThrottled.incrementAndGet();
+        List<ScanResult> cached = wifi.getScanResults();
+        if (isFresh(cached, maxCacheAgeMillis)) {
+            scansServedFromCache.incrementAndGet();
+            listener.onScanResults(AccessPoints.from(cached), true);
+            unregisterIfIdle();
+            return;
+        }
+        // wait for the next scan the system runs
+        register();
+        pending.add(listener);
+    }
+
+    /**
+     * Stop delivering results to a listener
+     *
+     * @param listener the listener passed to {@link #requestScan}
+     */
+    void cancel(WifiPlatform.ScanListener listener) {
+        pending.remove(listener);
+        unregisterIfIdle();
+    }
+
+    /**
+     * @return true if the newest scan result is at most {@code maxAgeMillis} old
+     */
+    private static boolean isFresh(List<ScanResult> scanResults, long maxAgeMillis) {
+        if (scanResults == null || scanResults.isEmpty() || maxAgeMillis <= 0) {
+            return false;
+        }
+        long newest = 0;
+        for (int i = 0, size = scanResults.size(); i < size; i++) {
+            newest = Math.max(newest, scanResults.get(i).timestamp);
+        }
+        // ScanResult.timestamp is in microseconds since boot
+        long ageMillis = SystemClock.elapsedRealtime() - newest / 1000;
+        return ageMillis <= maxAgeMillis;
+    }
+
+    private void onScanStarted() {
+        scanInFlight = true;
+        scansStarted.incrementAndGet();
+        // the broadcast can be lost, for example when the system drops the scan; without it the
+        // running scan would hold every later request
+        scanTimeout = WifiScheduler.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                scanTimeout = null;
+                scansTimedOut.incrementAndGet();
+                deliverScanResults(true);
+            }
+        }, SCAN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void register() {
+        WifiEventHub.getInstance(context).subscribe(scanEventListener);
+    }
+
+    private void unregisterIfIdle() {
+        if (pending.isEmpty() && !prewarmPending) {
+            WifiEventHub.getInstance(context).unsubscribe(scanEventListener);
+        }
+    }
+
+    /**
+     * Receives the scan result broadcasts from the {@link WifiEventHub}
+     */
+    private class ScanEventListener implements WifiEventHub.Listener {
+
+        @Override
+        public void onWifiEvent(Intent intent) {
+            if (!WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(intent.getAction())) {
+                return;
+            }
+            WifiScheduler.get().execute(new Runnable() {
+                @Override
+                public void run() {
+                    deliverScanResults(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Hand the results of the finished scan to the waiting listeners
+     *
+     * @param timedOut true if the scan was given up, the listeners then get the results the
+     *                 system already had and nothing is kept for prewarming
+     */
+    private void deliverScanResults(boolean timedOut) {
+        scanInFlight = false;
+        if (scanTimeout != null) {
+            scanTimeout.cancel(false);
+            scanTimeout = null;
+        }
+        if (pending.isEmpty() && !prewarmPending) {
+            return;
+        }
+        List<AccessPoint> accessPoints = AccessPoints.from(wifi.getScanResults());
+        if (prewarmPending && !timedOut && !accessPoints.isEmpty()) {
+            // keep them for the attempt the scan was prewarmed for; no results at all usually
+            // means the location permission is missing, not that there are no networks
+            prewarmResults = accessPoints;
+            prewarmResultsTime = SystemClock.elapsedRealtime();
+        }
+        prewarmPending = false;
+        List<WifiPlatform.ScanListener> listeners = new ArrayList<>(pending);
+        pending.clear();
+        unregisterIfIdle();
+        for (WifiPlatform.ScanListener listener : listeners) {
+            listener.onScanResults(accessPoints, timedOut);
+        }
+    }
+}
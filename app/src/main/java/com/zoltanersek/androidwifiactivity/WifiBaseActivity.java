@@ -3,19 +3,11 @@ package com.zoltanersek.androidwifiactivity;
 import android.Manifest;
 import android.app.Activity;
 import android.app.AlertDialog;
-import android.app.ProgressDialog;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.location.LocationManager;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.net.wifi.ScanResult;
-import android.net.wifi.WifiConfiguration;
-import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.os.Bundle;
@@ -24,14 +16,12 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.view.ContextThemeWrapper;
 
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectPath;
+import com.zoltanersek.androidwifiactivity.core.ConnectionMetrics;
+import com.zoltanersek.androidwifiactivity.core.ForeignNetworkPolicy;
 import com.zoltanersek.androidwifiactivity.R;
 
-import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-
 /**
  * Subclass this activity when you want to force the connection to a specific wifi network at
  * the start of the activity
@@ -43,14 +33,12 @@ public abstract class WifiBaseActivity extends Activity {
     public static final String OPEN = "Open";
 
     private static final int REQUEST_ENABLE_WIFI = 10;
+    private static final ConnectOptions REMOVE_FOREIGN_NETWORKS = new ConnectOptions.Builder()
+            .setForeignNetworkPolicy(ForeignNetworkPolicy.REMOVE)
+            .build();
 
-    private final ScheduledExecutorService worker =
-            Executors.newSingleThreadScheduledExecutor();
-    private ScheduledFuture taskHandler;
-
-    private ProgressDialog progressDialog;
-    private ScanReceiver scanReceiver;
-    private ConnectionReceiver connectionReceiver;
+    private WifiConnector connector;
+    private ConnectionDialogs dialogs;
 
     /**
      * Get the timeout in seconds for connecting to the wifi network
@@ -73,19 +61,59 @@ public abstract class WifiBaseActivity extends Activity {
      */
     protected abstract String getWifiPass();
 
+    /**
+     * Get the options used when connecting to the wifi network. Override to change them. By
+     * default the activity removes every other network saved on the device, as it always did;
+     * options from a new {@link ConnectOptions.Builder} keep them unless
+     * {@link ConnectOptions.Builder#setForeignNetworkPolicy} sets
+     * {@link ForeignNetworkPolicy#REMOVE}.
+     *
+     * @return connection options
+     */
+    protected ConnectOptions getConnectOptions() {
+        return REMOVE_FOREIGN_NETWORKS;
+    }
+
+    /**
+     * Called when the connection to the wifi network is established
+     *
+     * @param path the way the connection was established
+     */
+    protected void onWifiConnected(ConnectPath path) {
+    }
+
+    /**
+     * Called when a connection attempt has finished, successful or not, with the time each
+     * phase was reached
+     *
+     * @param metrics phase timestamps of the attempt
+     */
+    protected void onConnectionMetrics(ConnectionMetrics metrics) {
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         //handleWIFI();
     }
 
+    /**
+     * Scan for networks before {@link #handleWIFI()} is called, for example in {@code onResume}
+     * while the user still types the network name, so connecting does not wait for a scan. The
+     * results are used for {@link ConnectOptions#getPrewarmFreshnessMillis()} of
+     * {@link #getConnectOptions()}.
+     */
+    protected void prepare() {
+        WifiConnection.prepare(this, getConnectOptions().getPrewarmFreshnessMillis());
+    }
+
     /**
      * Start connecting to specific wifi network
      */
     protected void handleWIFI() {
         WifiManager wifi = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
         if (!wifi.isWifiEnabled()) {
-            showWifiDisabledDialog();
+            ConnectionDialogs.showWifiDisabledDialog(this, this, REQUEST_ENABLE_WIFI);
         }
         else {
             if (!permisionLocationOn()) {
@@ -98,28 +126,6 @@ public abstract class WifiBaseActivity extends Activity {
         }
     }
 
-    /**
-     * Ask user to go to settings and enable wifi
-     */
-    private void showWifiDisabledDialog() {
-        new AlertDialog.Builder(this)
-                .setCancelable(false)
-                .setMessage(getString(R.string.wifi_disabled))
-                .setPositiveButton(getString(R.string.enable_wifi), new DialogInterface.OnClickListener() {
-                    public void onClick(DialogInterface dialog, int which) {
-                        // open settings screen
-                        Intent intent = new Intent(Settings.ACTION_WIFI_SETTINGS);
-                        startActivityForResult(intent, REQUEST_ENABLE_WIFI);
-                    }
-                })
-                .setNegativeButton(getString(R.string.exit_app), new DialogInterface.OnClickListener() {
-
-                    public void onClick(DialogInterface dialog, int which) {
-                        finish();
-                    }
-                })
-                .show();
-    }
     private Boolean permisionLocationOn() {
         boolean permissionGranted = ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
         if (permissionGranted) {
@@ -168,24 +174,6 @@ public abstract class WifiBaseActivity extends Activity {
 
 
 
-    /**
-     * Get the security type of the wireless network
-     *
-     * @param scanResult the wifi scan result
-     * @return one of WEP, PSK of OPEN
-     */
-    private String getScanResultSecurity(ScanResult scanResult) {
-        final String cap = scanResult.capabilities;
-        final String[] securityModes = {WEP, PSK};
-        for (int i = securityModes.length - 1; i >= 0; i--) {
-            if (cap.contains(securityModes[i])) {
-                return securityModes[i];
-            }
-        }
-
-        return OPEN;
-    }
-
     // User has returned from settings screen. Check if wifi is enabled
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
@@ -205,175 +193,37 @@ public abstract class WifiBaseActivity extends Activity {
      * Start to connect to a specific wifi network
      */
     private void connectToSpecificNetwork() {
-        final WifiManager wifi = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-        ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
-        NetworkInfo networkInfo = cm.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
-        WifiInfo wifiInfo = wifi.getConnectionInfo();
-        if (networkInfo.isConnected() && wifiInfo.getSSID().replace("\"", "").equals(getWifiSSID())) {
-            return;
-        }
-        else {
-            wifi.disconnect();
-        }
-        progressDialog = ProgressDialog.show(this, getString(R.string.connecting), String.format(getString(R.string.connecting_to_wifi), getWifiSSID()));
-        taskHandler = worker.schedule(new TimeoutTask(), getSecondsTimeout(), TimeUnit.SECONDS);
-        scanReceiver = new ScanReceiver();
-        registerReceiver(scanReceiver
-                , new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
-        wifi.startScan();
-    }
-
-    /**
-     * Broadcast receiver for connection related events
-     */
-    private class ConnectionReceiver extends BroadcastReceiver {
-
-        WifiManager wifi = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
-            NetworkInfo networkInfo = cm.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
-            WifiInfo wifiInfo = wifi.getConnectionInfo();
-            if (networkInfo.isConnected()) {
-                if (wifiInfo.getSSID().replace("\"", "").equals(getWifiSSID())) {
-                    unregisterReceiver(this);
-                    if (taskHandler != null) {
-                        taskHandler.cancel(true);
-                    }
-                    if (progressDialog != null) {
-                        progressDialog.dismiss();
-                    }
-                }
+        cancelConnection();
+        dialogs = new ConnectionDialogs(this, this, getWifiSSID(), new WifiBase.WifiConnectedListener() {
+            @Override
+            public void onWifiConnected(ConnectPath path) {
+                WifiBaseActivity.this.onWifiConnected(path);
             }
-        }
-    }
-
-
-    /**
-     * Broadcast receiver for wifi scanning related events
-     */
-    private class ScanReceiver extends BroadcastReceiver {
-
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            WifiManager wifi = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-            List<ScanResult> scanResultList = wifi.getScanResults();
-            boolean found = false;
-            String security = null;
-            for (ScanResult scanResult : scanResultList) {
-                if (scanResult.SSID.equals(getWifiSSID())) {
-                    security = getScanResultSecurity(scanResult);
-                    found = true;
-                    break; // found don't need continue
-                }
-            }
-            if (!found) {
-                // if no wifi network with the specified ssid is not found exit
-                if (progressDialog != null) {
-                    progressDialog.dismiss();
-                }
-                new AlertDialog.Builder(WifiBaseActivity.this)
-                        .setCancelable(false)
-                        .setMessage(String.format(getString(R.string.wifi_not_found), getWifiSSID()))
-                        .setPositiveButton(getString(R.string.exit_app), new DialogInterface.OnClickListener() {
-                            public void onClick(DialogInterface dialog, int which) {
-                                unregisterReceiver(ScanReceiver.this);
-                                finish();
-                            }
-                        })
-                        .show();
-            } else {
-                // configure based on security
-                final WifiConfiguration conf = new WifiConfiguration();
-                conf.SSID = "\"" + getWifiSSID() + "\"";
-                switch (security) {
-                    case WEP:
-                        conf.wepKeys[0] = "\"" + getWifiPass() + "\"";
-                        conf.wepTxKeyIndex = 0;
-                        conf.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
-                        conf.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
-                        break;
-                    case PSK:
-                        conf.preSharedKey = "\"" + getWifiPass() + "\"";
-                        break;
-                    case OPEN:
-                        conf.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
-                        break;
-                }
-                connectionReceiver = new ConnectionReceiver();
-                IntentFilter intentFilter = new IntentFilter();
-                intentFilter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
-                intentFilter.addAction(WifiManager.SUPPLICANT_CONNECTION_CHANGE_ACTION);
-                intentFilter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
-                registerReceiver(connectionReceiver, intentFilter);
-                List<WifiConfiguration> list = wifi.getConfiguredNetworks();
-                for( WifiConfiguration i : list ) {
-                    wifi.removeNetwork(i.networkId);
-                    wifi.saveConfiguration();
-                }
-                int netId = wifi.addNetwork(conf);
-                wifi.enableNetwork(netId, true);
-                wifi.reconnect();
-                unregisterReceiver(this);
-
+        }, new WifiBase.ConnectionMetricsListener() {
+            @Override
+            public void onConnectionMetrics(ConnectionMetrics metrics) {
+                WifiBaseActivity.this.onConnectionMetrics(metrics);
             }
-        }
+        });
+        connector = new WifiConnector(this, getWifiSSID(), getWifiPass(), getSecondsTimeout(),
+                getConnectOptions(), dialogs);
+        connector.start();
     }
 
-    /**
-     * Timeout task. Called when timeout is reached
-     */
-    private class TimeoutTask implements Runnable {
-        @Override
-        public void run() {
-            WifiManager wifi = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-            ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
-            NetworkInfo networkInfo = cm.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
-            WifiInfo wifiInfo = wifi.getConnectionInfo();
-            if (networkInfo.isConnected() && wifiInfo.getSSID().replace("\"", "").equals(getWifiSSID())) {
-                try {
-                    unregisterReceiver(connectionReceiver);
-                } catch (Exception ex) {
-                    // ignore if receiver already unregistered
-                }
-                WifiBaseActivity.this.runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        if (progressDialog != null) {
-                            progressDialog.dismiss();
-                        }
-                    }
-                });
-            } else {
-                try {
-                    unregisterReceiver(connectionReceiver);
-                } catch (Exception ex) {
-                    // ignore if receiver already unregistered
-                }
-                WifiBaseActivity.this.runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        if (progressDialog != null) {
-                            progressDialog.dismiss();
-                        }
-                        new AlertDialog.Builder(WifiBaseActivity.this)
-                                .setCancelable(false)
-                                .setMessage(String.format(getString(R.string.wifi_not_connected), getWifiSSID()))
-                                .setPositiveButton(getString(R.string.exit_app), new DialogInterface.OnClickListener() {
-                                    public void onClick(DialogInterface dialog, int which) {
-                                        finish();
-                                    }
-                                })
-                                .show();
-                    }
-
-                });
-            }
+    private void cancelConnection() {
+        if (connector != null) {
+            connector.cancel();
+            connector = null;
+        }
+        if (dialogs != null) {
+            dialogs.dismiss();
+            dialogs = null;
         }
     }
 
-
+    @Override
+    protected void onDestroy() {
+        cancelConnection();
+        super.onDestroy();
+    }
 }
@@ -0,0 +1,216 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectStatus;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Connection attempt without any user interface, for services, background jobs and tools. Start
+ * one with {@link #connect}; the attempt runs on a background thread and no thread waits for it.
+ * Its {@link ConnectResult} is passed to the {@link Listener} on the main thread and is also
+ * available through the {@link Future} methods.
+ * <p>
+ * Wifi must be enabled and, on Android 6 and later, the location permission granted before
+ * connecting; unlike {@link WifiBase} nothing is asked of the user.
+ */
+public final class WifiConnection implements Future<ConnectResult> {
+
+    /**
+     * Receives the result of the attempt, on the main thread
+     */
+    public interface Listener {
+        void onResult(ConnectResult result);
+    }
+
+    private final String ssid;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final WifiConnector connector;
+    private ConnectResult result;
+
+    private WifiConnection(Context context, String ssid, String password, int secondsTimeout,
+                           ConnectOptions options, Listener listener) {
+        this.ssid = ssid;
+        this.listener = listener;
+        this.connector = new WifiConnector(context, ssid, password, secondsTimeout, options,
+                new WifiConnector.Callback() {
+                    @Override
+                    public void onStateChanged(ConnectionState state) {
+                    }
+
+                    @Override
+                    public void onResult(ConnectResult result) {
+                        if (complete(result) && WifiConnection.this.listener != null) {
+                            WifiConnection.this.listener.onResult(result);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Start connecting to a wifi network. May be called from any thread.
+     *
+     * @param context        any context, the application context is kept
+     * @param ssid           SSID of the network
+     * @param password       password of the network, ignored for open networks
+     * @param secondsTimeout time given to the attempt in seconds
+     * @param options        connection options
+     * @param listener       receives the result, may be null
+     * @return the running attempt
+     */
+    public static WifiConnection connect(Context context, String ssid, String password,
+                                         int secondsTimeout, ConnectOptions options,
+                                         Listener listener) {
+        WifiConnection connection = new WifiConnection(context, ssid, password, secondsTimeout,
+                options, listener);
+        connection.connector.start();
+        return connection;
+    }
+
+    /**
+     * Start connecting to a wifi network with the default options
+     *
+     * @see #connect(Context, String, String, int, ConnectOptions, Listener)
+     */
+    public static WifiConnection connect(Context context, String ssid, String password,
+                                         int secondsTimeout, Listener listener) {
+        return connect(context, ssid, password, secondsTimeout, ConnectOptions.DEFAULT, listener);
+    }
+
+    /**
+     * Scan ahead of a connection, for example when a screen opens or while the user types the
+     * password, so the attempt started later finds the results waiting instead of scanning. The
+     * scan counts against the scan budget like any other and is skipped if wifi is disabled.
+     * May be called from any thread. {@link WifiBase} connects as soon as it is created, so
+     * screens using it call this before creating it.
+     *
+     * @param context         any context, the application context is kept
+     * @param freshnessMillis age up to which results already prewarmed are good enough, so no
+     *                        new scan is started; usually
+     *                        {@link ConnectOptions#getPrewarmFreshnessMillis()}
+     */
+    public static void prepare(Context context, final long freshnessMillis) {
+        final Context appContext = context.getApplicationContext();
+        WifiManager wifi = (WifiManager) appContext.getSystemService(Context.WIFI_SERVICE);
+        if (!wifi.isWifiEnabled()) {
+            return;
+        }
+        WifiScheduler.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                ScanScheduler.getInstance(appContext).prewarm(freshnessMillis);
+            }
+        });
+    }
+
+    /**
+     * Disconnect from the network joined last. On Android 10 and later networks are joined with a
+     * network request that keeps the network connected, and the process bound to it, until this
+     * is called or another network is joined. Does nothing on older versions.
+     *
+     * @param context any context
+     */
+    public static void releaseNetwork(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            WifiNetworkRequester.getInstance(context).release();
+        }
+    }
+
+    /**
+     * @return SSID of the network
+     */
+    public String getSsid() {
+        return ssid;
+    }
+
+    private boolean complete(ConnectResult result) {
+        synchronized (this) {
+            if (this.result != null) {
+                return false;
+            }
+            this.result = result;
+        }
+        done.countDown();
+        return true;
+    }
+
+    /**
+     * Stop the attempt. The listener receives a {@link ConnectStatus#CANCELLED} result unless the
+     * attempt had already finished.
+     *
+     * @param mayInterruptIfRunning ignored, no thread runs the attempt
+     * @return false if the attempt had already finished
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final ConnectResult cancelled = ConnectResult.cancelled(ssid, connector.getMetrics());
+        if (!complete(cancelled)) {
+            return false;
+        }
+        connector.cancel();
+        if (listener != null) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onResult(cancelled);
+                }
+            });
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return result != null && result.getStatus() == ConnectStatus.CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return result != null;
+    }
+
+    /**
+     * Wait for the result. Must not be called on the main thread, the result is delivered there.
+     */
+    @Override
+    public ConnectResult get() throws InterruptedException {
+        checkNotMainThread();
+        done.await();
+        return getResult();
+    }
+
+    /**
+     * Wait for the result. Must not be called on the main thread, the result is delivered there.
+     */
+    @Override
+    public ConnectResult get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        checkNotMainThread();
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("connection to " + ssid + " still running");
+        }
+        return getResult();
+    }
+
+    private synchronized ConnectResult getResult() {
+        return result;
+    }
+
+    private static void checkNotMainThread() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("waiting on the main thread would never finish");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.zoltanersek.androidwifiactivity.core.Capabilities;
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectionCoordinator;
+import com.zoltanersek.androidwifiactivity.core.ConnectionEngine;
+import com.zoltanersek.androidwifiactivity.core.ConnectionMetrics;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+import com.zoltanersek.androidwifiactivity.core.NetworkSpec;
+
+/**
+ * Runs a {@link ConnectionEngine} on the Android framework for {@link WifiBase},
+ * {@link WifiBaseActivity} and the other entry points. One instance runs a single attempt to
+ * connect to a wifi network and reports the outcome to a {@link Callback}.
+ * <p>
+ * The engine runs on the shared {@link WifiScheduler} thread, so the calls into the wifi service
+ * never block the main thread. Broadcasts arrive from the {@link WifiEventHub} on the main thread
+ * and are handed to the scheduler; the callback is posted back to the main thread. Every stretch
+ * of work the attempt does on the main thread is timed and reported in the
+ * {@link ConnectionMetrics}.
+ * <p>
+ * All connectors of the process go through one {@link ConnectionCoordinator}: connectors for the
+ * same network with the same password, timeout and options share one attempt, and the other
+ * attempts take turns by the priority of their options instead of disconnecting each other.
+ * Connectors that share an attempt share its metrics; the main thread times are those of the
+ * connector that received the result last.
+ */
+class WifiConnector {
+
+    private static final ConnectionCoordinator COORDINATOR = new ConnectionCoordinator(AndroidEngineLoop.INSTANCE);
+
+    /**
+     * Receives the progress and outcome of a connection attempt, always on the main thread
+     */
+    interface Callback {
+        void onStateChanged(ConnectionState state);
+
+        /**
+         * Called once with the outcome of the attempt. Not called if the attempt is cancelled.
+         */
+        void onResult(ConnectResult result);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MainThreadTimer mainThreadTimer = new MainThreadTimer();
+    private final ConnectionCoordinator.Request request;
+
+    // main thread, except for the flag
+    private volatile boolean cancelled;
+
+    WifiConnector(Context context, String ssid, String pass, int secondsTimeout,
+                  ConnectOptions options, Callback callback) {
+        this.request = COORDINATOR.newRequest(new AndroidWifiPlatform(context, mainThreadTimer), ssid, pass,
+                secondsTimeout, options, new MainThreadCallback(callback));
+    }
+
+    /**
+     * @return the current state of the attempt, {@link ConnectionState#IDLE} while it waits for
+     * another one
+     */
+    ConnectionState getState() {
+        return request.getState();
+    }
+
+    /**
+     * @return the phase timestamps of the attempt, null if it has not started
+     */
+    ConnectionMetrics getMetrics() {
+        return request.getMetrics();
+    }
+
+    /**
+     * Start the attempt. If the device is already connected to the network the attempt reports
+     * it connected without touching the connection. Call from the main thread.
+     */
+    void start() {
+        start(null, -1);
+    }
+
+    /**
+     * Start the attempt with a network built from scan results that are already known, so the
+     * attempt does not scan. If the device is already connected to the network the attempt reports
+     * it connected without touching the connection. Call from the main thread.
+     *
+     * @param spec         the network, built from the scan results
+     * @param capabilities parsed {@link Capabilities} of the network
+     */
+    void start(NetworkSpec spec, int capabilities) {
+        long begin = System.nanoTime();
+        request.start(spec, capabilities);
+        if (MainThreadTimer.isMainThread()) {
+            mainThreadTimer.record(begin);
+        }
+    }
+
+    /**
+     * Stop the attempt and release the receivers and the timeout, unless another connector shares
+     * it. No callback is called after this if it is called on the main thread; from another thread
+     * a callback that is already posted may still run.
+     */
+    void cancel() {
+        cancelled = true;
+        request.cancel();
+    }
+
+    /**
+     * Posts the calls of the engine to the main thread and times them. Drops them once the
+     * attempt is cancelled.
+     */
+    private class MainThreadCallback implements ConnectionEngine.Callback {
+
+        private final Callback delegate;
+
+        MainThreadCallback(Callback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onStateChanged(final ConnectionState state) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled) {
+                        return;
+                    }
+                    long begin = System.nanoTime();
+                    delegate.onStateChanged(state);
+                    mainThreadTimer.record(begin);
+                }
+            });
+        }
+
+        @Override
+        public void onResult(final ConnectResult result) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled) {
+                        return;
+                    }
+                    // everything else the attempt did on the main thread has run by now
+                    result.getMetrics().setMainThreadTime(mainThreadTimer.getMaxNanos(),
+                            mainThreadTimer.getTotalNanos());
+                    delegate.onResult(result);
+                }
+            });
+        }
+    }
+}
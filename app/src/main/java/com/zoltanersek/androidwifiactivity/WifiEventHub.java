@@ -0,0 +1,116 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.WifiManager;
+
+import com.zoltanersek.androidwifiactivity.core.ListenerRegistry;
+
+/**
+ * Process wide source of wifi broadcasts. A single receiver is registered on the application
+ * context while at least one listener is subscribed and every broadcast is passed to all
+ * listeners, so connection attempts never register or unregister receivers themselves.
+ * <p>
+ * Listeners are called on the main thread and should hand any real work to another thread.
+ * Subscribing and unsubscribing is allowed from any thread, including from within
+ * {@link Listener#onWifiEvent(Intent)}.
+ */
+public final class WifiEventHub {
+
+    private static WifiEventHub instance;
+
+    /**
+     * Receives wifi broadcasts
+     */
+    public interface Listener {
+        /**
+         * @param intent one of the {@link WifiManager#SCAN_RESULTS_AVAILABLE_ACTION},
+         *               {@link WifiManager#NETWORK_STATE_CHANGED_ACTION},
+         *               {@link WifiManager#SUPPLICANT_CONNECTION_CHANGE_ACTION} or
+         *               {@link WifiManager#SUPPLICANT_STATE_CHANGED_ACTION} broadcasts
+         */
+        void onWifiEvent(Intent intent);
+    }
+
+    private final Context context;
+    private final HubReceiver receiver = new HubReceiver();
+    private final ListenerRegistry<Listener> listeners = new ListenerRegistry<>(new ListenerRegistry.Source() {
+        @Override
+        public void attach() {
+            IntentFilter intentFilter = new IntentFilter();
+            intentFilter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+            intentFilter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+            intentFilter.addAction(WifiManager.SUPPLICANT_CONNECTION_CHANGE_ACTION);
+            intentFilter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
+            context.registerReceiver(receiver, intentFilter);
+        }
+
+        @Override
+        public void detach() {
+            context.unregisterReceiver(receiver);
+        }
+    });
+
+    private WifiEventHub(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * @param context any context, the application context is kept
+     * @return the process wide event hub
+     */
+    public static synchronized WifiEventHub getInstance(Context context) {
+        if (instance == null) {
+            instance = new WifiEventHub(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Start passing broadcasts to a listener. Subscribing a listener twice has no effect.
+     *
+     * @param listener the listener
+     */
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop passing broadcasts to a listener. Unsubscribing a listener that is not subscribed has
+     * no effect.
+     *
+     * @param listener the listener
+     */
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return number of subscribed listeners
+     */
+    public int getListenerCount() {
+        return listeners.size();
+    }
+
+    /**
+     * @return true if the broadcast receiver is registered
+     */
+    public boolean isRegistered() {
+        return listeners.isAttached();
+    }
+
+    /**
+     * The single receiver of the hub
+     */
+    private class HubReceiver extends BroadcastReceiver {
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            for (Listener listener : listeners) {
+                listener.onWifiEvent(intent);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.NetworkInfo;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.SystemClock;
+
+import com.zoltanersek.androidwifiactivity.core.EventTrace;
+import com.zoltanersek.androidwifiactivity.core.MacAddresses;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Process wide flight recorder for wifi broadcasts. While started it records every scan result,
+ * network state, supplicant state and supplicant connection broadcast the {@link WifiEventHub}
+ * receives into an {@link EventTrace} of the newest {@value #CAPACITY} events, with
+ * {@link SystemClock#elapsedRealtimeNanos()} timestamps. Recording allocates nothing and takes no
+ * lock, so it can stay on in production.
+ * <p>
+ * Export the trace with {@link #writeBinary(OutputStream)} and turn it into JSON lines on a
+ * desktop with {@code EventTraceDecoder}, or export JSON lines directly with
+ * {@link #writeJsonLines(Writer)}.
+ */
+public final class WifiEventRecorder {
+
+    /**
+     * Number of events kept
+     */
+    public static final int CAPACITY = 1024;
+
+    private static WifiEventRecorder instance;
+
+    private final Context context;
+    private final EventTrace trace = new EventTrace(CAPACITY);
+    private final WifiEventHub.Listener hubListener = new WifiEventHub.Listener() {
+        @Override
+        public void onWifiEvent(Intent intent) {
+            record(intent);
+        }
+    };
+
+    private WifiEventRecorder(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * @param context any context, the application context is kept
+     * @return the process wide recorder
+     */
+    public static synchronized WifiEventRecorder getInstance(Context context) {
+        if (instance == null) {
+            instance = new WifiEventRecorder(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Start recording. Does nothing if already recording.
+     */
+    public void start() {
+        WifiEventHub.getInstance(context).subscribe(hubListener);
+    }
+
+    /**
+     * Stop recording. The recorded events are kept.
+     */
+    public void stop() {
+        WifiEventHub.getInstance(context).unsubscribe(hubListener);
+    }
+
+    /**
+     * @return the recorded events
+     */
+    public EventTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Write the recorded events in the binary format of {@link EventTrace}
+     *
+     * @param out destination, not closed
+     * @return number of events written
+     * @throws IOException if writing fails
+     */
+    public int writeBinary(OutputStream out) throws IOException {
+        return trace.writeBinary(out, SystemClock.elapsedRealtimeNanos(), System.currentTimeMillis());
+    }
+
+    /**
+     * Write the recorded events as JSON, one event per line
+     *
+     * @param out destination, not closed
+     * @return number of events written
+     * @throws IOException if writing fails
+     */
+    public int writeJsonLines(Writer out) throws IOException {
+        return trace.writeJsonLines(out, SystemClock.elapsedRealtimeNanos(), System.currentTimeMillis());
+    }
+
+    private void record(Intent intent) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        String action = intent.getAction();
+        if (WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(action)) {
+            int updated = -1;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && intent.hasExtra(WifiManager.EXTRA_RESULTS_UPDATED)) {
+                updated = intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, false) ? 1 : 0;
+            }
+            trace.record(now, EventTrace.SCAN_RESULTS, updated, -1, 0);
+        } else if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(action)) {
+            NetworkInfo networkInfo = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+            int state = networkInfo == null ? -1
+                    : EventTrace.indexOf(EventTrace.NETWORK_STATES, networkInfo.getDetailedState().name());
+            trace.record(now, EventTrace.NETWORK_STATE, state, -1,
+                    MacAddresses.parse(intent.getStringExtra(WifiManager.EXTRA_BSSID)));
+        } else if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(action)) {
+            SupplicantState supplicantState = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
+            int state = supplicantState == null ? -1
+                    : EventTrace.indexOf(EventTrace.SUPPLICANT_STATES, supplicantState.name());
+            trace.record(now, EventTrace.SUPPLICANT_STATE, state,
+                    intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, -1), 0);
+        } else if (WifiManager.SUPPLICANT_CONNECTION_CHANGE_ACTION.equals(action)) {
+            trace.record(now, EventTrace.SUPPLICANT_CONNECTION,
+                    intent.getBooleanExtra(WifiManager.EXTRA_SUPPLICANT_CONNECTED, false) ? 1 : 0, -1, 0);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.MacAddress;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiNetworkSpecifier;
+import android.os.Build;
+
+import com.zoltanersek.androidwifiactivity.core.NetworkSpec;
+import com.zoltanersek.androidwifiactivity.core.SecurityType;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+
+/**
+ * Holds the process wide request for the wifi network joined on Android 10 and later. A network
+ * joined with a {@link WifiNetworkSpecifier} stays connected only while its request is registered,
+ * so the request outlives the connection attempt and is released when another network is
+ * requested or {@link #release()} is called. While the network is available the process is bound
+ * to it, so sockets use it like the network joined by the older path.
+ * <p>
+ * The network callbacks arrive on a framework thread; methods are synchronized.
+ */
+@TargetApi(Build.VERSION_CODES.Q)
+final class WifiNetworkRequester {
+
+    private static WifiNetworkRequester instance;
+
+    /**
+     * Receives the outcome of a request, on a framework thread
+     */
+    interface Listener {
+        void onAvailable();
+
+        void onUnavailable();
+
+        void onLost();
+    }
+
+    private final ConnectivityManager connectivity;
+    private RequestCallback callback;
+
+    private WifiNetworkRequester(Context context) {
+        this.connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    static synchronized WifiNetworkRequester getInstance(Context context) {
+        if (instance == null) {
+            instance = new WifiNetworkRequester(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Request a network, releasing the last request
+     *
+     * @param spec          the network; WEP is not supported
+     * @param timeoutMillis time after which the platform gives up
+     * @param listener      receives the outcome
+     */
+    synchronized void request(NetworkSpec spec, long timeoutMillis, Listener listener) {
+        release();
+        WifiNetworkSpecifier.Builder specifier = new WifiNetworkSpecifier.Builder().setSsid(spec.getSsid().getText());
+        if (spec.getBssid() != null) {
+            specifier.setBssid(MacAddress.fromString(spec.getBssid()));
+        }
+        if (spec.getSecurityType() == SecurityType.PSK) {
+            specifier.setWpa2Passphrase(spec.getPassword());
+        }
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+                // networks joined by a specifier are local only, don't wait for internet access
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .setNetworkSpecifier(specifier.build())
+                .build();
+        callback = new RequestCallback(spec.getSsid(), listener);
+        connectivity.requestNetwork(request, callback, (int) Math.min(Integer.MAX_VALUE, timeoutMillis));
+    }
+
+    /**
+     * Withdraw the request, which disconnects its network
+     */
+    synchronized void release() {
+        if (callback == null) {
+            return;
+        }
+        if (callback.network != null) {
+            connectivity.bindProcessToNetwork(null);
+        }
+        connectivity.unregisterNetworkCallback(callback);
+        callback = null;
+    }
+
+    /**
+     * @return the requested network if it is available, null otherwise
+     */
+    synchronized Network getNetwork() {
+        return callback != null ? callback.network : null;
+    }
+
+    /**
+     * @param ssid SSID of a network
+     * @return the network if it was requested and is available, null otherwise
+     */
+    synchronized Network getNetwork(Ssid ssid) {
+        return callback != null && callback.ssid.equals(ssid) ? callback.network : null;
+    }
+
+    private synchronized boolean isCurrent(RequestCallback requestCallback) {
+        return callback == requestCallback;
+    }
+
+    private synchronized void setNetwork(RequestCallback requestCallback, Network network) {
+        if (callback == requestCallback) {
+            requestCallback.network = network;
+            connectivity.bindProcessToNetwork(network);
+        }
+    }
+
+    private class RequestCallback extends ConnectivityManager.NetworkCallback {
+
+        private final Ssid ssid;
+        private final Listener listener;
+        private Network network;
+
+        RequestCallback(Ssid ssid, Listener listener) {
+            this.ssid = ssid;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onAvailable(Network network) {
+            setNetwork(this, network);
+            if (isCurrent(this)) {
+                listener.onAvailable();
+            }
+        }
+
+        @Override
+        public void onUnavailable() {
+            if (isCurrent(this)) {
+                listener.onUnavailable();
+            }
+        }
+
+        @Override
+        public void onLost(Network network) {
+            setNetwork(this, null);
+            if (isCurrent(this)) {
+                listener.onLost();
+            }
+        }
+    }
+}
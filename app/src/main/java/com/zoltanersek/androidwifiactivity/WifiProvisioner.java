@@ -0,0 +1,281 @@
+package com.zoltanersek.androidwifiactivity;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+import com.zoltanersek.androidwifiactivity.core.BssidSelector;
+import com.zoltanersek.androidwifiactivity.core.Capabilities;
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectionEngine;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+import com.zoltanersek.androidwifiactivity.core.NetworkSpec;
+import com.zoltanersek.androidwifiactivity.core.ScanIndex;
+import com.zoltanersek.androidwifiactivity.core.SecurityType;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+import com.zoltanersek.androidwifiactivity.core.WifiPlatform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connects to a list of wifi networks one after the other, for example a staging network, then a
+ * site network, then a verification network. One scan is shared by all steps and the
+ * configuration of every network found by it is built before the first step starts, so the steps
+ * only associate. A network the shared scan did not find gets a regular attempt with its own
+ * scan when its turn comes. Create instances with {@link Builder}.
+ * <p>
+ * Like {@link WifiConnection} it shows no user interface. Wifi must be enabled and the location
+ * permission granted. The listener is called on the main thread.
+ */
+public final class WifiProvisioner {
+
+    /**
+     * Receives the progress and result of the batch, on the main thread
+     */
+    public interface Listener {
+        /**
+         * @param index  index of the step in the batch
+         * @param result result of the step
+         */
+        void onStepFinished(int index, ConnectResult result);
+
+        void onFinished(ProvisioningResult result);
+    }
+
+    private final Context context;
+    private final List<String> ssids;
+    private final List<String> passwords;
+    private final int secondsTimeout;
+    private final ConnectOptions options;
+    private final boolean stopOnFailure;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // main thread
+    private Listener listener;
+    private NetworkSpec[] specs;
+    private int[] capabilities;
+    private final List<ConnectResult> results = new ArrayList<>();
+    private WifiConnector connector;
+    private WifiPlatform.ScanListener scanListener;
+    private long startTime;
+    private long scanMillis;
+    private boolean cancelled;
+
+    private WifiProvisioner(Context context, Builder builder) {
+        this.context = context.getApplicationContext();
+        this.ssids = new ArrayList<>(builder.ssids);
+        this.passwords = new ArrayList<>(builder.passwords);
+        this.secondsTimeout = builder.secondsTimeout;
+        this.options = builder.options;
+        this.stopOnFailure = builder.stopOnFailure;
+    }
+
+    /**
+     * Start the batch. Call from the main thread, at most once.
+     *
+     * @param listener receives the progress and result
+     */
+    public void start(Listener listener) {
+        if (this.listener != null) {
+            throw new IllegalStateException("already started");
+        }
+        this.listener = listener;
+        startTime = SystemClock.elapsedRealtime();
+        scanListener = new WifiPlatform.ScanListener() {
+            @Override
+            public void onScanResults(List<AccessPoint> accessPoints, boolean fromCache) {
+                prepare(accessPoints);
+            }
+        };
+        WifiScheduler.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                ScanScheduler.getInstance(context).requestScan(scanListener, options.getScanCacheMaxAgeMillis(),
+                        Math.min(options.getPrewarmFreshnessMillis(), options.getScanCacheMaxAgeMillis()));
+            }
+        });
+    }
+
+    /**
+     * Stop the batch. No listener method is called after this. Call from the main thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        if (connector != null) {
+            connector.cancel();
+            connector = null;
+        }
+        final WifiPlatform.ScanListener pendingScan = scanListener;
+        WifiScheduler.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                ScanScheduler.getInstance(context).cancel(pendingScan);
+            }
+        });
+    }
+
+    /**
+     * Build the configurations of all networks found by the shared scan. Runs on the scheduler
+     * thread and hands them to the main thread.
+     */
+    private void prepare(List<AccessPoint> accessPoints) {
+        final NetworkSpec[] specs = new NetworkSpec[ssids.size()];
+        final int[] capabilities = new int[ssids.size()];
+        // one index for all networks instead of a pass over the scan per network
+        ScanIndex index = new ScanIndex(accessPoints);
+        for (int i = 0; i < ssids.size(); i++) {
+            Ssid ssid = Ssid.of(ssids.get(i));
+            AccessPoint accessPoint = BssidSelector.select(index, ssid);
+            if (accessPoint == null) {
+                continue;
+            }
+            capabilities[i] = ConnectionEngine.getCapabilities(accessPoint);
+            SecurityType securityType = Capabilities.getSecurityType(capabilities[i]);
+            if (ConnectionEngine.isSupported(securityType)) {
+                // network requests name the access point, see ConnectionEngine
+                boolean pin = options.isPinBssid() || Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+                specs[i] = new NetworkSpec(ssid, passwords.get(i), securityType,
+                        pin ? accessPoint.getBssid() : null);
+            }
+        }
+        final long scanEnd = SystemClock.elapsedRealtime();
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled) {
+                    return;
+                }
+                WifiProvisioner.this.specs = specs;
+                WifiProvisioner.this.capabilities = capabilities;
+                scanMillis = scanEnd - startTime;
+                startStep(0);
+            }
+        });
+    }
+
+    private void startStep(final int index) {
+        if (index == ssids.size()) {
+            finish();
+            return;
+        }
+        connector = new WifiConnector(context, ssids.get(index), passwords.get(index), secondsTimeout,
+                options, new WifiConnector.Callback() {
+            @Override
+            public void onStateChanged(ConnectionState state) {
+            }
+
+            @Override
+            public void onResult(ConnectResult result) {
+                onStepFinished(index, result);
+            }
+        });
+        if (specs[index] != null) {
+            connector.start(specs[index], capabilities[index]);
+        } else {
+            // not found or not supported by the shared scan, let a regular attempt find out
+            connector.start();
+        }
+    }
+
+    private void onStepFinished(int index, ConnectResult result) {
+        connector = null;
+        results.add(result);
+        listener.onStepFinished(index, result);
+        if (cancelled) {
+            return;
+        }
+        if (!result.isConnected() && stopOnFailure) {
+            finish();
+        } else {
+            startStep(index + 1);
+        }
+    }
+
+    private void finish() {
+        listener.onFinished(new ProvisioningResult(results, ssids.size(), scanMillis,
+                SystemClock.elapsedRealtime() - startTime));
+    }
+
+    /**
+     * Builder for {@link WifiProvisioner}
+     */
+    public static final class Builder {
+
+        private final List<String> ssids = new ArrayList<>();
+        private final List<String> passwords = new ArrayList<>();
+        private int secondsTimeout = 30;
+        private ConnectOptions options = ConnectOptions.DEFAULT;
+        private boolean stopOnFailure = true;
+
+        /**
+         * Add the next network of the batch
+         *
+         * @param ssid     SSID of the network
+         * @param password password of the network, ignored for open networks
+         * @return this builder
+         */
+        public Builder addNetwork(String ssid, String password) {
+            if (ssid == null) {
+                throw new IllegalArgumentException("ssid must not be null");
+            }
+            ssids.add(ssid);
+            passwords.add(password);
+            return this;
+        }
+
+        /**
+         * Set the time given to each step. Defaults to 30 seconds.
+         *
+         * @param seconds timeout of one step in seconds
+         * @return this builder
+         */
+        public Builder setSecondsTimeout(int seconds) {
+            if (seconds <= 0) {
+                throw new IllegalArgumentException("seconds must be positive");
+            }
+            this.secondsTimeout = seconds;
+            return this;
+        }
+
+        /**
+         * Set the options used by every step
+         *
+         * @param options connection options
+         * @return this builder
+         */
+        public Builder setOptions(ConnectOptions options) {
+            if (options == null) {
+                throw new IllegalArgumentException("options must not be null");
+            }
+            this.options = options;
+            return this;
+        }
+
+        /**
+         * Set whether the batch stops at the first step that does not connect. Defaults to true.
+         *
+         * @param stop true to stop at the first failed step
+         * @return this builder
+         */
+        public Builder setStopOnFailure(boolean stop) {
+            this.stopOnFailure = stop;
+            return this;
+        }
+
+        /**
+         * @param context any context, the application context is kept
+         * @return the batch, not started yet
+         */
+        public WifiProvisioner build(Context context) {
+            if (ssids.isEmpty()) {
+                throw new IllegalStateException("no networks added");
+            }
+            return new WifiProvisioner(context, this);
+        }
+    }
+}
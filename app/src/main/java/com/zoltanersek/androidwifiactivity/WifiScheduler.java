@@ -0,0 +1,35 @@
+package com.zoltanersek.androidwifiactivity;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process wide scheduler shared by every connection attempt. A single daemon thread is created
+ * the first time it is needed and lives as long as the process, so creating and destroying
+ * activities does not create new threads.
+ */
+final class WifiScheduler {
+
+    private static ScheduledExecutorService executor;
+
+    private WifiScheduler() {
+    }
+
+    /**
+     * @return the shared scheduled executor
+     */
+    static synchronized ScheduledExecutorService get() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "wifi-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,92 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Platform independent copy of the fields of a wifi scan result that the library uses
+ */
+public final class AccessPoint {
+
+    private final String ssid;
+    private final String bssid;
+    private final String capabilities;
+    private final int level;
+    private final int frequency;
+    private final int channelWidth;
+    private final int ssidHash;
+
+    /**
+     * @param ssid         network name
+     * @param bssid        address of the access point
+     * @param capabilities capabilities string, for example {@code [WPA2-PSK-CCMP][ESS]}
+     * @param level        signal level in dBm
+     * @param frequency    primary channel frequency in MHz
+     */
+    public AccessPoint(String ssid, String bssid, String capabilities, int level, int frequency) {
+        this(ssid, bssid, capabilities, level, frequency, 20);
+    }
+
+    /**
+     * @param ssid         network name
+     * @param bssid        address of the access point
+     * @param capabilities capabilities string, for example {@code [WPA2-PSK-CCMP][ESS]}
+     * @param level        signal level in dBm
+     * @param frequency    primary channel frequency in MHz
+     * @param channelWidth channel width in MHz: 20, 40, 80 or 160
+     */
+    public AccessPoint(String ssid, String bssid, String capabilities, int level, int frequency,
+                       int channelWidth) {
+        this.ssid = ssid;
+        this.bssid = bssid;
+        this.capabilities = capabilities;
+        this.level = level;
+        this.frequency = frequency;
+        this.channelWidth = channelWidth;
+        this.ssidHash = Ssid.hash(ssid);
+    }
+
+    public String getSsid() {
+        return ssid;
+    }
+
+    public String getBssid() {
+        return bssid;
+    }
+
+    public String getCapabilities() {
+        return capabilities;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+
+    public int getChannelWidth() {
+        return channelWidth;
+    }
+
+    /**
+     * @return {@link Ssid#hash(String)} of the SSID, computed once
+     */
+    public int getSsidHash() {
+        return ssidHash;
+    }
+
+    /**
+     * Compare the SSID by its hash first, without allocating
+     *
+     * @param ssid an SSID
+     * @return true if this access point broadcasts the SSID
+     */
+    public boolean hasSsid(Ssid ssid) {
+        return ssidHash == ssid.hashCode() && ssid.matchesText(this.ssid);
+    }
+
+    @Override
+    public String toString() {
+        return "AccessPoint{ssid=" + ssid + ", bssid=" + bssid + ", capabilities=" + capabilities
+                + ", level=" + level + ", frequency=" + frequency + ", channelWidth=" + channelWidth + '}';
+    }
+}
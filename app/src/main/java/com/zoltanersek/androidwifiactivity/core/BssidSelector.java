@@ -0,0 +1,169 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.List;
+
+/**
+ * Picks the access point to join when several access points broadcast the same SSID. Every
+ * candidate is scored by its estimated throughput:
+ * <ul>
+ * <li>signal level, the main term: {@value #LEVEL_POINTS} points per dB between
+ * {@value #LEVEL_FLOOR} and {@value #LEVEL_CEILING} dBm</li>
+ * <li>band: 5 GHz and 6 GHz radios get a bonus, but only when the signal is at least
+ * {@value #BAND_BONUS_MIN_LEVEL} dBm, since they lose more with distance</li>
+ * <li>channel width: a bonus for every doubling above 20 MHz</li>
+ * <li>load: a penalty for every other access point of the scan on the same channel, of any SSID,
+ * because they share the airtime</li>
+ * </ul>
+ */
+public final class BssidSelector {
+
+    static final int LEVEL_FLOOR = -85;
+    static final int LEVEL_CEILING = -45;
+    static final int LEVEL_POINTS = 4;
+    static final int BAND_BONUS_MIN_LEVEL = -75;
+    static final int BAND_5GHZ_BONUS = 30;
+    static final int BAND_6GHZ_BONUS = 40;
+    static final int WIDTH_BONUS = 10;
+    static final int CO_CHANNEL_PENALTY = 5;
+    static final int MAX_CO_CHANNEL_PENALTY = 40;
+
+    /**
+     * Number of channel slots: 2.4 GHz, then 5 GHz, then 6 GHz in 5 MHz steps
+     */
+    private static final int SLOTS_24GHZ = 16;
+    private static final int SLOTS_5GHZ = 200;
+    private static final int SLOTS_6GHZ = 241;
+    static final int SLOT_COUNT = SLOTS_24GHZ + SLOTS_5GHZ + SLOTS_6GHZ;
+
+    private BssidSelector() {
+    }
+
+    /**
+     * Find the best access point of a network
+     *
+     * @param accessPoints the scan results
+     * @param ssid         SSID of the network
+     * @return the access point of the network with the highest {@link #score}, null if there is none
+     */
+    public static AccessPoint select(List<AccessPoint> accessPoints, String ssid) {
+        return select(accessPoints, Ssid.of(ssid));
+    }
+
+    /**
+     * Find the best access point of a network. Runs in two passes over the scan without
+     * allocating anything but the channel occupancy table.
+     *
+     * @param accessPoints the scan results
+     * @param ssid         SSID of the network
+     * @return the access point of the network with the highest {@link #score}, null if there is none
+     */
+    public static AccessPoint select(List<AccessPoint> accessPoints, Ssid ssid) {
+        int size = accessPoints.size();
+        int[] channelCounts = new int[SLOT_COUNT];
+        AccessPoint first = null;
+        int matches = 0;
+        for (int i = 0; i < size; i++) {
+            AccessPoint accessPoint = accessPoints.get(i);
+            int slot = channelSlot(accessPoint.getFrequency());
+            if (slot >= 0) {
+                channelCounts[slot]++;
+            }
+            if (accessPoint.hasSsid(ssid)) {
+                if (first == null) {
+                    first = accessPoint;
+                }
+                matches++;
+            }
+        }
+        if (matches <= 1) {
+            return first;
+        }
+        AccessPoint best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            AccessPoint accessPoint = accessPoints.get(i);
+            if (!accessPoint.hasSsid(ssid)) {
+                continue;
+            }
+            int slot = channelSlot(accessPoint.getFrequency());
+            int score = score(accessPoint, slot >= 0 ? channelCounts[slot] - 1 : 0);
+            if (score > bestScore || (score == bestScore && accessPoint.getLevel() > best.getLevel())) {
+                best = accessPoint;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Find the best access point of a network in an indexed scan, visiting only the access points
+     * of the network and allocating nothing
+     *
+     * @param index the indexed scan results
+     * @param ssid  SSID of the network
+     * @return the access point of the network with the highest {@link #score}, null if there is none
+     */
+    public static AccessPoint select(ScanIndex index, Ssid ssid) {
+        List<AccessPoint> accessPoints = index.getAccessPoints();
+        AccessPoint best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = index.first(ssid); i != -1; i = index.next(i, ssid)) {
+            AccessPoint accessPoint = accessPoints.get(i);
+            int score = score(accessPoint, Math.max(0, index.getChannelCount(accessPoint.getFrequency()) - 1));
+            if (score > bestScore || (score == bestScore && accessPoint.getLevel() > best.getLevel())) {
+                best = accessPoint;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Score an access point, higher is better
+     *
+     * @param accessPoint    the access point
+     * @param coChannelCount number of other access points seen on the same channel
+     * @return the score
+     */
+    public static int score(AccessPoint accessPoint, int coChannelCount) {
+        int level = Math.max(LEVEL_FLOOR, Math.min(LEVEL_CEILING, accessPoint.getLevel()));
+        int score = (level - LEVEL_FLOOR) * LEVEL_POINTS;
+        if (accessPoint.getLevel() >= BAND_BONUS_MIN_LEVEL) {
+            int frequency = accessPoint.getFrequency();
+            if (is6Ghz(frequency)) {
+                score += BAND_6GHZ_BONUS;
+            } else if (is5Ghz(frequency)) {
+                score += BAND_5GHZ_BONUS;
+            }
+        }
+        for (int width = accessPoint.getChannelWidth(); width > 20; width >>= 1) {
+            score += WIDTH_BONUS;
+        }
+        score -= Math.min(MAX_CO_CHANNEL_PENALTY, coChannelCount * CO_CHANNEL_PENALTY);
+        return score;
+    }
+
+    static boolean is5Ghz(int frequency) {
+        return frequency >= 4900 && frequency < 5900;
+    }
+
+    static boolean is6Ghz(int frequency) {
+        return frequency >= 5925 && frequency <= 7125;
+    }
+
+    /**
+     * @return index of the channel in the occupancy table, -1 for frequencies outside the wifi bands
+     */
+    static int channelSlot(int frequency) {
+        if (frequency >= 2407 && frequency < 2407 + SLOTS_24GHZ * 5) {
+            return (frequency - 2407) / 5;
+        }
+        if (is5Ghz(frequency)) {
+            return SLOTS_24GHZ + (frequency - 4900) / 5;
+        }
+        if (is6Ghz(frequency)) {
+            return SLOTS_24GHZ + SLOTS_5GHZ + (frequency - 5925) / 5;
+        }
+        return -1;
+    }
+}
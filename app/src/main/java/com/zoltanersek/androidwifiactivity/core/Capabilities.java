@@ -0,0 +1,178 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Parses the capabilities string of a scan result, for example
+ * {@code [WPA2-PSK-CCMP][RSN-PSK+SAE-CCMP][ESS][WPS]}, into a bitmask of security flags. Parsing
+ * is a single pass over the string and does not allocate.
+ */
+public final class Capabilities {
+
+    /** WEP */
+    public static final int WEP = 1;
+    /** Pre-shared key (WPA/WPA2 personal) */
+    public static final int PSK = 1 << 1;
+    /** Simultaneous authentication of equals (WPA3 personal) */
+    public static final int SAE = 1 << 2;
+    /** 802.1X / EAP (enterprise) */
+    public static final int EAP = 1 << 3;
+    /** 192-bit enterprise (WPA3 enterprise suite B), always set together with {@link #EAP} */
+    public static final int EAP_SUITE_B = 1 << 4;
+    /** Opportunistic wireless encryption (enhanced open) */
+    public static final int OWE = 1 << 5;
+    /** Open network that advertises an OWE transition partner */
+    public static final int OWE_TRANSITION = 1 << 6;
+    /** WAPI */
+    public static final int WAPI = 1 << 7;
+    /** Legacy WPA (version 1) element present */
+    public static final int WPA = 1 << 8;
+    /** RSN (WPA2/WPA3) element present */
+    public static final int RSN = 1 << 9;
+    /** WPA or RSN element with a key management that is not recognized */
+    public static final int UNKNOWN = 1 << 10;
+
+    private static final int SECURED = WEP | PSK | SAE | EAP | OWE | WAPI | UNKNOWN;
+
+    private Capabilities() {
+    }
+
+    /**
+     * Parse a capabilities string
+     *
+     * @param capabilities the capabilities of a scan result, may be null
+     * @return bitmask of the flags defined in this class
+     */
+    public static int parse(String capabilities) {
+        if (capabilities == null) {
+            return 0;
+        }
+        int mask = 0;
+        int length = capabilities.length();
+        int i = 0;
+        while (i < length) {
+            int open = capabilities.indexOf('[', i);
+            if (open < 0) {
+                break;
+            }
+            int close = capabilities.indexOf(']', open + 1);
+            if (close < 0) {
+                close = length;
+            }
+            mask |= parseElement(capabilities, open + 1, close);
+            i = close + 1;
+        }
+        return mask;
+    }
+
+    /**
+     * @param mask parsed capabilities
+     * @return true if the network has no security
+     */
+    public static boolean isOpen(int mask) {
+        return (mask & SECURED) == 0;
+    }
+
+    /**
+     * Choose the security type to join a network with. When a network offers more than one, the
+     * most widely supported one wins, so a WPA2/WPA3 transition network is joined with PSK.
+     *
+     * @param mask parsed capabilities
+     * @return the security type
+     */
+    public static SecurityType getSecurityType(int mask) {
+        if ((mask & PSK) != 0) {
+            return SecurityType.PSK;
+        } else if ((mask & SAE) != 0) {
+            return SecurityType.SAE;
+        } else if ((mask & EAP) != 0) {
+            return SecurityType.EAP;
+        } else if ((mask & OWE) != 0) {
+            return SecurityType.OWE;
+        } else if ((mask & WAPI) != 0) {
+            return SecurityType.WAPI;
+        } else if ((mask & WEP) != 0) {
+            return SecurityType.WEP;
+        } else if ((mask & UNKNOWN) != 0) {
+            return SecurityType.UNKNOWN;
+        }
+        return SecurityType.OPEN;
+    }
+
+    /**
+     * Parse one bracketed element, {@code PROTOCOL-KEYMGMT[+KEYMGMT...]-CIPHERS}
+     */
+    private static int parseElement(String s, int start, int end) {
+        int dash = indexOf(s, '-', start, end);
+        int protocolEnd = dash < 0 ? end : dash;
+        int mask;
+        if (matches(s, start, protocolEnd, "WEP")) {
+            return WEP;
+        } else if (matches(s, start, protocolEnd, "OWE_TRANSITION")) {
+            return OWE_TRANSITION;
+        } else if (matches(s, start, protocolEnd, "WAPI")) {
+            return WAPI;
+        } else if (matches(s, start, protocolEnd, "WPA")) {
+            mask = WPA;
+        } else if (matches(s, start, protocolEnd, "WPA2") || matches(s, start, protocolEnd, "RSN")) {
+            mask = RSN;
+        } else {
+            // ESS, IBSS, WPS, MFPR, ...
+            return 0;
+        }
+        if (dash < 0) {
+            return mask | UNKNOWN;
+        }
+        int keyManagementEnd = indexOf(s, '-', dash + 1, end);
+        if (keyManagementEnd < 0) {
+            keyManagementEnd = end;
+        }
+        int keyManagement = 0;
+        int i = dash + 1;
+        while (i < keyManagementEnd) {
+            int plus = indexOf(s, '+', i, keyManagementEnd);
+            if (plus < 0) {
+                plus = keyManagementEnd;
+            }
+            keyManagement |= parseKeyManagement(s, i, plus);
+            i = plus + 1;
+        }
+        return mask | (keyManagement == 0 ? UNKNOWN : keyManagement);
+    }
+
+    private static int parseKeyManagement(String s, int start, int end) {
+        // fast transition variants: FT/PSK, FT/EAP, FT/SAE
+        if (s.startsWith("FT/", start)) {
+            start += 3;
+        }
+        // hash suffixes such as EAP/SHA1
+        int slash = indexOf(s, '/', start, end);
+        if (slash >= 0) {
+            end = slash;
+        }
+        if (matches(s, start, end, "PSK")) {
+            return PSK;
+        } else if (matches(s, start, end, "SAE")) {
+            return SAE;
+        } else if (matches(s, start, end, "EAP") || matches(s, start, end, "IEEE8021X")
+                || matches(s, start, end, "FILS")) {
+            return EAP;
+        } else if (matches(s, start, end, "EAP_SUITE_B_192")) {
+            return EAP | EAP_SUITE_B;
+        } else if (matches(s, start, end, "OWE")) {
+            return OWE;
+        }
+        return 0;
+    }
+
+    private static boolean matches(String s, int start, int end, String token) {
+        return end - start == token.length() && s.regionMatches(start, token, 0, token.length());
+    }
+
+    private static int indexOf(String s, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,51 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Cache of parsed {@link Capabilities} keyed by the capabilities string. A scan contains only a
+ * handful of distinct capability strings, so after the first scan every lookup is a hit and does
+ * not allocate. Entries are immutable, so the cache can be shared between threads without locks;
+ * a race at worst parses the same string twice.
+ */
+public final class CapabilityCache {
+
+    private final Entry[] table;
+    private final int indexMask;
+
+    /**
+     * @param size number of entries, rounded up to a power of two
+     */
+    public CapabilityCache(int size) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.table = new Entry[capacity];
+        this.indexMask = capacity - 1;
+    }
+
+    /**
+     * @param capabilities the capabilities of a scan result, may be null
+     * @return the parsed capabilities
+     */
+    public int get(String capabilities) {
+        if (capabilities == null) {
+            return 0;
+        }
+        int hash = capabilities.hashCode();
+        int index = (hash ^ (hash >>> 16)) & indexMask;
+        Entry entry = table[index];
+        if (entry != null && entry.capabilities.equals(capabilities)) {
+            return entry.mask;
+        }
+        int mask = Capabilities.parse(capabilities);
+        table[index] = new Entry(capabilities, mask);
+        return mask;
+    }
+
+    private static final class Entry {
+        final String capabilities;
+        final int mask;
+
+        Entry(String capabilities, int mask) {
+            this.capabilities = capabilities;
+            this.mask = mask;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Durations of successful connections per SSID, used to derive a connection timeout that fails
+ * fast on networks that are not going to connect without cutting off slow networks that do.
+ * <p>
+ * The timeout is a high percentile of the recorded durations times a margin, never lower than
+ * {@link #MIN_TIMEOUT_MILLIS} and never higher than the timeout the caller asked for. Until a
+ * network has {@link #MIN_SAMPLES} samples the caller's timeout is used unchanged.
+ * <p>
+ * The history serializes to a compact binary form: a magic number and version, then for each
+ * network its SSID, sample count and the samples as milliseconds. Methods are synchronized so the
+ * history can be recorded on one thread and written out on another.
+ */
+public final class ConnectDurationHistory {
+
+    /**
+     * Samples kept per network, older samples are overwritten
+     */
+    public static final int MAX_SAMPLES = 32;
+
+    /**
+     * Samples needed before the timeout adapts
+     */
+    public static final int MIN_SAMPLES = 5;
+
+    /**
+     * Lower bound of an adapted timeout
+     */
+    public static final long MIN_TIMEOUT_MILLIS = 3000;
+
+    private static final int MAGIC = 0x57434448; // "WCDH"
+    private static final int VERSION = 1;
+    private static final int PERCENTILE = 95;
+    private static final int MARGIN_PERCENT = 150;
+
+    private final LinkedHashMap<String, Samples> networks;
+
+    /**
+     * @param maxNetworks number of networks kept, the least recently used is dropped first
+     */
+    public ConnectDurationHistory(final int maxNetworks) {
+        this.networks = new LinkedHashMap<String, Samples>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Samples> eldest) {
+                return size() > maxNetworks;
+            }
+        };
+    }
+
+    /**
+     * Record a successful connection
+     *
+     * @param ssid           SSID of the network
+     * @param durationMillis time from the start of the attempt to connected
+     */
+    public synchronized void record(String ssid, long durationMillis) {
+        Samples samples = networks.get(ssid);
+        if (samples == null) {
+            samples = new Samples();
+            networks.put(ssid, samples);
+        }
+        samples.add((int) Math.min(Integer.MAX_VALUE, Math.max(0, durationMillis)));
+    }
+
+    /**
+     * @param ssid SSID of the network
+     * @return number of samples recorded for the network
+     */
+    public synchronized int getSampleCount(String ssid) {
+        Samples samples = networks.get(ssid);
+        return samples == null ? 0 : samples.count;
+    }
+
+    /**
+     * Get the timeout for a connection attempt
+     *
+     * @param ssid                SSID of the network
+     * @param callerTimeoutMillis the timeout the caller asked for, an upper bound
+     * @return the timeout in milliseconds
+     */
+    public synchronized long getTimeoutMillis(String ssid, long callerTimeoutMillis) {
+        Samples samples = networks.get(ssid);
+        if (samples == null || samples.count < MIN_SAMPLES) {
+            return callerTimeoutMillis;
+        }
+        long timeout = samples.percentile(PERCENTILE) * MARGIN_PERCENT / 100;
+        return Math.min(callerTimeoutMillis, Math.max(MIN_TIMEOUT_MILLIS, timeout));
+    }
+
+    /**
+     * @return the history in its binary form
+     */
+    public synchronized byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + networks.size() * (32 + MAX_SAMPLES * 4));
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(networks.size());
+            // least recently used first so reading restores the order
+            for (Map.Entry<String, Samples> entry : networks.entrySet()) {
+                Samples samples = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeByte(samples.count);
+                for (int i = 0; i < samples.count; i++) {
+                    // oldest first
+                    out.writeInt(samples.values[(samples.next - samples.count + i + MAX_SAMPLES) % MAX_SAMPLES]);
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // can't happen with a byte array stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replace the content of the history with its binary form. Data that can't be read is
+     * dropped and the history is left empty.
+     *
+     * @param data bytes produced by {@link #toByteArray()}
+     * @return true if the data was read
+     */
+    public synchronized boolean load(byte[] data) {
+        networks.clear();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                return false;
+            }
+            int networkCount = in.readUnsignedShort();
+            for (int n = 0; n < networkCount; n++) {
+                String ssid = in.readUTF();
+                int count = in.readUnsignedByte();
+                if (count > MAX_SAMPLES) {
+                    throw new IOException("too many samples");
+                }
+                Samples samples = new Samples();
+                for (int i = 0; i < count; i++) {
+                    int value = in.readInt();
+                    if (value < 0) {
+                        throw new IOException("negative sample");
+                    }
+                    samples.add(value);
+                }
+                networks.put(ssid, samples);
+            }
+            return true;
+        } catch (IOException e) {
+            networks.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Fixed size ring of samples
+     */
+    private static final class Samples {
+        final int[] values = new int[MAX_SAMPLES];
+        int next;
+        int count;
+
+        void add(int value) {
+            values[next] = value;
+            next = (next + 1) % MAX_SAMPLES;
+            if (count < MAX_SAMPLES) {
+                count++;
+            }
+        }
+
+        long percentile(int percentile) {
+            int[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Options that tune how a connection to the wifi network is made. Create instances with
+ * {@link Builder}.
+ */
+public final class ConnectOptions {
+
+    /**
+     * Options used when none are supplied
+     */
+    public static final ConnectOptions DEFAULT = new Builder().build();
+
+    private final boolean savedNetworkFastPath;
+    private final int savedNetworkTimeoutSeconds;
+    private final ForeignNetworkPolicy foreignNetworkPolicy;
+    private final long scanCacheMaxAgeMillis;
+    private final boolean adaptiveTimeout;
+    private final boolean networkCache;
+    private final int networkCacheSize;
+    private final boolean pinBssid;
+    private final RetryPolicy retryPolicy;
+    private final int priority;
+    private final long prewarmFreshnessMillis;
+    private final ReachabilityProbe reachabilityProbe;
+
+    private ConnectOptions(Builder builder) {
+        this.savedNetworkFastPath = builder.savedNetworkFastPath;
+        this.savedNetworkTimeoutSeconds = builder.savedNetworkTimeoutSeconds;
+        this.foreignNetworkPolicy = builder.foreignNetworkPolicy;
+        this.scanCacheMaxAgeMillis = builder.scanCacheMaxAgeMillis;
+        this.adaptiveTimeout = builder.adaptiveTimeout;
+        this.networkCache = builder.networkCache;
+        this.networkCacheSize = builder.networkCacheSize;
+        this.pinBssid = builder.pinBssid;
+        this.retryPolicy = builder.retryPolicy;
+        this.priority = builder.priority;
+        this.prewarmFreshnessMillis = builder.prewarmFreshnessMillis;
+        this.reachabilityProbe = builder.reachabilityProbe;
+    }
+
+    /**
+     * @return true if an already saved network should be enabled directly, without a scan
+     */
+    public boolean isSavedNetworkFastPath() {
+        return savedNetworkFastPath;
+    }
+
+    /**
+     * Get the time given to a saved network to associate before falling back to a scan
+     *
+     * @return saved network association timeout in seconds
+     */
+    public int getSavedNetworkTimeoutSeconds() {
+        return savedNetworkTimeoutSeconds;
+    }
+
+    /**
+     * @return what to do with configured networks that are not the network being connected to
+     */
+    public ForeignNetworkPolicy getForeignNetworkPolicy() {
+        return foreignNetworkPolicy;
+    }
+
+    /**
+     * @return how old cached scan results may be when no scan can be started
+     */
+    public long getScanCacheMaxAgeMillis() {
+        return scanCacheMaxAgeMillis;
+    }
+
+    /**
+     * @return true if the timeout adapts to how long the network took to connect before
+     */
+    public boolean isAdaptiveTimeout() {
+        return adaptiveTimeout;
+    }
+
+    /**
+     * @return true if networks joined before are configured from the connection cache without a scan
+     */
+    public boolean isNetworkCache() {
+        return networkCache;
+    }
+
+    /**
+     * @return number of networks kept in the connection cache
+     */
+    public int getNetworkCacheSize() {
+        return networkCacheSize;
+    }
+
+    /**
+     * @return true if the configuration is pinned to the best access point of the scan
+     */
+    public boolean isPinBssid() {
+        return pinBssid;
+    }
+
+    /**
+     * @return how failed attempts are retried
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @return priority of the attempt over attempts for other networks
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return how long the results of a prewarmed scan are used instead of scanning again
+     */
+    public long getPrewarmFreshnessMillis() {
+        return prewarmFreshnessMillis;
+    }
+
+    /**
+     * @return the probe that checks traffic flows before the attempt succeeds, null if the
+     * attempt succeeds once the network is connected
+     */
+    public ReachabilityProbe getReachabilityProbe() {
+        return reachabilityProbe;
+    }
+
+    /**
+     * @return true if an attempt made with these options runs the same as one made with the other
+     * options; only the priority may differ. The retry policy and the probe must be the same
+     * instances.
+     */
+    boolean isSameAttempt(ConnectOptions other) {
+        return other == this || (savedNetworkFastPath == other.savedNetworkFastPath
+                && savedNetworkTimeoutSeconds == other.savedNetworkTimeoutSeconds
+                && foreignNetworkPolicy == other.foreignNetworkPolicy
+                && scanCacheMaxAgeMillis == other.scanCacheMaxAgeMillis
+                && adaptiveTimeout == other.adaptiveTimeout
+                && networkCache == other.networkCache
+                && networkCacheSize == other.networkCacheSize
+                && pinBssid == other.pinBssid
+                && retryPolicy == other.retryPolicy
+                && prewarmFreshnessMillis == other.prewarmFreshnessMillis
+                && reachabilityProbe == other.reachabilityProbe);
+    }
+
+    /**
+     * Builder for {@link ConnectOptions}
+     */
+    public static final class Builder {
+
+        private boolean savedNetworkFastPath;
+        private int savedNetworkTimeoutSeconds = 8;
+        private ForeignNetworkPolicy foreignNetworkPolicy = ForeignNetworkPolicy.KEEP;
+        private long scanCacheMaxAgeMillis = 30 * 1000;
+        private boolean adaptiveTimeout;
+        private boolean networkCache;
+        private int networkCacheSize = 32;
+        private boolean pinBssid;
+        private RetryPolicy retryPolicy = RetryPolicy.NONE;
+        private int priority;
+        private long prewarmFreshnessMillis = 20 * 1000;
+        private ReachabilityProbe reachabilityProbe;
+
+        /**
+         * Skip the scan when the network is already saved on the device. If the saved network
+         * fails to associate the regular scan based connection is used.
+         *
+         * @param enabled true to enable the saved network fast path
+         * @return this builder
+         */
+        public Builder setSavedNetworkFastPath(boolean enabled) {
+            this.savedNetworkFastPath = enabled;
+            return this;
+        }
+
+        /**
+         * Set the time given to a saved network to associate before falling back to a scan.
+         * The connection timeout still bounds this value.
+         *
+         * @param seconds saved network association timeout in seconds
+         * @return this builder
+         */
+        public Builder setSavedNetworkTimeoutSeconds(int seconds) {
+            if (seconds <= 0) {
+                throw new IllegalArgumentException("seconds must be positive");
+            }
+            this.savedNetworkTimeoutSeconds = seconds;
+            return this;
+        }
+
+        /**
+         * Set what to do with configured networks that are not the network being connected to.
+         * Defaults to {@link ForeignNetworkPolicy#KEEP}; {@link ForeignNetworkPolicy#REMOVE}
+         * deletes every other network saved on the device.
+         *
+         * @param policy foreign network policy
+         * @return this builder
+         */
+        public Builder setForeignNetworkPolicy(ForeignNetworkPolicy policy) {
+            if (policy == null) {
+                throw new IllegalArgumentException("policy must not be null");
+            }
+            this.foreignNetworkPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Set how old cached scan results may be when the scan budget of the platform is spent.
+         * Older results are not used and the attempt waits for the next system scan instead.
+         * Defaults to 30 seconds, 0 never uses cached results.
+         *
+         * @param maxAgeMillis maximum age of cached scan results in milliseconds
+         * @return this builder
+         */
+        public Builder setScanCacheMaxAgeMillis(long maxAgeMillis) {
+            if (maxAgeMillis < 0) {
+                throw new IllegalArgumentException("maxAgeMillis must not be negative");
+            }
+            this.scanCacheMaxAgeMillis = maxAgeMillis;
+            return this;
+        }
+
+        /**
+         * Derive the timeout from the durations of earlier successful connections to the same
+         * network, so attempts that are not going to connect fail sooner. The timeout of the
+         * caller stays the upper bound. Only attempts that connected on their first try after a
+         * scan that actually ran are recorded. The durations are stored in the app's files
+         * directory.
+         *
+         * @param enabled true to enable the adaptive timeout
+         * @return this builder
+         */
+        public Builder setAdaptiveTimeout(boolean enabled) {
+            this.adaptiveTimeout = enabled;
+            return this;
+        }
+
+        /**
+         * Remember the security, access point and channel of every network joined and use them
+         * to configure the network without a scan next time. If the cached configuration fails
+         * to associate the regular scan based connection is used. The cache is stored in the
+         * app's files directory.
+         *
+         * @param enabled true to enable the connection cache
+         * @return this builder
+         */
+        public Builder setNetworkCache(boolean enabled) {
+            this.networkCache = enabled;
+            return this;
+        }
+
+        /**
+         * Set the number of networks kept in the connection cache, the least recently used
+         * network is dropped first. Defaults to 32.
+         *
+         * @param size number of networks
+         * @return this builder
+         */
+        public Builder setNetworkCacheSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("size must be positive");
+            }
+            this.networkCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Pin the configuration to the access point with the best expected throughput when
+         * several access points broadcast the network, instead of leaving the choice to the
+         * platform. Signal, band, channel width and channel load decide. A pinned access point
+         * that fails to associate is not replaced by another one before the timeout.
+         *
+         * @param enabled true to pin the best access point
+         * @return this builder
+         */
+        public Builder setPinBssid(boolean enabled) {
+            this.pinBssid = enabled;
+            return this;
+        }
+
+        /**
+         * Retry an attempt that failed because the network was not found, rejected the
+         * credentials or did not connect in time, instead of failing at once. Every attempt gets
+         * the full timeout. A retry reuses the scan results of the previous attempt while they
+         * are within {@link #setScanCacheMaxAgeMillis}, unless the network was not found in them.
+         * Defaults to {@link RetryPolicy#NONE}.
+         *
+         * @param policy retry policy
+         * @return this builder
+         */
+        public Builder setRetryPolicy(RetryPolicy policy) {
+            if (policy == null) {
+                throw new IllegalArgumentException("policy must not be null");
+            }
+            this.retryPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Set the priority of the attempt when attempts for several networks are made at once.
+         * Only one attempt runs at a time; the others wait, the highest priority first. An
+         * attempt with a higher priority takes over from one that is still scanning or waiting
+         * to retry, but never from one that is associating. Defaults to 0.
+         *
+         * @param priority priority, higher runs first
+         * @return this builder
+         * @see ConnectionCoordinator
+         */
+        public Builder setPriority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Set how long the results of a scan prewarmed before the attempt, for example while the
+         * user types the password, are used instead of scanning again. Networks that appear
+         * later are not seen within the window. Only the first scan of the attempt uses them,
+         * and never when they are older than {@link #setScanCacheMaxAgeMillis}. Defaults to
+         * 20 seconds.
+         *
+         * @param freshnessMillis freshness window in milliseconds
+         * @return this builder
+         * @see WifiPlatform#prewarmScan(long)
+         */
+        public Builder setPrewarmFreshnessMillis(long freshnessMillis) {
+            if (freshnessMillis <= 0) {
+                throw new IllegalArgumentException("freshnessMillis must be positive");
+            }
+            this.prewarmFreshnessMillis = freshnessMillis;
+            return this;
+        }
+
+        /**
+         * Check that traffic flows over the network before the attempt succeeds. A connected
+         * network may not have an IP address yet or sit behind a captive portal; the attempt
+         * then ends with {@link ConnectStatus#UNREACHABLE} or {@link ConnectStatus#CAPTIVE_PORTAL}.
+         * The probe runs once the network is connected, with its own timeouts instead of the
+         * connection timeout. Needs the INTERNET permission. Not set by default.
+         *
+         * @param probe the probe, null to succeed once the network is connected
+         * @return this builder
+         */
+        public Builder setReachabilityProbe(ReachabilityProbe probe) {
+            this.reachabilityProbe = probe;
+            return this;
+        }
+
+        public ConnectOptions build() {
+            return new ConnectOptions(this);
+        }
+    }
+}
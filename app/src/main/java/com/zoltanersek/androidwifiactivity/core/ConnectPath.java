@@ -0,0 +1,34 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * The way a connection to the wifi network was established
+ */
+public enum ConnectPath {
+
+    /**
+     * The device was already connected to the network, nothing was changed
+     */
+    ALREADY_CONNECTED,
+
+    /**
+     * The network was already saved on the device and was enabled directly, without a scan
+     */
+    SAVED_NETWORK,
+
+    /**
+     * The network was configured from the connection cache of an earlier successful connection,
+     * without a scan
+     */
+    CACHED,
+
+    /**
+     * The network was found by a scan and configured from the scan result
+     */
+    SCAN,
+
+    /**
+     * The network was configured from scan results shared by the steps of a
+     * {@code WifiProvisioner} batch, the attempt did not scan itself
+     */
+    SHARED_SCAN
+}
@@ -0,0 +1,81 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Result of a finished connection attempt
+ */
+public final class ConnectResult {
+
+    private final ConnectStatus status;
+    private final String ssid;
+    private final ConnectPath path;
+    private final SecurityType securityType;
+    private final ConnectionMetrics metrics;
+
+    ConnectResult(ConnectStatus status, String ssid, ConnectPath path, SecurityType securityType,
+                  ConnectionMetrics metrics) {
+        this.status = status;
+        this.ssid = ssid;
+        this.path = path;
+        this.securityType = securityType;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param ssid    SSID of the network
+     * @param metrics the phase timestamps of the attempt so far, may be null
+     * @return the result of an attempt that was cancelled
+     */
+    public static ConnectResult cancelled(String ssid, ConnectionMetrics metrics) {
+        return new ConnectResult(ConnectStatus.CANCELLED, ssid, null, null, metrics);
+    }
+
+    /**
+     * @return the outcome of the attempt
+     */
+    public ConnectStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the device is connected to the network
+     */
+    public boolean isConnected() {
+        return status == ConnectStatus.CONNECTED;
+    }
+
+    /**
+     * @return SSID of the network
+     */
+    public String getSsid() {
+        return ssid;
+    }
+
+    /**
+     * @return the way the connection was made or last tried, null if the attempt never got past the start
+     */
+    public ConnectPath getPath() {
+        return path;
+    }
+
+    /**
+     * @return security type of the network if the status is {@link ConnectStatus#UNSUPPORTED_SECURITY},
+     * null otherwise
+     */
+    public SecurityType getSecurityType() {
+        return securityType;
+    }
+
+    /**
+     * @return the phase timestamps of the attempt, null if it was cancelled before it started
+     */
+    public ConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectResult{status=" + status + ", ssid=" + ssid + ", path=" + path
+                + (securityType != null ? ", securityType=" + securityType : "")
+                + ", metrics=" + metrics + '}';
+    }
+}
@@ -0,0 +1,49 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Outcome of a connection attempt
+ */
+public enum ConnectStatus {
+
+    /**
+     * The device is connected to the network
+     */
+    CONNECTED,
+
+    /**
+     * No network with the SSID was found by the scan
+     */
+    NOT_FOUND,
+
+    /**
+     * The network rejected the credentials
+     */
+    AUTH_FAILED,
+
+    /**
+     * The network did not connect before the timeout, or the platform gave up on the network
+     * request
+     */
+    TIMEOUT,
+
+    /**
+     * The network connected but a captive portal answered the {@link ReachabilityProbe}. The
+     * network stays connected so the user can sign in.
+     */
+    CAPTIVE_PORTAL,
+
+    /**
+     * The network connected but the {@link ReachabilityProbe} never got through
+     */
+    UNREACHABLE,
+
+    /**
+     * The network uses a security type that can't be configured
+     */
+    UNSUPPORTED_SECURITY,
+
+    /**
+     * The attempt was cancelled before it finished
+     */
+    CANCELLED
+}
@@ -0,0 +1,365 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs one connection attempt at a time for all callers of a process, so two screens that connect
+ * at once don't disconnect each other, scan twice and rewrite each other's configurations.
+ * <p>
+ * Requests for the network of the attempt in flight, or of one already waiting, join it if their
+ * password, timeout and options match, only the priority may differ: they share its
+ * {@link ConnectionEngine} and all receive its progress and result. Other requests wait as
+ * attempts of their own, in order of {@link ConnectOptions#getPriority() priority}, then arrival.
+ * An attempt runs on the platform of its first request that is still live. A request with a higher priority
+ * than the attempt in flight takes over while that attempt is only scanning or waiting to retry;
+ * once it associates it is never interrupted. A displaced attempt waits to run again and its
+ * callers see {@link ConnectionState#IDLE}.
+ * <p>
+ * All state is confined to the {@link EngineLoop}. The methods of {@link Request} may be called
+ * from any thread and hand over to the loop; callbacks are called on the loop.
+ */
+public final class ConnectionCoordinator {
+
+    private final EngineLoop loop;
+
+    // engine loop
+    private Flight active;
+    private final List<Flight> waiting = new ArrayList<>();
+    private long nextSequence;
+    private int enginesStarted;
+    private int requestsJoined;
+    private int preemptions;
+
+    /**
+     * @param loop the loop the engines of all requests run on
+     */
+    public ConnectionCoordinator(EngineLoop loop) {
+        this.loop = loop;
+    }
+
+    /**
+     * Create a request; it takes part in the coordination once started
+     *
+     * @param platform       the wifi services on the loop of the coordinator, used if the request
+     *                       starts an attempt
+     * @param ssid           SSID of the network
+     * @param pass           password of the network, ignored for open networks
+     * @param secondsTimeout time given to the attempt in seconds
+     * @param options        connection options
+     * @param callback       receives the progress and outcome
+     * @return the request
+     */
+    public Request newRequest(WifiPlatform platform, String ssid, String pass, int secondsTimeout,
+                              ConnectOptions options, ConnectionEngine.Callback callback) {
+        return new Request(platform, ssid, pass, secondsTimeout, options, callback);
+    }
+
+    /**
+     * @return number of attempts started, including attempts that run again after being displaced
+     */
+    public int getEnginesStarted() {
+        return enginesStarted;
+    }
+
+    /**
+     * @return number of requests that joined an attempt in flight or waiting
+     */
+    public int getRequestsJoined() {
+        return requestsJoined;
+    }
+
+    /**
+     * @return number of attempts displaced by a request with a higher priority
+     */
+    public int getPreemptions() {
+        return preemptions;
+    }
+
+    /**
+     * A request to connect to a network, the handle of one caller
+     */
+    public final class Request {
+
+        private final WifiPlatform platform;
+        private final String ssid;
+        private final String pass;
+        private final int secondsTimeout;
+        private final ConnectOptions options;
+        private final ConnectionEngine.Callback callback;
+
+        // engine loop
+        private Flight flight;
+        private boolean started;
+        private boolean cancelled;
+
+        private Request(WifiPlatform platform, String ssid, String pass, int secondsTimeout,
+                        ConnectOptions options, ConnectionEngine.Callback callback) {
+            this.platform = platform;
+            this.ssid = ssid;
+            this.pass = pass;
+            this.secondsTimeout = secondsTimeout;
+            this.options = options;
+            this.callback = callback;
+        }
+
+        /**
+         * Join a matching attempt for the network or queue a new one. Does nothing if it was started before.
+         */
+        public void start() {
+            start(null, -1);
+        }
+
+        /**
+         * Like {@link #start()}, with a network built from scan results that are already known,
+         * used if the request starts an attempt, see {@link ConnectionEngine#start(NetworkSpec, int)}
+         *
+         * @param spec         the network, built from the scan results
+         * @param capabilities parsed {@link Capabilities} of the network
+         */
+        public void start(final NetworkSpec spec, final int capabilities) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!started && !cancelled) {
+                        started = true;
+                        submit(Request.this, spec, capabilities);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Stop receiving the progress and result. The attempt is cancelled once no request wants
+         * it anymore.
+         */
+        public void cancel() {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!cancelled) {
+                        cancelled = true;
+                        withdraw(Request.this);
+                    }
+                }
+            });
+        }
+
+        /**
+         * @return the current state of the attempt, {@link ConnectionState#IDLE} while it waits
+         */
+        public ConnectionState getState() {
+            Flight current = flight;
+            ConnectionEngine engine = current == null ? null : current.engine;
+            return engine == null ? ConnectionState.IDLE : engine.getState();
+        }
+
+        /**
+         * @return the phase timestamps of the attempt, null if it has not started
+         */
+        public ConnectionMetrics getMetrics() {
+            Flight current = flight;
+            ConnectionEngine engine = current == null ? null : current.engine;
+            return engine == null ? null : engine.getMetrics();
+        }
+    }
+
+    /**
+     * One attempt and the requests that share it
+     */
+    private final class Flight {
+
+        private final NetworkSpec spec;
+        private final int capabilities;
+        private final long sequence;
+        private final List<Request> requests = new ArrayList<>();
+        private int priority;
+        private boolean finished;
+        private volatile ConnectionEngine engine;
+
+        Flight(NetworkSpec spec, int capabilities, long sequence) {
+            this.spec = spec;
+            this.capabilities = capabilities;
+            this.sequence = sequence;
+        }
+
+        void add(Request request) {
+            requests.add(request);
+            request.flight = this;
+            priority = requests.size() == 1 ? request.options.getPriority()
+                    : Math.max(priority, request.options.getPriority());
+        }
+
+        void remove(Request request) {
+            requests.remove(request);
+            priority = Integer.MIN_VALUE;
+            for (Request remaining : requests) {
+                priority = Math.max(priority, remaining.options.getPriority());
+            }
+        }
+
+        /**
+         * @return the first request that is still live, it has the same network and options as
+         * the others
+         */
+        Request lead() {
+            return requests.get(0);
+        }
+
+        /**
+         * @return true if this flight goes before the other one
+         */
+        boolean isBefore(Flight other) {
+            return priority != other.priority ? priority > other.priority : sequence < other.sequence;
+        }
+
+        /**
+         * @return true if the attempt has not associated yet, so stopping it costs no handshake
+         */
+        boolean isPreemptible() {
+            ConnectionState state = engine.getState();
+            return state == ConnectionState.IDLE || state == ConnectionState.SCANNING || engine.isRetryPending();
+        }
+    }
+
+    private void submit(Request request, NetworkSpec spec, int capabilities) {
+        Flight flight = find(request);
+        if (flight != null) {
+            requestsJoined++;
+            flight.add(request);
+            if (flight == active) {
+                ConnectionState state = flight.engine.getState();
+                if (state != ConnectionState.IDLE) {
+                    // catch up with the attempt in flight
+                    request.callback.onStateChanged(state);
+                }
+            } else {
+                // the priority may have risen
+                waiting.remove(flight);
+                enqueue(flight);
+            }
+        } else {
+            flight = new Flight(spec, capabilities, nextSequence++);
+            flight.add(request);
+            enqueue(flight);
+        }
+        schedule();
+    }
+
+    private void withdraw(Request request) {
+        Flight flight = request.flight;
+        if (flight == null || flight.finished) {
+            // nothing to stop, the result was delivered
+            return;
+        }
+        flight.remove(request);
+        if (!flight.requests.isEmpty()) {
+            if (flight != active) {
+                waiting.remove(flight);
+                enqueue(flight);
+            }
+            return;
+        }
+        if (flight == active) {
+            flight.engine.cancel();
+            flight.engine = null;
+            active = null;
+        } else {
+            waiting.remove(flight);
+        }
+        schedule();
+    }
+
+    private Flight find(Request request) {
+        if (active != null && matches(active.lead(), request)) {
+            return active;
+        }
+        for (Flight flight : waiting) {
+            if (matches(flight.lead(), request)) {
+                return flight;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the attempt of one request connects the same as that of the other
+     */
+    private static boolean matches(Request lead, Request request) {
+        return lead.ssid.equals(request.ssid)
+                && (lead.pass == null ? request.pass == null : lead.pass.equals(request.pass))
+                && lead.secondsTimeout == request.secondsTimeout
+                && lead.options.isSameAttempt(request.options);
+    }
+
+    private void enqueue(Flight flight) {
+        int index = 0;
+        while (index < waiting.size() && waiting.get(index).isBefore(flight)) {
+            index++;
+        }
+        waiting.add(index, flight);
+    }
+
+    /**
+     * Start the first waiting attempt if nothing is in flight, or if it outranks an attempt in
+     * flight that has not associated yet
+     */
+    private void schedule() {
+        if (waiting.isEmpty()) {
+            return;
+        }
+        Flight next = waiting.get(0);
+        if (active != null) {
+            if (next.priority <= active.priority || !active.isPreemptible()) {
+                return;
+            }
+            preemptions++;
+            Flight displaced = active;
+            displaced.engine.cancel();
+            displaced.engine = null;
+            active = null;
+            enqueue(displaced);
+            for (Request request : new ArrayList<>(displaced.requests)) {
+                request.callback.onStateChanged(ConnectionState.IDLE);
+            }
+        }
+        waiting.remove(next);
+        launch(next);
+    }
+
+    private void launch(final Flight flight) {
+        active = flight;
+        enginesStarted++;
+        // the request that queued the flight may be gone if the flight was displaced
+        Request lead = flight.lead();
+        final ConnectionEngine[] engine = new ConnectionEngine[1];
+        engine[0] = new ConnectionEngine(lead.platform, lead.ssid, lead.pass, lead.secondsTimeout,
+                lead.options, new ConnectionEngine.Callback() {
+            @Override
+            public void onStateChanged(ConnectionState state) {
+                if (flight.engine != engine[0]) {
+                    return;
+                }
+                for (Request request : new ArrayList<>(flight.requests)) {
+                    request.callback.onStateChanged(state);
+                }
+            }
+
+            @Override
+            public void onResult(ConnectResult result) {
+                if (flight.engine != engine[0]) {
+                    return;
+                }
+                active = null;
+                flight.finished = true;
+                for (Request request : new ArrayList<>(flight.requests)) {
+                    request.callback.onResult(result);
+                }
+                schedule();
+            }
+        });
+        flight.engine = engine[0];
+        // the engine hands over to the loop, so the callbacks of this start run after this task
+        engine[0].start(flight.spec, flight.capabilities);
+    }
+}
@@ -0,0 +1,761 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Connection state machine. One instance runs a single attempt to connect to a wifi network on a
+ * {@link WifiPlatform} and reports the outcome to a {@link Callback}. It has no dependency on the
+ * Android framework, so the same code runs on a device and against a simulated wifi stack.
+ * <p>
+ * An attempt takes the first path that applies: the device is already connected; a configuration
+ * built from scan results the caller already has; the saved network, if enabled; the network cache,
+ * if enabled; a scan. The saved network and cache paths fall back to a scan when the credentials
+ * are rejected or the network does not associate in time. A failed attempt is retried as the
+ * {@link RetryPolicy} of the options allows; retries always take the scan path and reuse the last
+ * scan results while they are fresh.
+ * <p>
+ * With a {@link ReachabilityProbe} in the options a connected network is only reported connected
+ * once the probe gets through; a network behind a captive portal or that never passes traffic
+ * fails the attempt without a retry. Without one the attempt succeeds once the system validates
+ * the network, or once it has been connected for a short wait without being validated; a network
+ * joined with a network request is reported at once, since it is never validated.
+ * <p>
+ * Where the platform supports network requests (Android 10 and later) the network is joined with
+ * a request instead of adding and enabling a configuration. The request is kept after a successful
+ * attempt, because releasing it disconnects the network.
+ * <p>
+ * All state is confined to the {@link EngineLoop} of the platform. {@link #start()} and
+ * {@link #cancel()} may be called from any thread and hand over to the loop; the callback is
+ * called on the loop.
+ */
+public final class ConnectionEngine {
+
+    private static final CapabilityCache CAPABILITY_CACHE = new CapabilityCache(64);
+
+    /**
+     * How long a connected attempt without a probe waits for the system to validate the network
+     * before it is reported connected anyway
+     */
+    private static final long VALIDATION_WAIT_MILLIS = 3 * 1000;
+
+    /**
+     * Receives the progress and outcome of a connection attempt, on the engine loop
+     */
+    public interface Callback {
+        void onStateChanged(ConnectionState state);
+
+        /**
+         * Called once with the outcome of the attempt. Not called if the attempt is cancelled.
+         */
+        void onResult(ConnectResult result);
+    }
+
+    private final WifiPlatform platform;
+    private final EngineLoop loop;
+    private final String ssid;
+    private final Ssid wifiSsid;
+    private final String pass;
+    private final int secondsTimeout;
+    private final ConnectOptions options;
+    private final Callback callback;
+
+    private volatile ConnectionState state = ConnectionState.IDLE;
+    private volatile ConnectionMetrics metrics;
+    private ConnectPath connectPath;
+    private EngineLoop.Cancellable timeout;
+    private TimeoutTask timeoutTask;
+    private long timeoutMillis;
+    private boolean networkRequested;
+    private EngineScanListener scanListener;
+    private EngineLinkListener linkListener;
+    private int capabilities = -1;
+    private int cachedNetworkId = -1;
+    private boolean scanRequested;
+    private List<AccessPoint> lastScanResults;
+    private long lastScanTime;
+    private EngineLoop.Cancellable retry;
+    private ConnectStatus retryStatus;
+    private int notFoundRetries;
+    private int failureRetries;
+    private Random random;
+    private int serviceCallsAtStart;
+    private EngineProbeListener probeListener;
+    private EngineLoop.Cancellable probeRetry;
+    private int probeAttempts;
+    private EngineValidationListener validationListener;
+    private EngineLoop.Cancellable validationWait;
+
+    /**
+     * @param platform       the wifi services
+     * @param ssid           SSID of the network
+     * @param pass           password of the network, ignored for open networks
+     * @param secondsTimeout time given to the attempt in seconds
+     * @param options        connection options
+     * @param callback       receives the progress and outcome
+     */
+    public ConnectionEngine(WifiPlatform platform, String ssid, String pass, int secondsTimeout,
+                            ConnectOptions options, Callback callback) {
+        this.platform = platform;
+        this.loop = platform.getLoop();
+        this.ssid = ssid;
+        this.wifiSsid = Ssid.of(ssid);
+        this.pass = pass;
+        this.secondsTimeout = secondsTimeout;
+        this.options = options;
+        this.callback = callback;
+    }
+
+    /**
+     * @return the current state of the attempt
+     */
+    public ConnectionState getState() {
+        return state;
+    }
+
+    /**
+     * @return the phase timestamps of the attempt, null if it has not started
+     */
+    public ConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return true while a failed try waits for its backoff before the attempt is retried; call on
+     * the engine loop
+     */
+    public boolean isRetryPending() {
+        return retry != null;
+    }
+
+    /**
+     * Start the attempt. Does nothing if it was started before.
+     */
+    public void start() {
+        start(null, -1);
+    }
+
+    /**
+     * Start the attempt with a network built from scan results that are already known, so the
+     * attempt does not scan. Does nothing if it was started before.
+     *
+     * @param spec         the network, built from the scan results
+     * @param capabilities parsed {@link Capabilities} of the network
+     */
+    public void start(final NetworkSpec spec, final int capabilities) {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                startOnLoop(spec, capabilities);
+            }
+        });
+    }
+
+    /**
+     * Stop the attempt and release the listeners and the timeout. The callback is not called
+     * for the attempt afterwards.
+     */
+    public void cancel() {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                cancelTimeout();
+                cancelRetry();
+                cancelScan();
+                cancelProbe();
+                removeLinkListener();
+                stopAwaitingValidation();
+                if (!state.isTerminal()) {
+                    releaseNetworkRequest();
+                    state = ConnectionState.IDLE;
+                }
+            }
+        });
+    }
+
+    /**
+     * @param accessPoint an access point found by a scan
+     * @return its parsed {@link Capabilities}
+     */
+    public static int getCapabilities(AccessPoint accessPoint) {
+        return CAPABILITY_CACHE.get(accessPoint.getCapabilities());
+    }
+
+    /**
+     * @param securityType security type of a network
+     * @return true if a network with the security type can be configured
+     */
+    public static boolean isSupported(SecurityType securityType) {
+        return securityType == SecurityType.OPEN || securityType == SecurityType.WEP
+                || securityType == SecurityType.PSK;
+    }
+
+    private void startOnLoop(NetworkSpec spec, int capabilities) {
+        if (state != ConnectionState.IDLE || metrics != null) {
+            return;
+        }
+        metrics = new ConnectionMetrics(ssid, loop.now());
+        serviceCallsAtStart = platform.getServiceCallCount();
+        if (platform.isConnectedTo(wifiSsid)) {
+            connectPath = ConnectPath.ALREADY_CONNECTED;
+            completeConnected();
+            return;
+        }
+        platform.disconnect();
+        if (spec != null) {
+            connectPath = ConnectPath.SHARED_SCAN;
+            this.capabilities = capabilities;
+            scheduleTimeout(secondsTimeout * 1000L);
+            associate(spec);
+            return;
+        }
+        if (options.isSavedNetworkFastPath() && connectToSavedNetwork()) {
+            return;
+        }
+        if (options.isNetworkCache() && connectFromCache()) {
+            return;
+        }
+        startScan();
+    }
+
+    private void setState(ConnectionState newState) {
+        if (state != newState) {
+            state = newState;
+            callback.onStateChanged(newState);
+        }
+    }
+
+    /**
+     * Enable the network directly if it is already saved on the device
+     *
+     * @return true if the saved network is being connected, false if a scan is needed
+     */
+    private boolean connectToSavedNetwork() {
+        int networkId = platform.findSavedNetwork(wifiSsid);
+        if (networkId == -1) {
+            return false;
+        }
+        connectPath = ConnectPath.SAVED_NETWORK;
+        addLinkListener();
+        scheduleTimeout(Math.min(secondsTimeout, options.getSavedNetworkTimeoutSeconds()) * 1000L);
+        if (!platform.enableNetwork(networkId)) {
+            cancelTimeout();
+            removeLinkListener();
+            return false;
+        }
+        setState(ConnectionState.ASSOCIATING);
+        return true;
+    }
+
+    /**
+     * Configure the network from the connection cache if it was joined before
+     *
+     * @return true if the cached network is being connected, false if a scan is needed
+     */
+    private boolean connectFromCache() {
+        NetworkCache.Entry entry = platform.getStore().getCachedNetwork(ssid, options.getNetworkCacheSize());
+        if (entry == null) {
+            return false;
+        }
+        SecurityType securityType = Capabilities.getSecurityType(entry.getCapabilities());
+        if (!isSupported(securityType)) {
+            return false;
+        }
+        connectPath = ConnectPath.CACHED;
+        capabilities = entry.getCapabilities();
+        scheduleTimeout(Math.min(secondsTimeout, options.getSavedNetworkTimeoutSeconds()) * 1000L);
+        // go straight to the access point that worked last time; older versions cached the
+        // redacted BSSID, which would pin the configuration to an access point that doesn't exist
+        cachedNetworkId = associate(new NetworkSpec(wifiSsid, pass, securityType,
+                MacAddresses.normalize(entry.getBssid())));
+        return true;
+    }
+
+    /**
+     * @return true if the attempt is connecting without a scan and can fall back to one
+     */
+    private boolean isDirectPath() {
+        return connectPath == ConnectPath.SAVED_NETWORK || connectPath == ConnectPath.CACHED;
+    }
+
+    /**
+     * The saved or cached network did not associate, connect using the scan results instead
+     */
+    private void fallBackToScan() {
+        cancelTimeout();
+        removeLinkListener();
+        releaseNetworkRequest();
+        if (cachedNetworkId != -1) {
+            // drop the configuration pinned to the cached access point, the scan builds a new one
+            platform.removeNetwork(cachedNetworkId);
+            cachedNetworkId = -1;
+        }
+        metrics.clearFrom(ConnectionPhase.CONFIG_ADDED);
+        startScan();
+    }
+
+    /**
+     * Scan for the wifi network and connect when it is found
+     */
+    private void startScan() {
+        connectPath = ConnectPath.SCAN;
+        scheduleTimeout(getScanTimeoutMillis());
+        setState(ConnectionState.SCANNING);
+        metrics.mark(ConnectionPhase.SCAN_REQUESTED, loop.now());
+        scanListener = new EngineScanListener();
+        // prewarmed results only serve the first scan; a retry scans again, above all when the
+        // network was missing from them
+        long prewarmMaxAge = scanRequested ? 0
+                : Math.min(options.getPrewarmFreshnessMillis(), options.getScanCacheMaxAgeMillis());
+        scanRequested = true;
+        platform.requestScan(scanListener, options.getScanCacheMaxAgeMillis(), prewarmMaxAge);
+    }
+
+    /**
+     * Find the network in scan results and connect to it
+     *
+     * @param accessPoints the scan results
+     */
+    private void connectFromScan(List<AccessPoint> accessPoints) {
+        lastScanResults = accessPoints;
+        lastScanTime = loop.now();
+        AccessPoint accessPoint = BssidSelector.select(accessPoints, wifiSsid);
+        if (accessPoint == null) {
+            // if no wifi network with the specified ssid is found the attempt fails
+            fail(ConnectStatus.NOT_FOUND);
+            return;
+        }
+        capabilities = getCapabilities(accessPoint);
+        SecurityType securityType = Capabilities.getSecurityType(capabilities);
+        if (isSupported(securityType)) {
+            // a request for the one access point the user approved before is joined without a
+            // dialog and from the scan results the platform already has
+            boolean pin = options.isPinBssid() || platform.isNetworkRequestSupported();
+            associate(new NetworkSpec(wifiSsid, pass, securityType, pin ? accessPoint.getBssid() : null));
+        } else {
+            complete(ConnectionState.FAILED, ConnectStatus.UNSUPPORTED_SECURITY, securityType);
+        }
+    }
+
+    /**
+     * Retry the attempt if the retry policy allows, otherwise end it
+     *
+     * @param status why the attempt failed
+     */
+    private void fail(ConnectStatus status) {
+        RetryPolicy policy = options.getRetryPolicy();
+        boolean notFound = status == ConnectStatus.NOT_FOUND;
+        if (!policy.shouldRetry(status, metrics.getAttempts(), notFound ? notFoundRetries : failureRetries)) {
+            complete(ConnectionState.FAILED, status, null);
+            return;
+        }
+        if (notFound) {
+            notFoundRetries++;
+        } else {
+            failureRetries++;
+        }
+        cancelTimeout();
+        cancelScan();
+        removeLinkListener();
+        releaseNetworkRequest();
+        if (random == null) {
+            // seeded from the clock so devices that failed together spread out, and a
+            // simulation with a virtual clock stays reproducible
+            random = new Random(loop.currentTimeMillis() * 31 + ssid.hashCode());
+        }
+        final long backoff = policy.getBackoffMillis(metrics.getAttempts(), random.nextDouble());
+        retryStatus = status;
+        retry = loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                retry = null;
+                retry(backoff);
+            }
+        }, backoff);
+    }
+
+    private void retry(long backoff) {
+        metrics.retry(loop.now(), backoff);
+        if (platform.isConnectedTo(wifiSsid)) {
+            // joined while waiting, the supplicant kept trying
+            onConnectionEstablished();
+            return;
+        }
+        platform.disconnect();
+        long now = loop.now();
+        if (retryStatus != ConnectStatus.NOT_FOUND && lastScanResults != null
+                && now - lastScanTime <= options.getScanCacheMaxAgeMillis()) {
+            // the network was in the last scan, no need to spend the scan budget on it again
+            connectPath = ConnectPath.SCAN;
+            scheduleTimeout(getScanTimeoutMillis());
+            metrics.mark(ConnectionPhase.SCAN_REQUESTED, now);
+            metrics.mark(ConnectionPhase.SCAN_RESULTS, now);
+            connectFromScan(lastScanResults);
+        } else {
+            startScan();
+        }
+    }
+
+    private void cancelRetry() {
+        if (retry != null) {
+            retry.cancel();
+            retry = null;
+        }
+    }
+
+    /**
+     * @return the timeout of the scan path, adapted to the connection history if enabled
+     */
+    private long getScanTimeoutMillis() {
+        long timeout = secondsTimeout * 1000L;
+        if (options.isAdaptiveTimeout()) {
+            timeout = platform.getStore().getAdaptiveTimeoutMillis(ssid, timeout);
+        }
+        return timeout;
+    }
+
+    private void cancelScan() {
+        if (scanListener != null) {
+            platform.cancelScan(scanListener);
+            scanListener = null;
+        }
+    }
+
+    /**
+     * Store the configuration and start associating, or request the network where the platform
+     * supports network requests
+     *
+     * @param spec the network
+     * @return the network id of the configuration, -1 for a network request
+     */
+    private int associate(NetworkSpec spec) {
+        addLinkListener();
+        // network requests can't join WEP networks, those are still configured
+        if (platform.isNetworkRequestSupported() && spec.getSecurityType() != SecurityType.WEP) {
+            networkRequested = true;
+            metrics.setNetworkRequest(true);
+            platform.requestNetwork(spec, timeoutMillis);
+            metrics.mark(ConnectionPhase.CONFIG_ADDED, loop.now());
+            setState(ConnectionState.ASSOCIATING);
+            return -1;
+        }
+        metrics.setNetworkRequest(false);
+        int networkId = platform.addNetwork(spec, options.getForeignNetworkPolicy());
+        metrics.mark(ConnectionPhase.CONFIG_ADDED, loop.now());
+        platform.enableNetwork(networkId);
+        setState(ConnectionState.ASSOCIATING);
+        return networkId;
+    }
+
+    /**
+     * Remember how the network was joined for the next attempt
+     */
+    private void updateNetworkCache() {
+        if (capabilities == -1) {
+            // joined a saved network without knowing its security
+            return;
+        }
+        LinkInfo info = platform.getConnectionInfo();
+        // a redacted BSSID must not be cached as the access point of the network
+        String bssid = MacAddresses.normalize(info.getBssid());
+        platform.getStore().putCachedNetwork(new NetworkCache.Entry(ssid, info.getNetworkId(),
+                bssid, info.getFrequency(), capabilities, loop.currentTimeMillis()),
+                options.getNetworkCacheSize());
+    }
+
+    private void onConnectionEstablished() {
+        long now = loop.now();
+        metrics.mark(ConnectionPhase.IP_OBTAINED, now);
+        // with a probe only a reachable result validates the network; a network request joins a
+        // network without internet access, which the system never validates
+        boolean awaitValidation = false;
+        if (options.getReachabilityProbe() == null && !networkRequested) {
+            if (platform.isValidated()) {
+                metrics.mark(ConnectionPhase.VALIDATED, now);
+            } else {
+                awaitValidation = true;
+            }
+        }
+        // the timeout covers a real scan; a scan answered from cache or prewarm, or a retry that
+        // reused the last results, would record a fraction of that and shrink the timeout
+        if (options.isAdaptiveTimeout() && connectPath == ConnectPath.SCAN && metrics.getAttempts() == 1
+                && !metrics.isScanFromCache()) {
+            platform.getStore().recordConnectDuration(ssid, now - metrics.getTimestamp(ConnectionPhase.SCAN_REQUESTED));
+        }
+        if (options.isNetworkCache()) {
+            updateNetworkCache();
+        }
+        if (awaitValidation) {
+            awaitValidation();
+        } else {
+            completeConnected();
+        }
+    }
+
+    /**
+     * The system validates a network a moment after it is connected; hold the result until then,
+     * so the metrics are complete when they are reported, or until the wait ends
+     */
+    private void awaitValidation() {
+        cancelTimeout();
+        cancelScan();
+        removeLinkListener();
+        setState(ConnectionState.VALIDATING);
+        validationListener = new EngineValidationListener();
+        platform.addLinkListener(validationListener);
+        validationWait = loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                validationWait = null;
+                stopAwaitingValidation();
+                complete(ConnectionState.CONNECTED, ConnectStatus.CONNECTED, null);
+            }
+        }, VALIDATION_WAIT_MILLIS);
+    }
+
+    private void stopAwaitingValidation() {
+        if (validationListener != null) {
+            platform.removeLinkListener(validationListener);
+            validationListener = null;
+        }
+        if (validationWait != null) {
+            validationWait.cancel();
+            validationWait = null;
+        }
+    }
+
+    /**
+     * Report the connected network, once the reachability probe gets through if one is set
+     */
+    private void completeConnected() {
+        if (options.getReachabilityProbe() == null) {
+            complete(ConnectionState.CONNECTED, ConnectStatus.CONNECTED, null);
+            return;
+        }
+        // the network is joined, only the probe decides from here
+        cancelTimeout();
+        cancelScan();
+        removeLinkListener();
+        setState(ConnectionState.VALIDATING);
+        startProbe();
+    }
+
+    private void startProbe() {
+        probeListener = new EngineProbeListener();
+        platform.probe(options.getReachabilityProbe(), probeListener);
+    }
+
+    private void onProbeResult(ProbeResult result) {
+        ReachabilityProbe probe = options.getReachabilityProbe();
+        probeAttempts++;
+        metrics.setProbeResult(result, probeAttempts);
+        switch (result.getStatus()) {
+            case REACHABLE:
+                metrics.mark(ConnectionPhase.VALIDATED, loop.now());
+                complete(ConnectionState.CONNECTED, ConnectStatus.CONNECTED, null);
+                break;
+            case CAPTIVE_PORTAL:
+                complete(ConnectionState.FAILED, ConnectStatus.CAPTIVE_PORTAL, null);
+                break;
+            default:
+                if (probeAttempts >= probe.getMaxAttempts()) {
+                    complete(ConnectionState.FAILED, ConnectStatus.UNREACHABLE, null);
+                    break;
+                }
+                // often just connected and still waiting for DHCP
+                probeRetry = loop.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        probeRetry = null;
+                        startProbe();
+                    }
+                }, probe.getRetryIntervalMillis());
+                break;
+        }
+    }
+
+    private void cancelProbe() {
+        probeListener = null;
+        if (probeRetry != null) {
+            probeRetry.cancel();
+            probeRetry = null;
+        }
+    }
+
+    /**
+     * End the attempt and report its result
+     *
+     * @param terminal     {@link ConnectionState#CONNECTED} or {@link ConnectionState#FAILED}
+     * @param status       outcome of the attempt
+     * @param securityType security type of the network for {@link ConnectStatus#UNSUPPORTED_SECURITY}
+     */
+    private void complete(ConnectionState terminal, ConnectStatus status, SecurityType securityType) {
+        cancelTimeout();
+        cancelScan();
+        cancelProbe();
+        removeLinkListener();
+        if (terminal != ConnectionState.CONNECTED && status != ConnectStatus.CAPTIVE_PORTAL) {
+            // behind a portal the network stays up so the user can sign in
+            releaseNetworkRequest();
+        }
+        metrics.setServiceCalls(platform.getServiceCallCount() - serviceCallsAtStart);
+        metrics.finish(terminal, connectPath, loop.now());
+        setState(terminal);
+        callback.onResult(new ConnectResult(status, ssid, connectPath, securityType, metrics));
+    }
+
+    private void addLinkListener() {
+        removeLinkListener();
+        linkListener = new EngineLinkListener();
+        platform.addLinkListener(linkListener);
+    }
+
+    private void removeLinkListener() {
+        if (linkListener != null) {
+            platform.removeLinkListener(linkListener);
+            linkListener = null;
+        }
+    }
+
+    private void releaseNetworkRequest() {
+        if (networkRequested) {
+            platform.releaseNetworkRequest();
+            networkRequested = false;
+        }
+    }
+
+    private void scheduleTimeout(long millis) {
+        timeoutMillis = millis;
+        timeoutTask = new TimeoutTask();
+        timeout = loop.schedule(timeoutTask, millis);
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+        timeoutTask = null;
+    }
+
+    /**
+     * Receives the link changes from the platform
+     */
+    private class EngineLinkListener implements WifiPlatform.LinkListener {
+
+        @Override
+        public void onLinkEvent(LinkEvent event) {
+            if (linkListener != this) {
+                return;
+            }
+            long now = loop.now();
+            switch (event) {
+                case ASSOCIATING:
+                    metrics.mark(ConnectionPhase.ASSOCIATING, now);
+                    // mid handshake, can't be connected yet
+                    return;
+                case FOUR_WAY_HANDSHAKE:
+                    metrics.mark(ConnectionPhase.FOUR_WAY_HANDSHAKE, now);
+                    return;
+                case COMPLETED:
+                    metrics.mark(ConnectionPhase.COMPLETED, now);
+                    break;
+                case NETWORK_CONNECTED:
+                    metrics.mark(ConnectionPhase.IP_OBTAINED, now);
+                    break;
+                case AUTH_FAILED:
+                    if (isDirectPath()) {
+                        // saved or cached credentials are no longer valid
+                        fallBackToScan();
+                    } else {
+                        fail(ConnectStatus.AUTH_FAILED);
+                    }
+                    return;
+                case UNAVAILABLE:
+                    if (isDirectPath()) {
+                        fallBackToScan();
+                    } else {
+                        fail(ConnectStatus.TIMEOUT);
+                    }
+                    return;
+                default:
+                    break;
+            }
+            if (platform.isConnectedTo(wifiSsid)) {
+                onConnectionEstablished();
+            }
+        }
+    }
+
+    /**
+     * Receives the validation of the connected network
+     */
+    private class EngineValidationListener implements WifiPlatform.LinkListener {
+
+        @Override
+        public void onLinkEvent(LinkEvent event) {
+            if (validationListener != this || event != LinkEvent.VALIDATED) {
+                return;
+            }
+            metrics.mark(ConnectionPhase.VALIDATED, loop.now());
+            stopAwaitingValidation();
+            complete(ConnectionState.CONNECTED, ConnectStatus.CONNECTED, null);
+        }
+    }
+
+    /**
+     * Receives the scan results from the platform
+     */
+    private class EngineScanListener implements WifiPlatform.ScanListener {
+
+        @Override
+        public void onScanResults(List<AccessPoint> accessPoints, boolean fromCache) {
+            if (scanListener != this) {
+                return;
+            }
+            scanListener = null;
+            metrics.mark(ConnectionPhase.SCAN_RESULTS, loop.now());
+            metrics.setScanFromCache(fromCache);
+            connectFromScan(accessPoints);
+        }
+    }
+
+    /**
+     * Receives the results of the reachability probe from the platform
+     */
+    private class EngineProbeListener implements WifiPlatform.ProbeListener {
+
+        @Override
+        public void onProbeResult(ProbeResult result) {
+            if (probeListener != this) {
+                return;
+            }
+            probeListener = null;
+            ConnectionEngine.this.onProbeResult(result);
+        }
+    }
+
+    /**
+     * Timeout task, runs on the engine loop
+     */
+    private class TimeoutTask implements Runnable {
+        @Override
+        public void run() {
+            onTimeoutReached(this);
+        }
+    }
+
+    private void onTimeoutReached(TimeoutTask task) {
+        if (task != timeoutTask || state.isTerminal() || state == ConnectionState.IDLE) {
+            // timeout of an earlier phase or of a finished attempt
+            return;
+        }
+        if (platform.isConnectedTo(wifiSsid)) {
+            onConnectionEstablished();
+        } else if (isDirectPath()) {
+            fallBackToScan();
+        } else {
+            fail(ConnectStatus.TIMEOUT);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Timestamps of the phases of one connection attempt. Timestamps are in milliseconds of the
+ * monotonic clock of the {@link WifiPlatform}, {@code SystemClock.elapsedRealtime()} on Android;
+ * a phase that was not reached has no timestamp.
+ * <p>
+ * When the attempt is retried, see {@link RetryPolicy}, the phases are those of the last try while
+ * the start time and the total stay those of the whole attempt, so {@link #getTotalMillis()} is the
+ * time to connect including the retries.
+ * <p>
+ * Also records how long the attempt held the main thread, so work that blocks the UI shows up,
+ * and how many calls it made into the wifi services.
+ */
+public final class ConnectionMetrics {
+
+    private static final ConnectionPhase[] PHASES = ConnectionPhase.values();
+
+    private final String ssid;
+    private final long startTime;
+    private final long[] timestamps = new long[PHASES.length];
+    private long endTime = -1;
+    private ConnectionState state = ConnectionState.IDLE;
+    private ConnectPath path;
+    private boolean networkRequest;
+    private boolean scanFromCache;
+    private int attempts = 1;
+    private long lastAttemptStartTime;
+    private long backoffMillis;
+    private long mainThreadMaxNanos;
+    private long mainThreadTotalNanos;
+    private int serviceCalls;
+    private ProbeResult probeResult;
+    private int probeAttempts;
+
+    ConnectionMetrics(String ssid, long startTime) {
+        this.ssid = ssid;
+        this.startTime = startTime;
+        this.lastAttemptStartTime = startTime;
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = -1;
+        }
+    }
+
+    /**
+     * Record the time a phase was reached. Only the first time is kept.
+     */
+    void mark(ConnectionPhase phase, long time) {
+        if (timestamps[phase.ordinal()] == -1) {
+            timestamps[phase.ordinal()] = time;
+        }
+    }
+
+    /**
+     * Forget the phases from {@code phase} onwards, used when the attempt starts over on another path
+     */
+    void clearFrom(ConnectionPhase phase) {
+        for (int i = phase.ordinal(); i < timestamps.length; i++) {
+            timestamps[i] = -1;
+        }
+    }
+
+    /**
+     * Start another try after waiting {@code backoffMillis}, forgetting the phases of the last one
+     */
+    void retry(long time, long backoffMillis) {
+        attempts++;
+        lastAttemptStartTime = time;
+        this.backoffMillis += backoffMillis;
+        clearFrom(ConnectionPhase.SCAN_REQUESTED);
+    }
+
+    void setNetworkRequest(boolean networkRequest) {
+        this.networkRequest = networkRequest;
+    }
+
+    void setScanFromCache(boolean scanFromCache) {
+        this.scanFromCache = scanFromCache;
+    }
+
+    void setProbeResult(ProbeResult probeResult, int probeAttempts) {
+        this.probeResult = probeResult;
+        this.probeAttempts = probeAttempts;
+    }
+
+    void setServiceCalls(int serviceCalls) {
+        this.serviceCalls = serviceCalls;
+    }
+
+    void finish(ConnectionState state, ConnectPath path, long time) {
+        this.state = state;
+        this.path = path;
+        this.endTime = time;
+    }
+
+    /**
+     * Set by the Android layer, which runs the callbacks of the attempt on the main thread
+     *
+     * @param maxNanos   longest single stretch of main thread work in nanoseconds
+     * @param totalNanos all main thread work in nanoseconds
+     */
+    public void setMainThreadTime(long maxNanos, long totalNanos) {
+        this.mainThreadMaxNanos = maxNanos;
+        this.mainThreadTotalNanos = totalNanos;
+    }
+
+    /**
+     * @return SSID of the network
+     */
+    public String getSsid() {
+        return ssid;
+    }
+
+    /**
+     * @return time the attempt started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return time the attempt finished, -1 if it is still running
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return final state of the attempt, {@link ConnectionState#CONNECTED} or {@link ConnectionState#FAILED}
+     */
+    public ConnectionState getState() {
+        return state;
+    }
+
+    /**
+     * @return the way the connection was made, null if the attempt never got past the start
+     */
+    public ConnectPath getPath() {
+        return path;
+    }
+
+    /**
+     * @return true if the network was joined with a network request, false if it was configured
+     * and enabled, see {@link WifiPlatform#isNetworkRequestSupported()}
+     */
+    public boolean isNetworkRequest() {
+        return networkRequest;
+    }
+
+    /**
+     * @return true if the scan results of the last try were already available, from a prewarmed
+     * or recent scan, so the try did not wait for a scan
+     */
+    public boolean isScanFromCache() {
+        return scanFromCache;
+    }
+
+    /**
+     * @return number of tries, 1 if the attempt was not retried
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return time the last try started, the start time if the attempt was not retried
+     */
+    public long getLastAttemptStartTime() {
+        return lastAttemptStartTime;
+    }
+
+    /**
+     * @return milliseconds spent waiting between tries
+     */
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    /**
+     * @param phase the phase
+     * @return true if the phase was reached
+     */
+    public boolean hasPhase(ConnectionPhase phase) {
+        return timestamps[phase.ordinal()] != -1;
+    }
+
+    /**
+     * @param phase the phase
+     * @return time the phase was reached, -1 if it was not reached
+     */
+    public long getTimestamp(ConnectionPhase phase) {
+        return timestamps[phase.ordinal()];
+    }
+
+    /**
+     * @param phase the phase
+     * @return milliseconds from the start of the attempt to the phase, -1 if it was not reached
+     */
+    public long getElapsedMillis(ConnectionPhase phase) {
+        long time = timestamps[phase.ordinal()];
+        return time == -1 ? -1 : time - startTime;
+    }
+
+    /**
+     * @return milliseconds from the start to the end of the attempt, -1 if it is still running
+     */
+    public long getTotalMillis() {
+        return endTime == -1 ? -1 : endTime - startTime;
+    }
+
+    /**
+     * @return longest single stretch of work the attempt did on the main thread, in milliseconds
+     */
+    public double getMainThreadMaxMillis() {
+        return mainThreadMaxNanos / 1e6;
+    }
+
+    /**
+     * @return all work the attempt did on the main thread, in milliseconds. This includes the
+     * progress callbacks but not the callback that receives the result.
+     */
+    public double getMainThreadTotalMillis() {
+        return mainThreadTotalNanos / 1e6;
+    }
+
+    /**
+     * @return number of calls the attempt made into the wifi services, binder transactions on
+     * Android, see {@link WifiPlatform#getServiceCallCount()}
+     */
+    public int getServiceCalls() {
+        return serviceCalls;
+    }
+
+    /**
+     * @return result of the last run of the reachability probe, with the round trip and time to
+     * first byte, null if no probe ran
+     */
+    public ProbeResult getProbeResult() {
+        return probeResult;
+    }
+
+    /**
+     * @return number of runs of the reachability probe
+     */
+    public int getProbeAttempts() {
+        return probeAttempts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ConnectionMetrics{ssid=").append(ssid)
+                .append(", state=").append(state)
+                .append(", path=").append(path)
+                .append(", networkRequest=").append(networkRequest)
+                .append(", scanFromCache=").append(scanFromCache)
+                .append(", total=").append(getTotalMillis()).append("ms")
+                .append(", attempts=").append(attempts)
+                .append(", backoff=").append(backoffMillis).append("ms")
+                .append(", mainThreadMax=").append(getMainThreadMaxMillis()).append("ms")
+                .append(", mainThreadTotal=").append(getMainThreadTotalMillis()).append("ms")
+                .append(", serviceCalls=").append(serviceCalls);
+        if (probeResult != null) {
+            builder.append(", probe=").append(probeResult).append(", probeAttempts=").append(probeAttempts);
+        }
+        for (ConnectionPhase phase : PHASES) {
+            if (hasPhase(phase)) {
+                builder.append(", ").append(phase).append('=').append(getElapsedMillis(phase)).append("ms");
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Phases of a connection attempt, in the order they are normally reached
+ */
+public enum ConnectionPhase {
+
+    /**
+     * A wifi scan was requested
+     */
+    SCAN_REQUESTED,
+
+    /**
+     * Scan results were delivered
+     */
+    SCAN_RESULTS,
+
+    /**
+     * The network configuration was added or updated
+     */
+    CONFIG_ADDED,
+
+    /**
+     * The supplicant started associating with the access point
+     */
+    ASSOCIATING,
+
+    /**
+     * The supplicant started the WPA 4-way handshake
+     */
+    FOUR_WAY_HANDSHAKE,
+
+    /**
+     * The supplicant completed authentication
+     */
+    COMPLETED,
+
+    /**
+     * The network is connected and has an IP address
+     */
+    IP_OBTAINED,
+
+    /**
+     * The reachability probe got through, or without a probe the system reported the network as
+     * validated
+     */
+    VALIDATED
+}
@@ -0,0 +1,47 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * State of a connection attempt. An attempt moves from {@link #IDLE} through {@link #SCANNING}
+ * and/or {@link #ASSOCIATING}, and {@link #VALIDATING} once connected, and ends in
+ * {@link #CONNECTED} or {@link #FAILED}.
+ */
+public enum ConnectionState {
+
+    /**
+     * The attempt has not started or was cancelled
+     */
+    IDLE,
+
+    /**
+     * Waiting for scan results to find the network
+     */
+    SCANNING,
+
+    /**
+     * The network is configured and the device is associating with it
+     */
+    ASSOCIATING,
+
+    /**
+     * Connected to the network, probing whether traffic flows or waiting for the system to
+     * validate it
+     */
+    VALIDATING,
+
+    /**
+     * Connected to the network
+     */
+    CONNECTED,
+
+    /**
+     * The network was not found or the connection did not complete in time
+     */
+    FAILED;
+
+    /**
+     * @return true if the attempt has finished
+     */
+    public boolean isTerminal() {
+        return this == CONNECTED || this == FAILED;
+    }
+}
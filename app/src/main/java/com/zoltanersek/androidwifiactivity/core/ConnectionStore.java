@@ -0,0 +1,38 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * What a {@link ConnectionEngine} remembers between attempts: the connection durations behind the
+ * adaptive timeout and the network cache. On Android both are kept in files of the app.
+ */
+public interface ConnectionStore {
+
+    /**
+     * @param ssid          SSID of the network
+     * @param timeoutMillis timeout the caller asked for
+     * @return the timeout adapted to the recorded durations, see {@link ConnectDurationHistory}
+     */
+    long getAdaptiveTimeoutMillis(String ssid, long timeoutMillis);
+
+    /**
+     * Record the duration of a successful connection
+     *
+     * @param ssid           SSID of the network
+     * @param durationMillis time it took to connect
+     */
+    void recordConnectDuration(String ssid, long durationMillis);
+
+    /**
+     * @param ssid       SSID of the network
+     * @param cacheSize  number of networks kept in the cache
+     * @return the cached entry of the network, null if it is not cached
+     */
+    NetworkCache.Entry getCachedNetwork(String ssid, int cacheSize);
+
+    /**
+     * Add or replace the cached entry of a network
+     *
+     * @param entry     the entry
+     * @param cacheSize number of networks kept in the cache
+     */
+    void putCachedNetwork(NetworkCache.Entry entry, int cacheSize);
+}
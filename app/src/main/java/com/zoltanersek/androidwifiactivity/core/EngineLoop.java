@@ -0,0 +1,42 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Single threaded event loop and clock a {@link ConnectionEngine} runs on. Tasks run one at a
+ * time in the order they were submitted, so the engine needs no locks. On Android this is the
+ * shared scheduler thread and {@code SystemClock}; a simulation runs the tasks on a virtual clock.
+ */
+public interface EngineLoop {
+
+    /**
+     * A task that can be cancelled before it runs
+     */
+    interface Cancellable {
+        void cancel();
+    }
+
+    /**
+     * @return monotonic time in milliseconds
+     */
+    long now();
+
+    /**
+     * @return wall clock time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+
+    /**
+     * Run a task on the loop as soon as possible
+     *
+     * @param task the task
+     */
+    void execute(Runnable task);
+
+    /**
+     * Run a task on the loop after a delay
+     *
+     * @param task        the task
+     * @param delayMillis delay in milliseconds
+     * @return handle to cancel the task
+     */
+    Cancellable schedule(Runnable task, long delayMillis);
+}
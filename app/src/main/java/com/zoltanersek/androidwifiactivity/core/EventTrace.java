@@ -0,0 +1,338 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Flight recorder for wifi events. Events go into a preallocated ring that holds the newest
+ * {@code capacity} events; recording is lock-free and allocates nothing, so the recorder can stay
+ * on in production. Any number of threads may record and export at the same time.
+ * <p>
+ * Each event is a type, a monotonic timestamp in nanoseconds, a value, a detail and a BSSID:
+ * <pre>
+ * type                   value                                  detail
+ * SCAN_RESULTS           1 results updated, 0 not, -1 unknown   -
+ * NETWORK_STATE          index in {@link #NETWORK_STATES}        -
+ * SUPPLICANT_STATE       index in {@link #SUPPLICANT_STATES}     supplicant error, -1 for none
+ * SUPPLICANT_CONNECTION  1 connected, 0 disconnected            -
+ * </pre>
+ * Binary export format, big endian:
+ * <pre>
+ * header:  magic (4) version (1) export timestamp nanos (8) export epoch millis (8) event count (4)
+ * event:   timestamp nanos (8) type (1) value (4) detail (4) bssid (6)
+ * </pre>
+ * The two export clocks let a decoder turn the monotonic timestamps into wall clock time.
+ */
+public final class EventTrace {
+
+    public static final int SCAN_RESULTS = 1;
+    public static final int NETWORK_STATE = 2;
+    public static final int SUPPLICANT_STATE = 3;
+    public static final int SUPPLICANT_CONNECTION = 4;
+
+    /**
+     * Names of the event types, by type
+     */
+    static final String[] TYPES = {null, "SCAN_RESULTS", "NETWORK_STATE", "SUPPLICANT_STATE", "SUPPLICANT_CONNECTION"};
+
+    /**
+     * Network states, in the order of {@code NetworkInfo.DetailedState}
+     */
+    public static final String[] NETWORK_STATES = {"IDLE", "SCANNING", "CONNECTING", "AUTHENTICATING",
+            "OBTAINING_IPADDR", "CONNECTED", "SUSPENDED", "DISCONNECTING", "DISCONNECTED", "FAILED",
+            "BLOCKED", "VERIFYING_POOR_LINK", "CAPTIVE_PORTAL_CHECK"};
+
+    /**
+     * Supplicant states, in the order of {@code SupplicantState}
+     */
+    public static final String[] SUPPLICANT_STATES = {"DISCONNECTED", "INTERFACE_DISABLED", "INACTIVE",
+            "SCANNING", "AUTHENTICATING", "ASSOCIATING", "ASSOCIATED", "FOUR_WAY_HANDSHAKE",
+            "GROUP_HANDSHAKE", "COMPLETED", "DORMANT", "UNINITIALIZED", "INVALID"};
+
+    static final int MAGIC = 0x57455654; // "WEVT"
+    static final int VERSION = 1;
+
+    private static final long WRITING = -1;
+    private static final int FIELDS = 3;
+
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    /**
+     * Sequence number + 1 of the event in each slot, 0 for an empty slot, {@link #WRITING} while
+     * an event is written. A reader trusts a slot only if the stamp is the same before and after
+     * reading it.
+     */
+    private final AtomicLongArray stamps;
+    /**
+     * Timestamp, packed type, value and detail, BSSID of each slot
+     */
+    private final AtomicLongArray fields;
+
+    /**
+     * @param capacity number of events kept, rounded up to a power of two
+     */
+    public EventTrace(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^20");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        stamps = new AtomicLongArray(size);
+        fields = new AtomicLongArray(size * FIELDS);
+    }
+
+    /**
+     * @return number of events kept
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return number of events recorded since creation, including the ones overwritten
+     */
+    public long getRecordedCount() {
+        return cursor.get();
+    }
+
+    /**
+     * @param names a name table such as {@link #SUPPLICANT_STATES}
+     * @param name  a state name
+     * @return index of the name, -1 if it is not in the table
+     */
+    public static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Record an event
+     *
+     * @param timeNanos monotonic timestamp in nanoseconds
+     * @param type      one of the event types
+     * @param value     value of the event, see the class description
+     * @param detail    detail of the event, see the class description
+     * @param bssid     BSSID as returned by {@link MacAddresses#parse(String)}, 0 if none
+     */
+    public void record(long timeNanos, int type, int value, int detail, long bssid) {
+        long sequence = cursor.getAndIncrement();
+        int slot = (int) sequence & mask;
+        stamps.getAndSet(slot, WRITING);
+        int base = slot * FIELDS;
+        fields.set(base, timeNanos);
+        fields.set(base + 1, ((long) (type & 0xff) << 56) | ((long) (value & 0xffffff) << 32) | (detail & 0xffffffffL));
+        fields.set(base + 2, bssid);
+        stamps.set(slot, sequence + 1);
+    }
+
+    /**
+     * @return copies of the events in the ring, oldest first. Events being written or
+     * overwritten while copying are left out.
+     */
+    public List<Event> snapshot() {
+        long end = cursor.get();
+        long start = Math.max(0, end - getCapacity());
+        List<Event> events = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            if (stamps.get(slot) != sequence + 1) {
+                continue;
+            }
+            int base = slot * FIELDS;
+            long time = fields.get(base);
+            long packed = fields.get(base + 1);
+            long bssid = fields.get(base + 2);
+            if (stamps.get(slot) != sequence + 1) {
+                continue;
+            }
+            events.add(new Event(time, (int) (packed >>> 56), ((int) (packed >>> 32) << 8) >> 8, (int) packed, bssid));
+        }
+        return events;
+    }
+
+    /**
+     * Write the events in the binary format
+     *
+     * @param out               destination, not closed
+     * @param exportTimeNanos   monotonic time of the export in nanoseconds, same clock as the events
+     * @param exportEpochMillis wall clock time of the export
+     * @return number of events written
+     * @throws IOException if writing fails
+     */
+    public int writeBinary(OutputStream out, long exportTimeNanos, long exportEpochMillis) throws IOException {
+        List<Event> events = snapshot();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(exportTimeNanos);
+        data.writeLong(exportEpochMillis);
+        data.writeInt(events.size());
+        for (Event event : events) {
+            data.writeLong(event.getTimeNanos());
+            data.writeByte(event.getType());
+            data.writeInt(event.getValue());
+            data.writeInt(event.getDetail());
+            long bssid = event.getBssid();
+            for (int shift = 40; shift >= 0; shift -= 8) {
+                data.writeByte((int) (bssid >>> shift));
+            }
+        }
+        data.flush();
+        return events.size();
+    }
+
+    /**
+     * Write the events as JSON, one event per line
+     *
+     * @param out               destination, not closed
+     * @param exportTimeNanos   monotonic time of the export in nanoseconds, same clock as the events
+     * @param exportEpochMillis wall clock time of the export
+     * @return number of events written
+     * @throws IOException if writing fails
+     */
+    public int writeJsonLines(Writer out, long exportTimeNanos, long exportEpochMillis) throws IOException {
+        List<Event> events = snapshot();
+        for (Event event : events) {
+            out.write(event.toJson(exportTimeNanos, exportEpochMillis));
+            out.write('\n');
+        }
+        out.flush();
+        return events.size();
+    }
+
+    /**
+     * Read a binary export and write it as JSON lines
+     *
+     * @param in  binary export, not closed
+     * @param out destination, not closed
+     * @return number of events decoded
+     * @throws IOException if reading or writing fails or the input is not an event trace
+     */
+    public static int decode(InputStream in, Writer out) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readUnsignedByte() != VERSION) {
+            throw new IOException("not an event trace");
+        }
+        long exportTimeNanos = data.readLong();
+        long exportEpochMillis = data.readLong();
+        int count = data.readInt();
+        int decoded = 0;
+        try {
+            for (; decoded < count; decoded++) {
+                long time = data.readLong();
+                int type = data.readUnsignedByte();
+                int value = data.readInt();
+                int detail = data.readInt();
+                long bssid = 0;
+                for (int i = 0; i < 6; i++) {
+                    bssid = (bssid << 8) | data.readUnsignedByte();
+                }
+                out.write(new Event(time, type, value, detail, bssid).toJson(exportTimeNanos, exportEpochMillis));
+                out.write('\n');
+            }
+        } catch (EOFException e) {
+            // truncated, keep what was decoded
+        }
+        out.flush();
+        return decoded;
+    }
+
+    /**
+     * One recorded event
+     */
+    public static final class Event {
+
+        private final long timeNanos;
+        private final int type;
+        private final int value;
+        private final int detail;
+        private final long bssid;
+
+        Event(long timeNanos, int type, int value, int detail, long bssid) {
+            this.timeNanos = timeNanos;
+            this.type = type;
+            this.value = value;
+            this.detail = detail;
+            this.bssid = bssid;
+        }
+
+        public long getTimeNanos() {
+            return timeNanos;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public int getDetail() {
+            return detail;
+        }
+
+        public long getBssid() {
+            return bssid;
+        }
+
+        /**
+         * @param exportTimeNanos   monotonic time of the export
+         * @param exportEpochMillis wall clock time of the export
+         * @return the event as a single line JSON object
+         */
+        String toJson(long exportTimeNanos, long exportEpochMillis) {
+            StringBuilder json = new StringBuilder(128)
+                    .append("{\"t\":").append(timeNanos)
+                    .append(",\"wall\":").append(exportEpochMillis - (exportTimeNanos - timeNanos) / 1000000)
+                    .append(",\"type\":\"").append(name(TYPES, type)).append('"');
+            switch (type) {
+                case SCAN_RESULTS:
+                    json.append(",\"updated\":").append(value < 0 ? "null" : String.valueOf(value == 1));
+                    break;
+                case NETWORK_STATE:
+                    json.append(",\"state\":\"").append(name(NETWORK_STATES, value)).append('"');
+                    break;
+                case SUPPLICANT_STATE:
+                    json.append(",\"state\":\"").append(name(SUPPLICANT_STATES, value)).append('"');
+                    if (detail != -1) {
+                        json.append(",\"error\":").append(detail);
+                    }
+                    break;
+                case SUPPLICANT_CONNECTION:
+                    json.append(",\"connected\":").append(value == 1);
+                    break;
+            }
+            String address = MacAddresses.format(bssid);
+            if (address != null) {
+                json.append(",\"bssid\":\"").append(address).append('"');
+            }
+            return json.append('}').toString();
+        }
+
+        private static String name(String[] names, int index) {
+            return index >= 0 && index < names.length && names[index] != null ? names[index] : "UNKNOWN_" + index;
+        }
+
+        @Override
+        public String toString() {
+            return toJson(0, 0);
+        }
+    }
+}
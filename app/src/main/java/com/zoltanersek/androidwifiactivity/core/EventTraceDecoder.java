@@ -0,0 +1,43 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Desktop tool that turns a binary {@link EventTrace} export into JSON lines.
+ * <pre>
+ * java EventTraceDecoder trace.bin [trace.jsonl]
+ * </pre>
+ * Without an output file the JSON lines go to standard output.
+ */
+public final class EventTraceDecoder {
+
+    private EventTraceDecoder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: EventTraceDecoder <trace.bin> [<trace.jsonl>]");
+            System.exit(2);
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(args[0]));
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                args.length == 2 ? new FileOutputStream(args[1]) : System.out, Charset.forName("UTF-8")));
+        try {
+            int count = EventTrace.decode(in, out);
+            System.err.println(count + " events");
+        } finally {
+            in.close();
+            if (args.length == 2) {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * What to do with configured networks that are not the network being connected to
+ */
+public enum ForeignNetworkPolicy {
+
+    /**
+     * Remove every other configured network so the device can only join the requested one
+     */
+    REMOVE,
+
+    /**
+     * Leave other configured networks untouched
+     */
+    KEEP
+}
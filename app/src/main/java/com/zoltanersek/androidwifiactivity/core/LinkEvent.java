@@ -0,0 +1,48 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Change of the wifi link reported by a {@link WifiPlatform}, the platform independent form of
+ * the supplicant and network state broadcasts and of the network request callbacks
+ */
+public enum LinkEvent {
+
+    /**
+     * The supplicant started associating with an access point
+     */
+    ASSOCIATING,
+
+    /**
+     * The supplicant started the WPA 4-way handshake
+     */
+    FOUR_WAY_HANDSHAKE,
+
+    /**
+     * The supplicant finished authenticating
+     */
+    COMPLETED,
+
+    /**
+     * The access point rejected the credentials
+     */
+    AUTH_FAILED,
+
+    /**
+     * The network is connected and has an IP address
+     */
+    NETWORK_CONNECTED,
+
+    /**
+     * The platform gave up on a network request, see {@link WifiPlatform#requestNetwork}
+     */
+    UNAVAILABLE,
+
+    /**
+     * The system validated that the wifi network reaches the internet
+     */
+    VALIDATED,
+
+    /**
+     * Any other change, for example a disconnect
+     */
+    OTHER
+}
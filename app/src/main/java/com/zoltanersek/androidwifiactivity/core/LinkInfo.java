@@ -0,0 +1,34 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * The network the device is connected to, as far as the network cache needs it
+ */
+public final class LinkInfo {
+
+    private final int networkId;
+    private final String bssid;
+    private final int frequency;
+
+    /**
+     * @param networkId network id of the configuration, -1 if unknown
+     * @param bssid     access point, null if unknown
+     * @param frequency frequency in MHz, 0 if unknown
+     */
+    public LinkInfo(int networkId, String bssid, int frequency) {
+        this.networkId = networkId;
+        this.bssid = bssid;
+        this.frequency = frequency;
+    }
+
+    public int getNetworkId() {
+        return networkId;
+    }
+
+    public String getBssid() {
+        return bssid;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+}
@@ -0,0 +1,255 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Fixed size history of link quality samples: signal level, link speed and frequency of the
+ * connected network. Samples live in preallocated primitive arrays used as a ring, so recording a
+ * sample or computing the statistics allocates nothing; once full, the oldest sample is
+ * overwritten.
+ * <p>
+ * Statistics cover the samples in the history. Percentiles use the nearest rank method. Methods
+ * are synchronized so samples can be recorded on one thread and read on another.
+ */
+public final class LinkQualityHistory {
+
+    private final long[] times;
+    private final int[] levels;
+    private final int[] linkSpeeds;
+    private final int[] frequencies;
+    private final int[] scratch;
+    private int next;
+    private int count;
+
+    /**
+     * @param capacity number of samples kept
+     */
+    public LinkQualityHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        times = new long[capacity];
+        levels = new int[capacity];
+        linkSpeeds = new int[capacity];
+        frequencies = new int[capacity];
+        scratch = new int[capacity];
+    }
+
+    /**
+     * Record a sample
+     *
+     * @param time      time of the sample in milliseconds
+     * @param level     signal level in dBm
+     * @param linkSpeed link speed in Mbps
+     * @param frequency frequency in MHz
+     */
+    public synchronized void add(long time, int level, int linkSpeed, int frequency) {
+        times[next] = time;
+        levels[next] = level;
+        linkSpeeds[next] = linkSpeed;
+        frequencies[next] = frequency;
+        next = (next + 1) % times.length;
+        if (count < times.length) {
+            count++;
+        }
+    }
+
+    /**
+     * Forget all samples
+     */
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * @return number of samples kept
+     */
+    public int getCapacity() {
+        return times.length;
+    }
+
+    /**
+     * @return number of samples in the history
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    private int newest() {
+        return (next - 1 + times.length) % times.length;
+    }
+
+    /**
+     * @return time of the newest sample, -1 if there is none
+     */
+    public synchronized long getLatestTime() {
+        return count == 0 ? -1 : times[newest()];
+    }
+
+    /**
+     * @return signal level of the newest sample in dBm, {@link Integer#MIN_VALUE} if there is none
+     */
+    public synchronized int getLatestLevel() {
+        return count == 0 ? Integer.MIN_VALUE : levels[newest()];
+    }
+
+    /**
+     * @return link speed of the newest sample in Mbps, -1 if there is none
+     */
+    public synchronized int getLatestLinkSpeed() {
+        return count == 0 ? -1 : linkSpeeds[newest()];
+    }
+
+    /**
+     * @return frequency of the newest sample in MHz, -1 if there is none
+     */
+    public synchronized int getLatestFrequency() {
+        return count == 0 ? -1 : frequencies[newest()];
+    }
+
+    /**
+     * @return lowest signal level in dBm, {@link Integer#MIN_VALUE} if there are no samples
+     */
+    public synchronized int getMinLevel() {
+        return count == 0 ? Integer.MIN_VALUE : min(levels);
+    }
+
+    /**
+     * @return mean signal level in dBm, {@link Double#NaN} if there are no samples
+     */
+    public synchronized double getMeanLevel() {
+        return mean(levels);
+    }
+
+    /**
+     * @param percentile percentile between 1 and 100, for example 5
+     * @return the signal level percentile in dBm, {@link Integer#MIN_VALUE} if there are no samples
+     */
+    public synchronized int getLevelPercentile(int percentile) {
+        return count == 0 ? Integer.MIN_VALUE : percentile(levels, percentile);
+    }
+
+    /**
+     * @return lowest link speed in Mbps, -1 if there are no samples
+     */
+    public synchronized int getMinLinkSpeed() {
+        return count == 0 ? -1 : min(linkSpeeds);
+    }
+
+    /**
+     * @return mean link speed in Mbps, {@link Double#NaN} if there are no samples
+     */
+    public synchronized double getMeanLinkSpeed() {
+        return mean(linkSpeeds);
+    }
+
+    /**
+     * @param percentile percentile between 1 and 100, for example 5
+     * @return the link speed percentile in Mbps, -1 if there are no samples
+     */
+    public synchronized int getLinkSpeedPercentile(int percentile) {
+        return count == 0 ? -1 : percentile(linkSpeeds, percentile);
+    }
+
+    /**
+     * @param samples number of newest samples to average
+     * @return mean signal level of the newest samples in dBm, {@link Double#NaN} if there are no samples
+     */
+    public synchronized double getRecentMeanLevel(int samples) {
+        return recentMean(levels, samples);
+    }
+
+    /**
+     * @param samples number of newest samples to average
+     * @return mean link speed of the newest samples in Mbps, {@link Double#NaN} if there are no samples
+     */
+    public synchronized double getRecentMeanLinkSpeed(int samples) {
+        return recentMean(linkSpeeds, samples);
+    }
+
+    private int min(int[] values) {
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    private double mean(int[] values) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        return (double) sum / count;
+    }
+
+    private double recentMean(int[] values, int samples) {
+        int n = Math.min(samples, count);
+        if (n <= 0) {
+            return Double.NaN;
+        }
+        long sum = 0;
+        for (int i = 0, index = newest(); i < n; i++, index = (index - 1 + values.length) % values.length) {
+            sum += values[index];
+        }
+        return (double) sum / n;
+    }
+
+    private int percentile(int[] values, int percentile) {
+        if (percentile < 1 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 1 and 100");
+        }
+        // the samples not yet overwritten are always the first count entries
+        System.arraycopy(values, 0, scratch, 0, count);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return select(scratch, count, Math.max(0, Math.min(count - 1, index)));
+    }
+
+    /**
+     * Find the k-th smallest of the first {@code length} values in place, in linear time on average
+     */
+    private static int select(int[] values, int length, int k) {
+        int left = 0;
+        int right = length - 1;
+        while (left < right) {
+            int pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = values[i];
+                    values[i] = values[j];
+                    values[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LinkQualityHistory{samples=" + count
+                + ", level=" + getLatestLevel() + "dBm min=" + getMinLevel()
+                + " mean=" + getMeanLevel() + " p5=" + getLevelPercentile(5)
+                + ", linkSpeed=" + getLatestLinkSpeed() + "Mbps min=" + getMinLinkSpeed()
+                + " mean=" + getMeanLinkSpeed() + " p5=" + getLinkSpeedPercentile(5)
+                + ", frequency=" + getLatestFrequency() + "MHz}";
+    }
+}
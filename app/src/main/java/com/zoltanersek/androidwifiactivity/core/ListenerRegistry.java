@@ -0,0 +1,91 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listeners of a shared source that is only attached while at least one listener is subscribed,
+ * like one broadcast receiver registered for all of them: the first listener attaches the source
+ * and the last one to leave detaches it. Safe to use from any thread; listeners may subscribe and
+ * unsubscribe while the listeners are iterated.
+ *
+ * @param <L> type of the listeners
+ */
+public final class ListenerRegistry<L> implements Iterable<L> {
+
+    /**
+     * The shared source, attached and detached under the lock of the registry
+     */
+    public interface Source {
+        void attach();
+
+        void detach();
+    }
+
+    private final CopyOnWriteArrayList<L> listeners = new CopyOnWriteArrayList<>();
+    private final Source source;
+    private boolean attached;
+
+    /**
+     * @param source attached while at least one listener is subscribed
+     */
+    public ListenerRegistry(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Subscribe a listener, attaching the source if it is the first one
+     *
+     * @param listener the listener
+     * @return false if the listener was already subscribed
+     */
+    public synchronized boolean add(L listener) {
+        if (!listeners.addIfAbsent(listener)) {
+            return false;
+        }
+        if (!attached) {
+            source.attach();
+            attached = true;
+        }
+        return true;
+    }
+
+    /**
+     * Unsubscribe a listener, detaching the source if it was the last one
+     *
+     * @param listener the listener
+     * @return false if the listener was not subscribed
+     */
+    public synchronized boolean remove(L listener) {
+        if (!listeners.remove(listener)) {
+            return false;
+        }
+        if (listeners.isEmpty() && attached) {
+            source.detach();
+            attached = false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of subscribed listeners
+     */
+    public int size() {
+        return listeners.size();
+    }
+
+    /**
+     * @return true while the source is attached
+     */
+    public synchronized boolean isAttached() {
+        return attached;
+    }
+
+    /**
+     * @return the listeners subscribed when this is called; later changes are not seen
+     */
+    @Override
+    public Iterator<L> iterator() {
+        return listeners.iterator();
+    }
+}
@@ -0,0 +1,68 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Converts MAC addresses such as BSSIDs between their text form {@code aa:bb:cc:dd:ee:ff} and a
+ * 48 bit number, for compact binary storage
+ */
+public final class MacAddresses {
+
+    /**
+     * The BSSID Android reports for the connected access point when the app may not see it, for
+     * example without the location permission
+     */
+    public static final String REDACTED = "02:00:00:00:00:00";
+
+    private static final long REDACTED_VALUE = 0x020000000000L;
+
+    private MacAddresses() {
+    }
+
+    /**
+     * @param address address in the form {@code aa:bb:cc:dd:ee:ff}, may be null
+     * @return the address as a number, 0 if it is null or malformed
+     */
+    public static long parse(String address) {
+        if (address == null || address.length() != 17) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = 0; i < 6; i++) {
+            int high = Character.digit(address.charAt(i * 3), 16);
+            int low = Character.digit(address.charAt(i * 3 + 1), 16);
+            if (high < 0 || low < 0 || (i < 5 && address.charAt(i * 3 + 2) != ':')) {
+                return 0;
+            }
+            value = (value << 8) | (high << 4) | low;
+        }
+        return value;
+    }
+
+    /**
+     * @param address BSSID as the platform reports it, may be null
+     * @return the BSSID in the form {@code aa:bb:cc:dd:ee:ff}, null if it is null, malformed or
+     * {@link #REDACTED}, so it can't be mistaken for an access point
+     */
+    public static String normalize(String address) {
+        long value = parse(address);
+        return value == REDACTED_VALUE ? null : format(value);
+    }
+
+    /**
+     * @param value address as returned by {@link #parse(String)}
+     * @return the address in the form {@code aa:bb:cc:dd:ee:ff}, null if the value is 0
+     */
+    public static String format(long value) {
+        if (value == 0) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(17);
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            int octet = (int) (value >>> shift) & 0xff;
+            builder.append(Character.forDigit(octet >> 4, 16)).append(Character.forDigit(octet & 0xf, 16));
+            if (shift > 0) {
+                builder.append(':');
+            }
+        }
+        return builder.toString();
+    }
+}
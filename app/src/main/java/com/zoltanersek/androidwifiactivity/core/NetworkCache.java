@@ -0,0 +1,290 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * What was learned about networks the device joined before: the network id, the access point,
+ * its channel, its security and when it was last joined. A connection attempt consults it to
+ * configure a known network without waiting for a scan.
+ * <p>
+ * Entries are evicted least recently used first once the cache holds more than its maximum.
+ * <p>
+ * Binary format, big endian:
+ * <pre>
+ * header:  magic (4) version (1) record count (2)
+ * record:  length (2) crc32 of body (4) body (length)
+ * body:    ssid length (1) ssid utf-8 bytes, network id (4), bssid (6), frequency (2),
+ *          capabilities (4), last success epoch millis (8)
+ * </pre>
+ * Every record carries its own length and checksum, so a damaged record is skipped and the
+ * records after it are still read. Methods are synchronized so the cache can be updated on one
+ * thread and written out on another.
+ */
+public final class NetworkCache {
+
+    private static final int MAGIC = 0x574e4343; // "WNCC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 7;
+    private static final int FIXED_BODY_SIZE = 1 + 4 + 6 + 2 + 4 + 8;
+    private static final int MAX_SSID_BYTES = 32;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxEntries;
+
+    /**
+     * @param maxEntries number of networks kept
+     */
+    public NetworkCache(int maxEntries) {
+        setMaxEntries(maxEntries);
+    }
+
+    /**
+     * Change the number of networks kept, evicting the least recently used ones if needed
+     *
+     * @param maxEntries number of networks kept
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        trim();
+    }
+
+    /**
+     * @param ssid SSID of the network
+     * @return the entry of the network, null if it is not cached
+     */
+    public synchronized Entry get(String ssid) {
+        return entries.get(ssid);
+    }
+
+    /**
+     * Add or replace the entry of a network
+     *
+     * @param entry the entry
+     */
+    public synchronized void put(Entry entry) {
+        entries.put(entry.getSsid(), entry);
+        trim();
+    }
+
+    /**
+     * @param ssid SSID of the network to forget
+     */
+    public synchronized void remove(String ssid) {
+        entries.remove(ssid);
+    }
+
+    /**
+     * @return number of cached networks
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void trim() {
+        while (entries.size() > maxEntries) {
+            String eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+        }
+    }
+
+    /**
+     * @return the cache in its binary form, least recently used first
+     */
+    public synchronized byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + entries.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteBuffer body = ByteBuffer.allocate(FIXED_BODY_SIZE + MAX_SSID_BYTES);
+        CRC32 crc = new CRC32();
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            List<byte[]> ssids = new ArrayList<>(entries.size());
+            List<Entry> written = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                byte[] ssid = entry.getSsid().getBytes(UTF_8);
+                // SSIDs are at most 32 bytes, anything else can't have come from a real network
+                if (ssid.length > 0 && ssid.length <= MAX_SSID_BYTES) {
+                    ssids.add(ssid);
+                    written.add(entry);
+                }
+            }
+            out.writeShort(written.size());
+            for (int i = 0; i < written.size(); i++) {
+                Entry entry = written.get(i);
+                byte[] ssid = ssids.get(i);
+                body.clear();
+                body.put((byte) ssid.length);
+                body.put(ssid);
+                body.putInt(entry.getNetworkId());
+                putBssid(body, entry.getBssid());
+                body.putShort((short) entry.getFrequency());
+                body.putInt(entry.getCapabilities());
+                body.putLong(entry.getLastSuccessMillis());
+                crc.reset();
+                crc.update(body.array(), 0, body.position());
+                out.writeShort(body.position());
+                out.writeInt((int) crc.getValue());
+                out.write(body.array(), 0, body.position());
+            }
+            out.flush();
+        } catch (IOException e) {
+            // can't happen with a byte array stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replace the content of the cache with its binary form. Records that fail their checksum
+     * are skipped; a truncated file keeps the records read before the damage.
+     *
+     * @param data bytes produced by {@link #toByteArray()}
+     * @return number of records read
+     */
+    public synchronized int load(byte[] data) {
+        entries.clear();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        CRC32 crc = new CRC32();
+        List<Entry> loaded = new ArrayList<>();
+        try {
+            if (buffer.getInt() != MAGIC || (buffer.get() & 0xff) != VERSION) {
+                return 0;
+            }
+            int count = buffer.getShort() & 0xffff;
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getShort() & 0xffff;
+                int checksum = buffer.getInt();
+                int start = buffer.position();
+                if (length > buffer.remaining()) {
+                    break;
+                }
+                buffer.position(start + length);
+                crc.reset();
+                crc.update(data, start, length);
+                if ((int) crc.getValue() != checksum) {
+                    continue;
+                }
+                Entry entry = readBody(ByteBuffer.wrap(data, start, length));
+                if (entry != null) {
+                    loaded.add(entry);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // truncated, keep what was read
+        }
+        for (Entry entry : loaded) {
+            entries.put(entry.getSsid(), entry);
+        }
+        trim();
+        return loaded.size();
+    }
+
+    private static Entry readBody(ByteBuffer body) {
+        try {
+            int ssidLength = body.get() & 0xff;
+            if (ssidLength == 0 || ssidLength > MAX_SSID_BYTES || body.remaining() != ssidLength + FIXED_BODY_SIZE - 1) {
+                return null;
+            }
+            String ssid = new String(body.array(), body.position(), ssidLength, UTF_8);
+            body.position(body.position() + ssidLength);
+            int networkId = body.getInt();
+            String bssid = getBssid(body);
+            int frequency = body.getShort() & 0xffff;
+            int capabilities = body.getInt();
+            long lastSuccess = body.getLong();
+            return new Entry(ssid, networkId, bssid, frequency, capabilities, lastSuccess);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private static void putBssid(ByteBuffer body, String bssid) {
+        long value = MacAddresses.parse(bssid);
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            body.put((byte) (value >>> shift));
+        }
+    }
+
+    private static String getBssid(ByteBuffer body) {
+        long value = 0;
+        for (int i = 0; i < 6; i++) {
+            value = (value << 8) | (body.get() & 0xff);
+        }
+        return MacAddresses.format(value);
+    }
+
+    /**
+     * What is known about one network
+     */
+    public static final class Entry {
+
+        private final String ssid;
+        private final int networkId;
+        private final String bssid;
+        private final int frequency;
+        private final int capabilities;
+        private final long lastSuccessMillis;
+
+        /**
+         * @param ssid              SSID of the network
+         * @param networkId         network id of its configuration, -1 if unknown
+         * @param bssid             access point last joined, null if unknown
+         * @param frequency         channel frequency in MHz, 0 if unknown
+         * @param capabilities      parsed {@link Capabilities} of the network
+         * @param lastSuccessMillis time of the last successful connection, epoch milliseconds
+         */
+        public Entry(String ssid, int networkId, String bssid, int frequency, int capabilities,
+                     long lastSuccessMillis) {
+            this.ssid = ssid;
+            this.networkId = networkId;
+            this.bssid = bssid;
+            this.frequency = frequency;
+            this.capabilities = capabilities;
+            this.lastSuccessMillis = lastSuccessMillis;
+        }
+
+        public String getSsid() {
+            return ssid;
+        }
+
+        public int getNetworkId() {
+            return networkId;
+        }
+
+        public String getBssid() {
+            return bssid;
+        }
+
+        public int getFrequency() {
+            return frequency;
+        }
+
+        public int getCapabilities() {
+            return capabilities;
+        }
+
+        public long getLastSuccessMillis() {
+            return lastSuccessMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{ssid=" + ssid + ", networkId=" + networkId + ", bssid=" + bssid
+                    + ", frequency=" + frequency + ", capabilities=" + capabilities
+                    + ", lastSuccessMillis=" + lastSuccessMillis + '}';
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Everything needed to configure a network: SSID, password, security and optionally the access
+ * point to join. The platform turns it into its own configuration, a {@code WifiConfiguration}
+ * on Android.
+ */
+public final class NetworkSpec {
+
+    private final Ssid ssid;
+    private final String password;
+    private final SecurityType securityType;
+    private final String bssid;
+
+    /**
+     * @param ssid         SSID of the network
+     * @param password     password of the network, ignored for open networks
+     * @param securityType security type, one that {@link ConnectionEngine#isSupported} accepts
+     * @param bssid        access point to join, null to let the platform choose
+     */
+    public NetworkSpec(Ssid ssid, String password, SecurityType securityType, String bssid) {
+        this.ssid = ssid;
+        this.password = password;
+        this.securityType = securityType;
+        this.bssid = bssid;
+    }
+
+    public Ssid getSsid() {
+        return ssid;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public SecurityType getSecurityType() {
+        return securityType;
+    }
+
+    public String getBssid() {
+        return bssid;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkSpec{ssid=" + ssid + ", securityType=" + securityType + ", bssid=" + bssid + '}';
+    }
+}
@@ -0,0 +1,73 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Result of one run of a {@link ReachabilityProbe}
+ */
+public final class ProbeResult {
+
+    private final ProbeStatus status;
+    private final int responseCode;
+    private final long rttMillis;
+    private final long ttfbMillis;
+    private final String portalUrl;
+
+    /**
+     * @param status       outcome of the probe
+     * @param responseCode HTTP status code, -1 if no response was received
+     * @param rttMillis    time to open the connection to the endpoint, -1 if it was not opened
+     * @param ttfbMillis   time from sending the request to the first byte of the response, -1 if
+     *                     no response was received
+     * @param portalUrl    where a captive portal redirected to, may be null
+     */
+    public ProbeResult(ProbeStatus status, int responseCode, long rttMillis, long ttfbMillis, String portalUrl) {
+        this.status = status;
+        this.responseCode = responseCode;
+        this.rttMillis = rttMillis;
+        this.ttfbMillis = ttfbMillis;
+        this.portalUrl = portalUrl;
+    }
+
+    /**
+     * @return outcome of the probe
+     */
+    public ProbeStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return HTTP status code of the response, -1 if no response was received
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * @return time to open the connection to the endpoint in milliseconds, about one round trip
+     * for plain HTTP, -1 if it was not opened
+     */
+    public long getRttMillis() {
+        return rttMillis;
+    }
+
+    /**
+     * @return time from sending the request to the first byte of the response in milliseconds,
+     * -1 if no response was received
+     */
+    public long getTtfbMillis() {
+        return ttfbMillis;
+    }
+
+    /**
+     * @return the page a captive portal redirected to, null if it did not redirect or the status
+     * is not {@link ProbeStatus#CAPTIVE_PORTAL}
+     */
+    public String getPortalUrl() {
+        return portalUrl;
+    }
+
+    @Override
+    public String toString() {
+        return "ProbeResult{status=" + status + ", responseCode=" + responseCode + ", rtt=" + rttMillis
+                + "ms, ttfb=" + ttfbMillis + "ms" + (portalUrl != null ? ", portalUrl=" + portalUrl : "") + '}';
+    }
+}
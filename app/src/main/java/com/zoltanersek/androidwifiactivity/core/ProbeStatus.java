@@ -0,0 +1,24 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Outcome of a {@link ReachabilityProbe}
+ */
+public enum ProbeStatus {
+
+    /**
+     * The endpoint answered as expected, traffic flows
+     */
+    REACHABLE,
+
+    /**
+     * Something else answered in place of the endpoint, a page or a redirect: the network sits
+     * behind a captive portal
+     */
+    CAPTIVE_PORTAL,
+
+    /**
+     * The endpoint could not be reached, for example because the network has no IP address yet,
+     * or answered with an error
+     */
+    UNREACHABLE
+}
@@ -0,0 +1,247 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * Checks that traffic flows over a network by fetching an HTTP endpoint, the way Android
+ * validates networks. By default the endpoint answers 204 with no content; a 204 or an empty 200
+ * means the network is usable, any other page or a redirect means a captive portal answered in
+ * its place, and an error or no answer means the network does not reach the endpoint yet, for
+ * example because DHCP has not finished. Redirects are not followed and nothing is cached.
+ * <p>
+ * {@link #run} blocks for up to the connect and read timeouts and must not be called on the
+ * engine loop; {@link WifiPlatform#probe} runs it on another thread. Create instances with
+ * {@link Builder}.
+ */
+public final class ReachabilityProbe {
+
+    /**
+     * Endpoint used when none is set, answers 204
+     */
+    public static final String DEFAULT_URL = "http://connectivitycheck.gstatic.com/generate_204";
+
+    /**
+     * Opens the connection to the endpoint, so the platform can bind it to a network
+     */
+    public interface ConnectionFactory {
+        URLConnection open(URL url) throws IOException;
+    }
+
+    /**
+     * Opens connections over the default network of the process
+     */
+    public static final ConnectionFactory DEFAULT_NETWORK = new ConnectionFactory() {
+        @Override
+        public URLConnection open(URL url) throws IOException {
+            return url.openConnection();
+        }
+    };
+
+    private final URL url;
+    private final int expectedResponseCode;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxAttempts;
+    private final long retryIntervalMillis;
+
+    private ReachabilityProbe(Builder builder) {
+        this.url = builder.url;
+        this.expectedResponseCode = builder.expectedResponseCode;
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.readTimeoutMillis = builder.readTimeoutMillis;
+        this.maxAttempts = builder.maxAttempts;
+        this.retryIntervalMillis = builder.retryIntervalMillis;
+    }
+
+    /**
+     * @return the endpoint
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * @return status code the endpoint answers with when nothing is in the way
+     */
+    public int getExpectedResponseCode() {
+        return expectedResponseCode;
+    }
+
+    /**
+     * @return number of runs before the network is reported unreachable
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return time between an unreachable run and the next one
+     */
+    public long getRetryIntervalMillis() {
+        return retryIntervalMillis;
+    }
+
+    /**
+     * Fetch the endpoint over the default network of the process
+     *
+     * @return the result
+     */
+    public ProbeResult run() {
+        return run(DEFAULT_NETWORK);
+    }
+
+    /**
+     * Fetch the endpoint once. Blocks for up to the connect and read timeouts.
+     *
+     * @param factory opens the connection, on the network to probe
+     * @return the result
+     */
+    public ProbeResult run(ConnectionFactory factory) {
+        HttpURLConnection connection = null;
+        long rttMillis = -1;
+        try {
+            URLConnection opened = factory.open(url);
+            if (!(opened instanceof HttpURLConnection)) {
+                throw new IOException("not an HTTP connection: " + url);
+            }
+            connection = (HttpURLConnection) opened;
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setInstanceFollowRedirects(false);
+            connection.setUseCaches(false);
+            // a pooled connection would hide the round trip of the next run
+            connection.setRequestProperty("Connection", "close");
+            long begin = System.nanoTime();
+            connection.connect();
+            long connected = System.nanoTime();
+            rttMillis = (connected - begin) / 1000000;
+            int responseCode = connection.getResponseCode();
+            long ttfbMillis = (System.nanoTime() - connected) / 1000000;
+            ProbeStatus status = classify(connection, responseCode);
+            // an expected redirect is no portal, its target is not a portal page
+            String portalUrl = status == ProbeStatus.CAPTIVE_PORTAL && responseCode >= 300 && responseCode < 400
+                    ? connection.getHeaderField("Location") : null;
+            return new ProbeResult(status, responseCode, rttMillis, ttfbMillis, portalUrl);
+        } catch (IOException | SecurityException e) {
+            // SecurityException: the app lacks the INTERNET permission
+            return new ProbeResult(ProbeStatus.UNREACHABLE, -1, rttMillis, -1, null);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private ProbeStatus classify(HttpURLConnection connection, int responseCode) {
+        if (responseCode == expectedResponseCode) {
+            return ProbeStatus.REACHABLE;
+        }
+        if (expectedResponseCode == HttpURLConnection.HTTP_NO_CONTENT
+                && responseCode == HttpURLConnection.HTTP_OK && connection.getContentLength() == 0) {
+            // some proxies turn the 204 into an empty 200
+            return ProbeStatus.REACHABLE;
+        }
+        if (responseCode >= 200 && responseCode < 400) {
+            return ProbeStatus.CAPTIVE_PORTAL;
+        }
+        return ProbeStatus.UNREACHABLE;
+    }
+
+    /**
+     * Builder for {@link ReachabilityProbe}
+     */
+    public static final class Builder {
+
+        private URL url;
+        private int expectedResponseCode = HttpURLConnection.HTTP_NO_CONTENT;
+        private int connectTimeoutMillis = 5000;
+        private int readTimeoutMillis = 5000;
+        private int maxAttempts = 3;
+        private long retryIntervalMillis = 1000;
+
+        public Builder() {
+            setUrl(DEFAULT_URL);
+        }
+
+        /**
+         * Set the endpoint to fetch. Use plain HTTP: a captive portal can't answer HTTPS, so
+         * it would look unreachable instead of being detected. Defaults to {@link #DEFAULT_URL}.
+         *
+         * @param url http or https URL of the endpoint
+         * @return this builder
+         */
+        public Builder setUrl(String url) {
+            try {
+                URL parsed = new URL(url);
+                if (!"http".equals(parsed.getProtocol()) && !"https".equals(parsed.getProtocol())) {
+                    throw new IllegalArgumentException("url must be http or https: " + url);
+                }
+                this.url = parsed;
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("malformed url: " + url, e);
+            }
+            return this;
+        }
+
+        /**
+         * Set the status code the endpoint answers with when nothing is in the way. Other 2xx
+         * and 3xx answers are taken for a captive portal. Defaults to 204.
+         *
+         * @param responseCode HTTP status code
+         * @return this builder
+         */
+        public Builder setExpectedResponseCode(int responseCode) {
+            if (responseCode < 200 || responseCode >= 400) {
+                throw new IllegalArgumentException("responseCode must be 2xx or 3xx");
+            }
+            this.expectedResponseCode = responseCode;
+            return this;
+        }
+
+        /**
+         * Set the time given to open the connection and to read the response. Default to
+         * 5 seconds each.
+         *
+         * @param connectMillis connect timeout in milliseconds
+         * @param readMillis    read timeout in milliseconds
+         * @return this builder
+         */
+        public Builder setTimeouts(int connectMillis, int readMillis) {
+            if (connectMillis <= 0 || readMillis <= 0) {
+                throw new IllegalArgumentException("timeouts must be positive");
+            }
+            this.connectTimeoutMillis = connectMillis;
+            this.readTimeoutMillis = readMillis;
+            return this;
+        }
+
+        /**
+         * Set how often the endpoint is fetched before the network is reported unreachable, and
+         * the time between runs. A network is often connected a moment before traffic flows.
+         * Defaults to 3 runs, 1 second apart.
+         *
+         * @param maxAttempts         number of runs
+         * @param retryIntervalMillis time between runs in milliseconds
+         * @return this builder
+         */
+        public Builder setAttempts(int maxAttempts, long retryIntervalMillis) {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            if (retryIntervalMillis < 0) {
+                throw new IllegalArgumentException("retryIntervalMillis must not be negative");
+            }
+            this.maxAttempts = maxAttempts;
+            this.retryIntervalMillis = retryIntervalMillis;
+            return this;
+        }
+
+        public ReachabilityProbe build() {
+            return new ReachabilityProbe(this);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * How a failed connection attempt is retried. A network that was not found and a network that
+ * did not connect (authentication failure or timeout) have separate retry budgets, because the
+ * first usually means the access point is out of range or still booting and the second a busy or
+ * flaky access point. Retries wait with exponential backoff and random jitter, so many devices
+ * losing the same access point do not come back in lockstep. Create instances with
+ * {@link Builder}.
+ * <p>
+ * An unsupported security type is never retried.
+ */
+public final class RetryPolicy {
+
+    /**
+     * No retries, the first failure ends the attempt
+     */
+    public static final RetryPolicy NONE = new Builder().setMaxAttempts(1).build();
+
+    private final int maxAttempts;
+    private final int notFoundRetries;
+    private final int failureRetries;
+    private final long initialBackoffMillis;
+    private final double backoffMultiplier;
+    private final long maxBackoffMillis;
+    private final double jitter;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.notFoundRetries = builder.notFoundRetries;
+        this.failureRetries = builder.failureRetries;
+        this.initialBackoffMillis = builder.initialBackoffMillis;
+        this.backoffMultiplier = builder.backoffMultiplier;
+        this.maxBackoffMillis = builder.maxBackoffMillis;
+        this.jitter = builder.jitter;
+    }
+
+    /**
+     * @return number of attempts including the first one
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return retries allowed after {@link ConnectStatus#NOT_FOUND}
+     */
+    public int getNotFoundRetries() {
+        return notFoundRetries;
+    }
+
+    /**
+     * @return retries allowed after {@link ConnectStatus#AUTH_FAILED} and {@link ConnectStatus#TIMEOUT}
+     */
+    public int getFailureRetries() {
+        return failureRetries;
+    }
+
+    /**
+     * @param status      outcome of the attempt that just failed
+     * @param attempts    attempts made so far, including the one that just failed
+     * @param retriesUsed retries already spent from the budget of {@code status}
+     * @return true if another attempt should be made
+     */
+    public boolean shouldRetry(ConnectStatus status, int attempts, int retriesUsed) {
+        if (attempts >= maxAttempts) {
+            return false;
+        }
+        switch (status) {
+            case NOT_FOUND:
+                return retriesUsed < notFoundRetries;
+            case AUTH_FAILED:
+            case TIMEOUT:
+                return retriesUsed < failureRetries;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param attempts attempts made so far, 1 before the first retry
+     * @param random   uniformly distributed number in [0, 1) for the jitter
+     * @return time to wait before the next attempt in milliseconds
+     */
+    public long getBackoffMillis(int attempts, double random) {
+        double backoff = initialBackoffMillis * Math.pow(backoffMultiplier, attempts - 1);
+        backoff = Math.min(backoff, maxBackoffMillis);
+        // take a random part of up to jitter of the backoff away
+        return (long) (backoff * (1 - jitter * random));
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", notFoundRetries=" + notFoundRetries
+                + ", failureRetries=" + failureRetries + ", initialBackoffMillis=" + initialBackoffMillis
+                + ", backoffMultiplier=" + backoffMultiplier + ", maxBackoffMillis=" + maxBackoffMillis
+                + ", jitter=" + jitter + '}';
+    }
+
+    /**
+     * Builder for {@link RetryPolicy}
+     */
+    public static final class Builder {
+
+        private int maxAttempts = 3;
+        private int notFoundRetries = 2;
+        private int failureRetries = 1;
+        private long initialBackoffMillis = 1000;
+        private double backoffMultiplier = 2;
+        private long maxBackoffMillis = 30 * 1000;
+        private double jitter = 0.5;
+
+        /**
+         * @param maxAttempts number of attempts including the first one, 3 by default
+         * @return this builder
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param retries retries after the network was not found, 2 by default
+         * @return this builder
+         */
+        public Builder setNotFoundRetries(int retries) {
+            if (retries < 0) {
+                throw new IllegalArgumentException("retries must not be negative");
+            }
+            this.notFoundRetries = retries;
+            return this;
+        }
+
+        /**
+         * @param retries retries after an authentication failure or a timeout, 1 by default
+         * @return this builder
+         */
+        public Builder setFailureRetries(int retries) {
+            if (retries < 0) {
+                throw new IllegalArgumentException("retries must not be negative");
+            }
+            this.failureRetries = retries;
+            return this;
+        }
+
+        /**
+         * @param initialMillis wait before the first retry, 1 second by default
+         * @param multiplier    factor applied to the wait for every further retry, 2 by default
+         * @param maxMillis     longest wait, 30 seconds by default
+         * @return this builder
+         */
+        public Builder setBackoff(long initialMillis, double multiplier, long maxMillis) {
+            if (initialMillis < 0 || multiplier < 1 || maxMillis < initialMillis) {
+                throw new IllegalArgumentException("invalid backoff");
+            }
+            this.initialBackoffMillis = initialMillis;
+            this.backoffMultiplier = multiplier;
+            this.maxBackoffMillis = maxMillis;
+            return this;
+        }
+
+        /**
+         * Shorten every wait by a random part of up to {@code jitter} of it. 0 waits exactly the
+         * backoff, 1 waits anywhere between 0 and the backoff. Defaults to 0.5.
+         *
+         * @param jitter fraction between 0 and 1
+         * @return this builder
+         */
+        public Builder setJitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.List;
+
+/**
+ * Compares each scan with the access points known from the scans before and reports only what
+ * changed: access points that appeared, that disappeared, and whose signal moved by at least a
+ * threshold, whose capabilities changed or that switched channel. Code that ranks or caches access
+ * points then works on the changes instead of the whole scan.
+ * <p>
+ * Access points are keyed by their BSSID as a number, see {@link MacAddresses}; an access point
+ * with a malformed BSSID is ignored. The known state of an access point is the one last reported,
+ * so a signal that drifts slowly is reported once the drift adds up to the threshold.
+ * <p>
+ * The known access points are kept in flat arrays with an open addressing index, so a scan that
+ * changes nothing allocates nothing. Not thread safe.
+ */
+public final class ScanDiffer {
+
+    /**
+     * Receives the changes of a scan, during {@link #update}
+     */
+    public interface Listener {
+        void onAdded(AccessPoint accessPoint);
+
+        void onRemoved(AccessPoint accessPoint);
+
+        /**
+         * @param previous the access point as last reported
+         * @param current  the access point in this scan
+         */
+        void onChanged(AccessPoint previous, AccessPoint current);
+    }
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final int levelThreshold;
+
+    // known access points, dense from 0 to size - 1
+    private long[] keys;
+    private AccessPoint[] accessPoints;
+    private int[] seen;
+    private int size;
+
+    // open addressing index: slot -> dense index + 1, 0 for an empty slot
+    private int[] table;
+    private int mask;
+
+    private int generation;
+
+    /**
+     * @param levelThreshold smallest change of the signal level in dBm that is reported
+     */
+    public ScanDiffer(int levelThreshold) {
+        if (levelThreshold <= 0) {
+            throw new IllegalArgumentException("levelThreshold must be positive");
+        }
+        this.levelThreshold = levelThreshold;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @return number of known access points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param bssid BSSID of an access point
+     * @return the access point as last reported, null if it is not known
+     */
+    public AccessPoint get(String bssid) {
+        int index = indexOf(MacAddresses.parse(bssid));
+        return index == -1 ? null : accessPoints[index];
+    }
+
+    /**
+     * Forget all known access points without reporting them as removed
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            accessPoints[i] = null;
+        }
+        size = 0;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = 0;
+        }
+    }
+
+    /**
+     * Compare a scan with the known access points, report the changes and make the scan the
+     * known state
+     *
+     * @param scan     the scan results
+     * @param listener receives the changes, may be null to only update the known state
+     * @return number of changes reported
+     */
+    public int update(List<AccessPoint> scan, Listener listener) {
+        int changes = 0;
+        generation++;
+        for (int i = 0, count = scan.size(); i < count; i++) {
+            AccessPoint current = scan.get(i);
+            long key = MacAddresses.parse(current.getBssid());
+            if (key == 0) {
+                continue;
+            }
+            int index = indexOf(key);
+            if (index == -1) {
+                index = add(key, current);
+                changes++;
+                if (listener != null) {
+                    listener.onAdded(current);
+                }
+            } else {
+                AccessPoint previous = accessPoints[index];
+                if (isChanged(previous, current)) {
+                    accessPoints[index] = current;
+                    changes++;
+                    if (listener != null) {
+                        listener.onChanged(previous, current);
+                    }
+                }
+            }
+            seen[index] = generation;
+        }
+        // walk backwards, removing moves the last entry into the hole
+        for (int index = size - 1; index >= 0; index--) {
+            if (seen[index] != generation) {
+                AccessPoint removed = accessPoints[index];
+                remove(index);
+                changes++;
+                if (listener != null) {
+                    listener.onRemoved(removed);
+                }
+            }
+        }
+        return changes;
+    }
+
+    private boolean isChanged(AccessPoint previous, AccessPoint current) {
+        return Math.abs(current.getLevel() - previous.getLevel()) >= levelThreshold
+                || current.getFrequency() != previous.getFrequency()
+                || current.getChannelWidth() != previous.getChannelWidth()
+                || !equals(current.getCapabilities(), previous.getCapabilities())
+                || !equals(current.getSsid(), previous.getSsid());
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static int hash(long key) {
+        // spread the vendor prefix and the device part of the address over the index
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int indexOf(long key) {
+        if (key == 0) {
+            return -1;
+        }
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1] == key) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int add(long key, AccessPoint accessPoint) {
+        if (size == keys.length) {
+            grow();
+        }
+        int index = size++;
+        keys[index] = key;
+        accessPoints[index] = accessPoint;
+        insert(key, index);
+        return index;
+    }
+
+    private void insert(long key, int index) {
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private void remove(int index) {
+        deleteSlot(keys[index]);
+        int last = --size;
+        if (index != last) {
+            // move the last entry into the hole and point its slot at the new place
+            keys[index] = keys[last];
+            accessPoints[index] = accessPoints[last];
+            seen[index] = seen[last];
+            table[slotOf(keys[index])] = index + 1;
+        }
+        accessPoints[last] = null;
+    }
+
+    private int slotOf(long key) {
+        int slot = hash(key) & mask;
+        while (keys[table[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empty the slot of a key and shift the entries of the probe run after it back, so lookups
+     * never stop early at the hole
+     */
+    private void deleteSlot(long key) {
+        int hole = slotOf(key);
+        table[hole] = 0;
+        for (int slot = (hole + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int home = hash(keys[table[slot] - 1]) & mask;
+            // move the entry if its home is not in the cyclic range (hole, slot]
+            if (hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot)) {
+                table[hole] = table[slot];
+                table[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        accessPoints = new AccessPoint[capacity];
+        seen = new int[capacity];
+        // at most half full
+        table = new int[capacity * 2];
+        mask = table.length - 1;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        AccessPoint[] oldAccessPoints = accessPoints;
+        int[] oldSeen = seen;
+        allocate(keys.length * 2);
+        System.arraycopy(oldKeys, 0, keys, 0, size);
+        System.arraycopy(oldAccessPoints, 0, accessPoints, 0, size);
+        System.arraycopy(oldSeen, 0, seen, 0, size);
+        for (int i = 0; i < size; i++) {
+            insert(keys[i], i);
+        }
+    }
+}
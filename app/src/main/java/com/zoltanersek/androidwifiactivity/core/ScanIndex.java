@@ -0,0 +1,103 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.List;
+
+/**
+ * Scan results indexed by the hash of their SSID, so looking up a network only visits the access
+ * points of that network instead of the whole scan. Worth building when one scan is searched for
+ * several networks; a single lookup is as cheap with {@link ScanMatcher} on the list.
+ * <p>
+ * The index is three int arrays: a table of chain heads and a chain link per access point, in
+ * scan order, plus the channel occupancy that {@link BssidSelector} needs. The scan must not
+ * change while it is indexed.
+ */
+public final class ScanIndex {
+
+    private final List<AccessPoint> accessPoints;
+    // slot -> index + 1 of the first access point in the slot, 0 for none
+    private final int[] heads;
+    // index -> index + 1 of the next access point in the same slot, 0 for none
+    private final int[] next;
+    private final int mask;
+    private final int[] channelCounts;
+
+    /**
+     * @param accessPoints the scan results
+     */
+    public ScanIndex(List<AccessPoint> accessPoints) {
+        this.accessPoints = accessPoints;
+        int size = accessPoints.size();
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        heads = new int[capacity];
+        next = new int[size];
+        mask = capacity - 1;
+        channelCounts = new int[BssidSelector.SLOT_COUNT];
+        // backwards, so every chain is in scan order
+        for (int i = size - 1; i >= 0; i--) {
+            AccessPoint accessPoint = accessPoints.get(i);
+            int slot = slot(accessPoint.getSsidHash());
+            next[i] = heads[slot];
+            heads[slot] = i + 1;
+            int channel = BssidSelector.channelSlot(accessPoint.getFrequency());
+            if (channel >= 0) {
+                channelCounts[channel]++;
+            }
+        }
+    }
+
+    /**
+     * @return the indexed scan results
+     */
+    public List<AccessPoint> getAccessPoints() {
+        return accessPoints;
+    }
+
+    /**
+     * Find the first access point of a network
+     *
+     * @param ssid SSID of the network
+     * @return the first access point in scan order with the SSID, null if there is none
+     */
+    public AccessPoint find(Ssid ssid) {
+        int index = first(ssid);
+        return index == -1 ? null : accessPoints.get(index);
+    }
+
+    /**
+     * @return index of the first access point with the SSID, -1 if there is none
+     */
+    int first(Ssid ssid) {
+        return find(heads[slot(ssid.hashCode())], ssid);
+    }
+
+    /**
+     * @return index of the next access point with the SSID after the given index, -1 if there is none
+     */
+    int next(int index, Ssid ssid) {
+        return find(next[index], ssid);
+    }
+
+    private int find(int entry, Ssid ssid) {
+        for (; entry != 0; entry = next[entry - 1]) {
+            if (accessPoints.get(entry - 1).hasSsid(ssid)) {
+                return entry - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of access points of any SSID on the channel of the frequency
+     */
+    int getChannelCount(int frequency) {
+        int slot = BssidSelector.channelSlot(frequency);
+        return slot >= 0 ? channelCounts[slot] : 0;
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,40 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.List;
+
+/**
+ * Finds the network to connect to in a list of scan results
+ */
+public final class ScanMatcher {
+
+    private ScanMatcher() {
+    }
+
+    /**
+     * Find the first access point of a network
+     *
+     * @param accessPoints the scan results
+     * @param ssid         SSID of the network
+     * @return the first access point with the SSID, null if there is none
+     */
+    public static AccessPoint find(List<AccessPoint> accessPoints, String ssid) {
+        return find(accessPoints, Ssid.of(ssid));
+    }
+
+    /**
+     * Find the first access point of a network, comparing SSID hashes before bytes
+     *
+     * @param accessPoints the scan results
+     * @param ssid         SSID of the network
+     * @return the first access point with the SSID, null if there is none
+     */
+    public static AccessPoint find(List<AccessPoint> accessPoints, Ssid ssid) {
+        for (int i = 0, size = accessPoints.size(); i < size; i++) {
+            AccessPoint accessPoint = accessPoints.get(i);
+            if (accessPoint.hasSsid(ssid)) {
+                return accessPoint;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Security type used to join a network, chosen from its parsed {@link Capabilities}
+ */
+public enum SecurityType {
+
+    /**
+     * No security, includes the open half of an OWE transition network
+     */
+    OPEN,
+
+    /**
+     * WEP shared key
+     */
+    WEP,
+
+    /**
+     * WPA/WPA2 personal, including WPA2/WPA3 transition networks
+     */
+    PSK,
+
+    /**
+     * WPA3 personal only
+     */
+    SAE,
+
+    /**
+     * Enhanced open (OWE) only
+     */
+    OWE,
+
+    /**
+     * WPA/WPA2/WPA3 enterprise (802.1X)
+     */
+    EAP,
+
+    /**
+     * Chinese WAPI
+     */
+    WAPI,
+
+    /**
+     * Secured with a key management the parser does not know
+     */
+    UNKNOWN
+}
@@ -0,0 +1,288 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The SSID of a network as the bytes sent over the air, with its hash computed once. Android
+ * reports SSIDs in several forms: scan results carry the plain text, {@code WifiInfo} and
+ * {@code WifiConfiguration} quote UTF-8 names ({@code "MyNetwork"}), write other names as hex
+ * digits ({@code 4d794e6574}) and use {@code <unknown ssid>} while the SSID is not known.
+ * {@link #matches(String)} and {@link #matchesText(String)} compare those forms with the bytes
+ * character by character, so matching allocates nothing, and an SSID that really starts and ends
+ * with a quote still matches.
+ * <p>
+ * Scan results can be looked up by SSID in a {@link ScanIndex}; {@link #hash(String)} gives the
+ * hash of a plain text SSID without creating an instance.
+ */
+public final class Ssid {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * How {@code WifiInfo} reports the SSID while it is not known
+     */
+    public static final String UNKNOWN_SSID = "<unknown ssid>";
+
+    /**
+     * The SSID of no network, matches nothing
+     */
+    public static final Ssid UNKNOWN = new Ssid(new byte[0], "");
+
+    private final byte[] bytes;
+    private final String text;
+    private final boolean utf8;
+    private final int hash;
+
+    private Ssid(byte[] bytes, String text) {
+        this.bytes = bytes;
+        this.text = text;
+        this.utf8 = Arrays.equals(text.getBytes(UTF_8), bytes);
+        this.hash = hash(bytes);
+    }
+
+    /**
+     * @param text the name of the network as typed by the user or found in a scan result, taken
+     *             as it is, quotes included
+     * @return the SSID
+     */
+    public static Ssid of(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("text must not be null");
+        }
+        return text.isEmpty() ? UNKNOWN : new Ssid(text.getBytes(UTF_8), text);
+    }
+
+    /**
+     * @param bytes the SSID bytes
+     * @return the SSID
+     */
+    public static Ssid of(byte[] bytes) {
+        return bytes.length == 0 ? UNKNOWN : new Ssid(bytes.clone(), new String(bytes, UTF_8));
+    }
+
+    /**
+     * Parse an SSID as reported by {@code WifiInfo.getSSID()} or stored in
+     * {@code WifiConfiguration.SSID}
+     *
+     * @param value quoted text, hex digits or {@link #UNKNOWN_SSID}, may be null
+     * @return the SSID, {@link #UNKNOWN} if the value is null, empty or the placeholder
+     */
+    public static Ssid parse(String value) {
+        if (value == null || value.isEmpty() || UNKNOWN_SSID.equals(value)) {
+            return UNKNOWN;
+        }
+        if (isQuoted(value)) {
+            return of(value.substring(1, value.length() - 1));
+        }
+        if (isHex(value)) {
+            byte[] bytes = new byte[value.length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) hexByte(value, i * 2);
+            }
+            return new Ssid(bytes, new String(bytes, UTF_8));
+        }
+        return of(value);
+    }
+
+    /**
+     * @return true for {@link #UNKNOWN}
+     */
+    public boolean isUnknown() {
+        return bytes.length == 0;
+    }
+
+    /**
+     * @return the SSID as text; bytes that are not UTF-8 show as replacement characters
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return a copy of the SSID bytes
+     */
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * @return the SSID in the form {@code WifiConfiguration.SSID} expects: quoted text when the
+     * bytes are UTF-8, hex digits otherwise
+     */
+    public String toConfigString() {
+        if (utf8) {
+            return '"' + text + '"';
+        }
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Compare with an SSID as reported by {@code WifiInfo.getSSID()} or stored in
+     * {@code WifiConfiguration.SSID}, without allocating
+     *
+     * @param value quoted text, hex digits or {@link #UNKNOWN_SSID}, may be null
+     * @return true if the value is this SSID
+     */
+    public boolean matches(String value) {
+        if (value == null || isUnknown() || UNKNOWN_SSID.equals(value)) {
+            return false;
+        }
+        if (isQuoted(value)) {
+            return equalsUtf8(value, 1, value.length() - 1);
+        }
+        if (isHex(value)) {
+            if (value.length() != bytes.length * 2) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (hexByte(value, i * 2) != (bytes[i] & 0xff)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // neither quoted nor hex: a platform that reports the plain text
+        return equalsUtf8(value, 0, value.length());
+    }
+
+    /**
+     * Compare with the plain text SSID of a scan result, without allocating
+     *
+     * @param text the SSID text, may be null
+     * @return true if the text is this SSID
+     */
+    public boolean matchesText(String text) {
+        return text != null && !isUnknown() && equalsUtf8(text, 0, text.length());
+    }
+
+    /**
+     * Hash of a plain text SSID, equal to {@link #hashCode()} of the SSID made from the text.
+     * Computed from the UTF-8 encoding without allocating.
+     *
+     * @param text the SSID text, may be null
+     * @return the hash, 0 for null or empty text
+     */
+    public static int hash(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int hash = 1;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            int c = text.charAt(i);
+            if (c < 0x80) {
+                hash = 31 * hash + c;
+            } else if (c < 0x800) {
+                hash = 31 * (31 * hash + (byte) (0xc0 | (c >> 6))) + (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate((char) c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint((char) c, text.charAt(++i));
+                hash = 31 * hash + (byte) (0xf0 | (cp >> 18));
+                hash = 31 * hash + (byte) (0x80 | ((cp >> 12) & 0x3f));
+                hash = 31 * hash + (byte) (0x80 | ((cp >> 6) & 0x3f));
+                hash = 31 * hash + (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate((char) c)) {
+                // an unpaired surrogate is encoded as '?', like String.getBytes does
+                hash = 31 * hash + '?';
+            } else {
+                hash = 31 * hash + (byte) (0xe0 | (c >> 12));
+                hash = 31 * hash + (byte) (0x80 | ((c >> 6) & 0x3f));
+                hash = 31 * hash + (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return hash;
+    }
+
+    private static int hash(byte[] bytes) {
+        return bytes.length == 0 ? 0 : Arrays.hashCode(bytes);
+    }
+
+    /**
+     * @return true if the chars from start to end encode to exactly the SSID bytes in UTF-8
+     */
+    private boolean equalsUtf8(String value, int start, int end) {
+        int position = 0;
+        for (int i = start; i < end; i++) {
+            int c = value.charAt(i);
+            if (c < 0x80) {
+                if (position >= bytes.length || bytes[position++] != c) {
+                    return false;
+                }
+            } else if (c < 0x800) {
+                if (position + 2 > bytes.length
+                        || bytes[position++] != (byte) (0xc0 | (c >> 6))
+                        || bytes[position++] != (byte) (0x80 | (c & 0x3f))) {
+                    return false;
+                }
+            } else if (Character.isHighSurrogate((char) c) && i + 1 < end
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint((char) c, value.charAt(++i));
+                if (position + 4 > bytes.length
+                        || bytes[position++] != (byte) (0xf0 | (cp >> 18))
+                        || bytes[position++] != (byte) (0x80 | ((cp >> 12) & 0x3f))
+                        || bytes[position++] != (byte) (0x80 | ((cp >> 6) & 0x3f))
+                        || bytes[position++] != (byte) (0x80 | (cp & 0x3f))) {
+                    return false;
+                }
+            } else if (Character.isSurrogate((char) c)) {
+                if (position >= bytes.length || bytes[position++] != '?') {
+                    return false;
+                }
+            } else {
+                if (position + 3 > bytes.length
+                        || bytes[position++] != (byte) (0xe0 | (c >> 12))
+                        || bytes[position++] != (byte) (0x80 | ((c >> 6) & 0x3f))
+                        || bytes[position++] != (byte) (0x80 | (c & 0x3f))) {
+                    return false;
+                }
+            }
+        }
+        return position == bytes.length;
+    }
+
+    private static boolean isQuoted(String value) {
+        return value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"';
+    }
+
+    private static boolean isHex(String value) {
+        if ((value.length() & 1) != 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hexByte(String value, int index) {
+        return (Character.digit(value.charAt(index), 16) << 4) | Character.digit(value.charAt(index + 1), 16);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Ssid)) {
+            return false;
+        }
+        Ssid other = (Ssid) o;
+        return hash == other.hash && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,95 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Token bucket that tracks a rate limited budget, such as the number of wifi scans the platform
+ * allows per time window. Time is passed in by the caller so the bucket works with any clock.
+ * Not thread safe.
+ */
+public final class TokenBucket {
+
+    private final int capacity;
+    private final long refillIntervalMillis;
+
+    private int tokens;
+    private long lastRefill;
+
+    /**
+     * Create a full bucket
+     *
+     * @param capacity     number of tokens the bucket holds
+     * @param windowMillis time to refill an empty bucket
+     * @param now          current time in milliseconds
+     */
+    public TokenBucket(int capacity, long windowMillis, long now) {
+        if (capacity <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("capacity and window must be positive");
+        }
+        this.capacity = capacity;
+        this.refillIntervalMillis = Math.max(1, windowMillis / capacity);
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Take a token if one is available
+     *
+     * @param now current time in milliseconds
+     * @return true if a token was taken
+     */
+    public boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens == 0) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Empty the bucket, used when the platform reports that the budget is spent earlier than
+     * the bucket expected
+     *
+     * @param now current time in milliseconds
+     */
+    public void drain(long now) {
+        tokens = 0;
+        lastRefill = now;
+    }
+
+    /**
+     * @param now current time in milliseconds
+     * @return number of tokens available
+     */
+    public int available(long now) {
+        refill(now);
+        return tokens;
+    }
+
+    /**
+     * @param now current time in milliseconds
+     * @return milliseconds until a token is available, 0 if one is available now
+     */
+    public long millisUntilAvailable(long now) {
+        refill(now);
+        return tokens > 0 ? 0 : lastRefill + refillIntervalMillis - now;
+    }
+
+    private void refill(long now) {
+        if (tokens == capacity) {
+            lastRefill = now;
+            return;
+        }
+        long elapsed = now - lastRefill;
+        if (elapsed < refillIntervalMillis) {
+            return;
+        }
+        long added = elapsed / refillIntervalMillis;
+        if (tokens + added >= capacity) {
+            tokens = capacity;
+            lastRefill = now;
+        } else {
+            tokens += (int) added;
+            lastRefill += added * refillIntervalMillis;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.List;
+
+/**
+ * The wifi services a {@link ConnectionEngine} needs, so the engine runs the same against the
+ * Android framework and against a simulated wifi stack. All methods are called on the
+ * {@link EngineLoop} of the platform and all listeners must be called there too.
+ */
+public interface WifiPlatform {
+
+    /**
+     * Receives scan results
+     */
+    interface ScanListener {
+        /**
+         * @param accessPoints the scan results
+         * @param fromCache    true if the results were already available and no scan was started
+         */
+        void onScanResults(List<AccessPoint> accessPoints, boolean fromCache);
+    }
+
+    /**
+     * Receives the result of a reachability probe
+     */
+    interface ProbeListener {
+        void onProbeResult(ProbeResult result);
+    }
+
+    /**
+     * Receives changes of the wifi link
+     */
+    interface LinkListener {
+        void onLinkEvent(LinkEvent event);
+    }
+
+    /**
+     * @return the loop the engine runs on
+     */
+    EngineLoop getLoop();
+
+    /**
+     * @return the store of what is remembered between attempts
+     */
+    ConnectionStore getStore();
+
+    /**
+     * @param ssid SSID of a network
+     * @return true if the device is connected to the network
+     */
+    boolean isConnectedTo(Ssid ssid);
+
+    /**
+     * @return true if the connected wifi network has been validated to reach the internet; while
+     * link listeners are added a later validation is reported as {@link LinkEvent#VALIDATED}
+     */
+    boolean isValidated();
+
+    /**
+     * @return the network the device is connected to
+     */
+    LinkInfo getConnectionInfo();
+
+    /**
+     * Disconnect from the current network
+     */
+    void disconnect();
+
+    /**
+     * @param ssid SSID of a network
+     * @return network id of the saved configuration of the network, -1 if it is not saved
+     */
+    int findSavedNetwork(Ssid ssid);
+
+    /**
+     * Add the configuration of a network or update the existing one
+     *
+     * @param spec   the network
+     * @param policy what to do with the configurations of other networks
+     * @return network id of the configuration
+     */
+    int addNetwork(NetworkSpec spec, ForeignNetworkPolicy policy);
+
+    /**
+     * Enable a configured network and start connecting to it
+     *
+     * @param networkId network id of the configuration
+     * @return false if the network could not be enabled
+     */
+    boolean enableNetwork(int networkId);
+
+    /**
+     * @param networkId network id of a configuration to remove
+     */
+    void removeNetwork(int networkId);
+
+    /**
+     * @return true if networks are joined with {@link #requestNetwork} instead of configuring and
+     * enabling them
+     */
+    boolean isNetworkRequestSupported();
+
+    /**
+     * Ask the platform to join a network. Link listeners receive {@link LinkEvent#NETWORK_CONNECTED}
+     * when the network is available and {@link LinkEvent#UNAVAILABLE} when the platform gives up.
+     * The network stays connected while the request is held; a new request replaces the last one.
+     *
+     * @param spec          the network
+     * @param timeoutMillis time after which the platform may give up
+     */
+    void requestNetwork(NetworkSpec spec, long timeoutMillis);
+
+    /**
+     * Withdraw the last network request, which disconnects its network
+     */
+    void releaseNetworkRequest();
+
+    /**
+     * Request scan results. The listener is called once, possibly before this method returns.
+     * Results of a scan started by {@link #prewarmScan} that finished at most
+     * {@code prewarmMaxAgeMillis} ago are delivered at once, without scanning.
+     *
+     * @param listener            receives the results
+     * @param maxCacheAgeMillis   how old cached results may be when no scan can be started
+     * @param prewarmMaxAgeMillis how old prewarmed results may be, 0 never uses them
+     */
+    void requestScan(ScanListener listener, long maxCacheAgeMillis, long prewarmMaxAgeMillis);
+
+    /**
+     * Run a probe once over the connected wifi network, on another thread than the engine loop
+     *
+     * @param probe    the probe
+     * @param listener receives the result on the engine loop
+     */
+    void probe(ReachabilityProbe probe, ProbeListener listener);
+
+    /**
+     * Scan ahead of a connection attempt, for example while the user is still typing the
+     * password, so the attempt finds the results waiting. Starts a scan only if the scan budget
+     * allows and no scan is running or finished within the window.
+     *
+     * @param freshnessMillis age up to which results already prewarmed are good enough, so no
+     *                        new scan is started
+     */
+    void prewarmScan(long freshnessMillis);
+
+    /**
+     * @param listener a listener passed to {@link #requestScan} that no longer wants results
+     */
+    void cancelScan(ScanListener listener);
+
+    /**
+     * @param listener starts receiving link changes
+     */
+    void addLinkListener(LinkListener listener);
+
+    /**
+     * @param listener stops receiving link changes
+     */
+    void removeLinkListener(LinkListener listener);
+
+    /**
+     * @return number of calls made into the wifi services so far, binder transactions on Android;
+     * the difference over an attempt is reported by {@link ConnectionMetrics#getServiceCalls()}
+     */
+    int getServiceCallCount();
+}
@@ -0,0 +1,55 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+import com.zoltanersek.androidwifiactivity.core.BssidSelector;
+import com.zoltanersek.androidwifiactivity.core.ScanIndex;
+import com.zoltanersek.androidwifiactivity.core.ScanMatcher;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Choosing the best access point of a network that many access points broadcast, compared with
+ * taking the first match
+ */
+@State(Scope.Benchmark)
+public class BssidSelectBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int size;
+
+    @Param({"1", "16", "64"})
+    public int targetAps;
+
+    private List<AccessPoint> accessPoints;
+    private Ssid target;
+    private ScanIndex index;
+
+    @Setup
+    public void setUp() {
+        accessPoints = ScanLists.createMultiAp(size, targetAps);
+        target = Ssid.of(ScanLists.TARGET_SSID);
+        index = new ScanIndex(accessPoints);
+    }
+
+    @Benchmark
+    public AccessPoint firstMatch() {
+        return ScanMatcher.find(accessPoints, target);
+    }
+
+    @Benchmark
+    public AccessPoint selectBest() {
+        return BssidSelector.select(accessPoints, target);
+    }
+
+    @Benchmark
+    public AccessPoint selectBestIndexed() {
+        return BssidSelector.select(index, target);
+    }
+}
@@ -0,0 +1,48 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectDurationHistory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of the adaptive timeout history with every network slot and sample filled
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectHistoryBenchmark {
+
+    private static final int NETWORKS = 64;
+
+    private byte[] data;
+    private ConnectDurationHistory history;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        ConnectDurationHistory full = new ConnectDurationHistory(NETWORKS);
+        for (int n = 0; n < NETWORKS; n++) {
+            for (int i = 0; i < ConnectDurationHistory.MAX_SAMPLES; i++) {
+                full.record("Network-" + n, 1500 + random.nextInt(6000));
+            }
+        }
+        data = full.toByteArray();
+        history = new ConnectDurationHistory(NETWORKS);
+    }
+
+    @Benchmark
+    public boolean load() {
+        return history.load(data);
+    }
+
+    @Benchmark
+    public long timeout() {
+        return history.getTimeoutMillis("Network-7", 30000);
+    }
+}
@@ -0,0 +1,79 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectionEngine;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+import com.zoltanersek.androidwifiactivity.sim.ConnectLoadTest;
+import com.zoltanersek.androidwifiactivity.sim.SimulatedWifiPlatform;
+import com.zoltanersek.androidwifiactivity.sim.VirtualClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A whole connection attempt of the engine on the simulated wifi stack, from start to result.
+ * The wifi stack itself costs nothing here, so this is the overhead of the state machine and the
+ * scan matching per attempt, with configured networks and with network requests. The virtual
+ * time to connect of both is compared by {@link ConnectLoadTest}.
+ */
+@State(Scope.Benchmark)
+public class ConnectionEngineBenchmark {
+
+    @Param({"scan", "saved", "cache"})
+    public String path;
+
+    @Param({"configure", "request"})
+    public String backend;
+
+    private VirtualClock clock;
+    private SimulatedWifiPlatform platform;
+    private ConnectOptions options;
+    private ConnectResult result;
+    private final ConnectionEngine.Callback callback = new ConnectionEngine.Callback() {
+        @Override
+        public void onStateChanged(ConnectionState state) {
+        }
+
+        @Override
+        public void onResult(ConnectResult result) {
+            ConnectionEngineBenchmark.this.result = result;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        clock = new VirtualClock();
+        platform = ConnectLoadTest.createEnvironment(1)
+                .setAuthFailureRate(0)
+                .setFlapRate(0, 0)
+                .setNetworkRequests(backend.equals("request"))
+                .build(clock);
+        switch (path) {
+            case "saved":
+                options = new ConnectOptions.Builder().setSavedNetworkFastPath(true).build();
+                break;
+            case "cache":
+                options = new ConnectOptions.Builder().setNetworkCache(true).build();
+                break;
+            default:
+                options = ConnectOptions.DEFAULT;
+                break;
+        }
+        // the first attempt saves and caches the network
+        connect();
+    }
+
+    @Benchmark
+    public ConnectResult connect() {
+        platform.disconnect();
+        // stay within the scan budget
+        clock.advance(60 * 1000);
+        new ConnectionEngine(platform, "Office", "office-password", 15, options, callback).start();
+        clock.runUntilIdle();
+        return result;
+    }
+}
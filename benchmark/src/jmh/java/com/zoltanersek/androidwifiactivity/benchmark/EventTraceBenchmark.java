@@ -0,0 +1,34 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.EventTrace;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of recording one wifi event in the flight recorder, alone and with writers racing
+ */
+@State(Scope.Benchmark)
+public class EventTraceBenchmark {
+
+    private EventTrace trace;
+
+    @Setup
+    public void setUp() {
+        trace = new EventTrace(1024);
+    }
+
+    @Benchmark
+    public void record() {
+        trace.record(System.nanoTime(), EventTrace.SUPPLICANT_STATE, 9, -1, 0x020000000001L);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        trace.record(System.nanoTime(), EventTrace.SUPPLICANT_STATE, 9, -1, 0x020000000001L);
+    }
+}
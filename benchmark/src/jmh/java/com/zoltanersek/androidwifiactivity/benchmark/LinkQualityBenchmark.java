@@ -0,0 +1,47 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.LinkQualityHistory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Recording a link quality sample and evaluating the thresholds, the work done by the link
+ * quality monitor on every sample besides the platform call
+ */
+@State(Scope.Benchmark)
+public class LinkQualityBenchmark {
+
+    @Param({"30", "300"})
+    public int capacity;
+
+    private LinkQualityHistory history;
+    private long time;
+
+    @Setup
+    public void setUp() {
+        history = new LinkQualityHistory(capacity);
+        for (int i = 0; i < capacity; i++) {
+            history.add(i, -50 - i % 30, 300 - i % 200, 5180);
+        }
+    }
+
+    @Benchmark
+    public double sampleAndEvaluate() {
+        time++;
+        history.add(time, -50 - (int) (time % 30), 300 - (int) (time % 200), 5180);
+        return history.getRecentMeanLevel(3) + history.getRecentMeanLinkSpeed(3);
+    }
+
+    @Benchmark
+    public void stats(Blackhole blackhole) {
+        blackhole.consume(history.getMinLevel());
+        blackhole.consume(history.getMeanLevel());
+        blackhole.consume(history.getLevelPercentile(5));
+        blackhole.consume(history.getLinkSpeedPercentile(5));
+    }
+}
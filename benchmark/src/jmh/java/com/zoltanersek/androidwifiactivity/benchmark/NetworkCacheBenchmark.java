@@ -0,0 +1,56 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.Capabilities;
+import com.zoltanersek.androidwifiactivity.core.NetworkCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of the connection cache: parsing a full cache file, intact and with damaged records
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NetworkCacheBenchmark {
+
+    @Param({"32", "256"})
+    public int entries;
+
+    private byte[] data;
+    private byte[] damaged;
+    private NetworkCache cache;
+
+    @Setup
+    public void setUp() {
+        NetworkCache full = new NetworkCache(entries);
+        for (int i = 0; i < entries; i++) {
+            full.put(new NetworkCache.Entry("Network-" + i, i,
+                    String.format("02:00:00:00:%02x:%02x", (i >> 8) & 0xff, i & 0xff),
+                    i % 2 == 0 ? 2437 : 5180, Capabilities.RSN | Capabilities.PSK,
+                    1500000000000L + i));
+        }
+        data = full.toByteArray();
+        damaged = data.clone();
+        // flip a byte in every 8th record
+        for (int i = 20; i < damaged.length; i += 8 * 40) {
+            damaged[i] ^= 0x5a;
+        }
+        cache = new NetworkCache(entries);
+    }
+
+    @Benchmark
+    public int load() {
+        return cache.load(data);
+    }
+
+    @Benchmark
+    public int loadDamaged() {
+        return cache.load(damaged);
+    }
+}
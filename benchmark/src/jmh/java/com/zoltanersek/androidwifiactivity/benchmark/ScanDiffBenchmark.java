@@ -0,0 +1,129 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+import com.zoltanersek.androidwifiactivity.core.ScanDiffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Diffing a stream of repeated scans of a dense venue: the signal of every access point jitters by
+ * a few dBm and about one in a hundred access points comes or goes between scans. The incremental
+ * differ is compared with building a map of each scan and comparing it with the map of the
+ * previous one.
+ */
+@State(Scope.Benchmark)
+public class ScanDiffBenchmark {
+
+    private static final int SCANS = 16;
+    private static final int LEVEL_THRESHOLD = 5;
+
+    @Param({"100", "1000"})
+    public int size;
+
+    private List<List<AccessPoint>> scans;
+    private int next;
+
+    private ScanDiffer differ;
+    private Map<String, AccessPoint> previous;
+    private final CountingListener listener = new CountingListener();
+
+    @Setup
+    public void setUp() {
+        List<AccessPoint> venue = ScanLists.create(size * 2, false);
+        Random random = new Random(size);
+        scans = new ArrayList<>(SCANS);
+        for (int scan = 0; scan < SCANS; scan++) {
+            // a fresh list of fresh objects, like every scan the platform delivers
+            List<AccessPoint> accessPoints = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                // one in a hundred slots is taken by another access point of the venue
+                int index = random.nextInt(100) == 0 ? size + random.nextInt(size) : i;
+                AccessPoint ap = venue.get(index);
+                accessPoints.add(new AccessPoint(ap.getSsid(), ap.getBssid(), ap.getCapabilities(),
+                        ap.getLevel() + random.nextInt(7) - 3, ap.getFrequency()));
+            }
+            scans.add(accessPoints);
+        }
+        differ = new ScanDiffer(LEVEL_THRESHOLD);
+        previous = new HashMap<>();
+        // warm both up so the measured scans are steady state
+        for (List<AccessPoint> scan : scans) {
+            differ.update(scan, listener);
+            previous = rebuild(scan, previous, listener);
+        }
+    }
+
+    private List<AccessPoint> nextScan() {
+        List<AccessPoint> scan = scans.get(next);
+        next = (next + 1) % SCANS;
+        return scan;
+    }
+
+    @Benchmark
+    public int incremental() {
+        return differ.update(nextScan(), listener);
+    }
+
+    @Benchmark
+    public int mapRebuild() {
+        int before = listener.changes;
+        previous = rebuild(nextScan(), previous, listener);
+        return listener.changes - before;
+    }
+
+    private static Map<String, AccessPoint> rebuild(List<AccessPoint> scan,
+                                                    Map<String, AccessPoint> previous,
+                                                    ScanDiffer.Listener listener) {
+        Map<String, AccessPoint> current = new HashMap<>(scan.size() * 2);
+        for (AccessPoint ap : scan) {
+            current.put(ap.getBssid(), ap);
+            AccessPoint old = previous.get(ap.getBssid());
+            if (old == null) {
+                listener.onAdded(ap);
+            } else if (Math.abs(ap.getLevel() - old.getLevel()) >= LEVEL_THRESHOLD
+                    || ap.getFrequency() != old.getFrequency()
+                    || !ap.getCapabilities().equals(old.getCapabilities())) {
+                listener.onChanged(old, ap);
+            } else {
+                // keep the state last reported, like the differ does
+                current.put(ap.getBssid(), old);
+            }
+        }
+        for (AccessPoint old : previous.values()) {
+            if (!current.containsKey(old.getBssid())) {
+                listener.onRemoved(old);
+            }
+        }
+        return current;
+    }
+
+    private static final class CountingListener implements ScanDiffer.Listener {
+
+        int changes;
+
+        @Override
+        public void onAdded(AccessPoint accessPoint) {
+            changes++;
+        }
+
+        @Override
+        public void onRemoved(AccessPoint accessPoint) {
+            changes++;
+        }
+
+        @Override
+        public void onChanged(AccessPoint previous, AccessPoint current) {
+            changes++;
+        }
+    }
+}
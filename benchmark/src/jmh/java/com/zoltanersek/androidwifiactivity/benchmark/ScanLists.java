@@ -0,0 +1,87 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds synthetic scan result lists that look like a dense venue
+ */
+final class ScanLists {
+
+    static final String TARGET_SSID = "Target-Network";
+
+    private static final String[] CAPABILITIES = {
+            "[WPA2-PSK-CCMP][ESS]",
+            "[WPA-PSK-TKIP+CCMP][WPA2-PSK-TKIP+CCMP][ESS]",
+            "[WPA2-EAP-CCMP][ESS]",
+            "[RSN-SAE-CCMP][ESS]",
+            "[WPA2-PSK-CCMP][RSN-PSK+SAE-CCMP][ESS][WPS]",
+            "[RSN-OWE-CCMP][ESS]",
+            "[WEP][ESS]",
+            "[ESS]",
+    };
+
+    private ScanLists() {
+    }
+
+    /**
+     * @param size       number of access points
+     * @param withTarget true to put the target network last, the worst case for a linear match
+     * @return the scan list
+     */
+    static List<AccessPoint> create(int size, boolean withTarget) {
+        Random random = new Random(size);
+        List<AccessPoint> accessPoints = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean target = withTarget && i == size - 1;
+            String ssid = target ? TARGET_SSID : "Network-" + (i / 3);
+            accessPoints.add(new AccessPoint(ssid, bssid(i),
+                    CAPABILITIES[random.nextInt(CAPABILITIES.length)],
+                    -30 - random.nextInt(60),
+                    random.nextBoolean() ? 2412 + 5 * random.nextInt(13) : 5180 + 20 * random.nextInt(8)));
+        }
+        return accessPoints;
+    }
+
+    /**
+     * @param size       number of access points
+     * @param targetAps  number of access points broadcasting the target network, spread over the list
+     * @return the scan list, with a mix of 2.4, 5 and 6 GHz radios and channel widths
+     */
+    static List<AccessPoint> createMultiAp(int size, int targetAps) {
+        Random random = new Random(size * 31 + targetAps);
+        int stride = Math.max(1, size / targetAps);
+        List<AccessPoint> accessPoints = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean target = i % stride == stride / 2 && i / stride < targetAps;
+            String ssid = target ? TARGET_SSID : "Network-" + (i / 3);
+            int band = random.nextInt(3);
+            int frequency;
+            int width;
+            if (band == 0) {
+                frequency = 2412 + 25 * random.nextInt(3);
+                width = 20;
+            } else if (band == 1) {
+                frequency = 5180 + 20 * random.nextInt(8);
+                width = 20 << random.nextInt(4);
+            } else {
+                frequency = 5955 + 20 * random.nextInt(24);
+                width = 20 << random.nextInt(4);
+            }
+            accessPoints.add(new AccessPoint(ssid, bssid(i), CAPABILITIES[0],
+                    -30 - random.nextInt(60), frequency, width));
+        }
+        return accessPoints;
+    }
+
+    static String[] capabilities() {
+        return CAPABILITIES.clone();
+    }
+
+    private static String bssid(int i) {
+        return String.format("02:00:00:%02x:%02x:%02x", (i >> 16) & 0xff, (i >> 8) & 0xff, i & 0xff);
+    }
+}
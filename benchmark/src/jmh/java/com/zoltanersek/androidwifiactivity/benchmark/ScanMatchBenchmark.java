@@ -0,0 +1,96 @@
+package com.zoltanersek.androidwifiactivity.benchmark;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+import com.zoltanersek.androidwifiactivity.core.Capabilities;
+import com.zoltanersek.androidwifiactivity.core.CapabilityCache;
+import com.zoltanersek.androidwifiactivity.core.ScanIndex;
+import com.zoltanersek.androidwifiactivity.core.ScanMatcher;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Matching the target SSID in a scan and classifying the security of the results, the work done
+ * for every scan result broadcast, and matching the SSID that {@code WifiInfo} reports
+ */
+@State(Scope.Benchmark)
+public class ScanMatchBenchmark {
+
+    @Param({"10", "100", "300", "800", "5000"})
+    public int size;
+
+    private List<AccessPoint> withTarget;
+    private List<AccessPoint> withoutTarget;
+    private CapabilityCache cache;
+    private Ssid target;
+    private ScanIndex index;
+    private String wifiInfoSsid;
+
+    @Setup
+    public void setUp() {
+        withTarget = ScanLists.create(size, true);
+        withoutTarget = ScanLists.create(size, false);
+        cache = new CapabilityCache(64);
+        target = Ssid.of(ScanLists.TARGET_SSID);
+        index = new ScanIndex(withTarget);
+        // the form WifiInfo.getSSID() returns
+        wifiInfoSsid = '"' + ScanLists.TARGET_SSID + '"';
+    }
+
+    @Benchmark
+    public AccessPoint matchTargetLast() {
+        return ScanMatcher.find(withTarget, target);
+    }
+
+    @Benchmark
+    public AccessPoint matchMissing() {
+        return ScanMatcher.find(withoutTarget, target);
+    }
+
+    @Benchmark
+    public AccessPoint matchIndexed() {
+        return index.find(target);
+    }
+
+    @Benchmark
+    public ScanIndex buildIndex() {
+        return new ScanIndex(withTarget);
+    }
+
+    @Benchmark
+    public boolean matchWifiInfoReplace() {
+        return wifiInfoSsid.replace("\"", "").equals(ScanLists.TARGET_SSID);
+    }
+
+    @Benchmark
+    public boolean matchWifiInfo() {
+        return target.matches(wifiInfoSsid);
+    }
+
+    @Benchmark
+    public void classifyAllUncached(Blackhole blackhole) {
+        for (int i = 0, n = withTarget.size(); i < n; i++) {
+            blackhole.consume(Capabilities.parse(withTarget.get(i).getCapabilities()));
+        }
+    }
+
+    @Benchmark
+    public void classifyAllCached(Blackhole blackhole) {
+        for (int i = 0, n = withTarget.size(); i < n; i++) {
+            blackhole.consume(cache.get(withTarget.get(i).getCapabilities()));
+        }
+    }
+
+    @Benchmark
+    public int matchAndClassify() {
+        AccessPoint accessPoint = ScanMatcher.find(withTarget, target);
+        return cache.get(accessPoint.getCapabilities());
+    }
+}
@@ -0,0 +1,81 @@
+package com.zoltanersek.androidwifiactivity;
+
+import com.zoltanersek.androidwifiactivity.core.Checks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that connection attempts share the one {@link WifiScheduler} thread: runs connect and
+ * cancel cycles the way an engine uses the scheduler, a start task, a timeout and a cancel that
+ * drops the timeout, and compares the live threads before and after. Exits with 1 if the thread
+ * count grew. Argument: number of cycles (1000 by default).
+ * <pre>
+ * ./gradlew -q :benchmark:checkScheduler -Pcycles=1000
+ * </pre>
+ */
+public final class WifiSchedulerCheck {
+
+    private static final long TIMEOUT_MILLIS = 15 * 1000;
+
+    private WifiSchedulerCheck() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        // the scheduler thread is created on first use and then lives as long as the process
+        cycle();
+        int before = Thread.activeCount();
+        for (int i = 0; i < cycles; i++) {
+            cycle();
+        }
+        int after = Thread.activeCount();
+        int schedulerThreads = countSchedulerThreads();
+
+        Checks.check(cycles + " connect/cancel cycles", after <= before && schedulerThreads == 1, "threads before "
+                + before + ", after " + after + ", scheduler threads " + schedulerThreads);
+        Checks.finish();
+    }
+
+    /**
+     * One attempt that is cancelled before its timeout, and waits until the scheduler ran it
+     */
+    private static void cycle() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        WifiScheduler.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                final ScheduledFuture<?> timeout = WifiScheduler.get().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        throw new AssertionError("the timeout of a cancelled attempt ran");
+                    }
+                }, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                WifiScheduler.get().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        timeout.cancel(false);
+                        done.countDown();
+                    }
+                });
+            }
+        });
+        if (!done.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            throw new AssertionError("the scheduler did not run the cycle");
+        }
+    }
+
+    private static int countSchedulerThreads() {
+        Thread[] threads = new Thread[Thread.activeCount() * 2];
+        int count = Thread.enumerate(threads);
+        int schedulerThreads = 0;
+        for (int i = 0; i < count; i++) {
+            if ("wifi-scheduler".equals(threads[i].getName())) {
+                schedulerThreads++;
+            }
+        }
+        return schedulerThreads;
+    }
+}
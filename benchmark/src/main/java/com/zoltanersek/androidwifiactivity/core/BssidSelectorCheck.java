@@ -0,0 +1,167 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the access point {@link BssidSelector} picks: the scoring rules one by one on small scans,
+ * then random scans where the selection from the list and from a {@link ScanIndex} must both equal
+ * a plain reference that scores every access point of the network. The random SSIDs include
+ * {@code Aa} and {@code BB}, whose hashes collide, so the index chains hold several networks.
+ * Exits with 1 if a check fails. Argument: number of random scans (10000 by default).
+ * <pre>
+ * ./gradlew -q :benchmark:checkBssidSelector -Pscans=10000
+ * </pre>
+ */
+public final class BssidSelectorCheck {
+
+    private static final String PSK = "[WPA2-PSK-CCMP][ESS]";
+    private static final String[] SSIDS = {"Home", "Office", "Aa", "BB", "Caf\u00e9", ""};
+    private static final int[] FREQUENCIES = {2412, 2437, 2462, 5180, 5500, 5745, 5955, 6115, 0};
+    private static final int[] WIDTHS = {20, 40, 80, 160};
+
+    private BssidSelectorCheck() {
+    }
+
+    public static void main(String[] args) {
+        int scans = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        checkRules();
+        checkRandomScans(scans);
+        Checks.finish();
+    }
+
+    private static void checkRules() {
+        AccessPoint weak = new AccessPoint("Home", "00:00:00:00:00:01", PSK, -90, 2412);
+        AccessPoint other = new AccessPoint("Office", "00:00:00:00:00:02", PSK, -40, 2412);
+        expect("a single access point is taken however weak", weak, weak, other);
+        expect("no access point of the network", null, other);
+
+        AccessPoint near = new AccessPoint("Home", "00:00:00:00:00:03", PSK, -50, 2437);
+        AccessPoint far = new AccessPoint("Home", "00:00:00:00:00:04", PSK, -70, 2462);
+        expect("the stronger signal wins on the same band", near, far, near);
+
+        AccessPoint band24 = new AccessPoint("Home", "00:00:00:00:00:05", PSK, -58, 2437);
+        AccessPoint band5 = new AccessPoint("Home", "00:00:00:00:00:06", PSK, -60, 5180);
+        expect("5 GHz wins over a slightly stronger 2.4 GHz", band5, band24, band5);
+
+        AccessPoint distant5 = new AccessPoint("Home", "00:00:00:00:00:07", PSK, -80, 5180);
+        AccessPoint closer24 = new AccessPoint("Home", "00:00:00:00:00:08", PSK, -72, 2437);
+        expect("no band bonus below " + BssidSelector.BAND_BONUS_MIN_LEVEL + " dBm", closer24,
+                distant5, closer24);
+
+        AccessPoint band6 = new AccessPoint("Home", "00:00:00:00:00:09", PSK, -60, 5955);
+        expect("6 GHz wins over 5 GHz at the same level", band6, band5, band6);
+
+        AccessPoint narrow = new AccessPoint("Home", "00:00:00:00:00:0a", PSK, -60, 5500, 20);
+        AccessPoint wide = new AccessPoint("Home", "00:00:00:00:00:0b", PSK, -60, 5745, 80);
+        expect("the wider channel wins at the same level", wide, narrow, wide);
+
+        AccessPoint busy = new AccessPoint("Home", "00:00:00:00:00:0c", PSK, -60, 2412);
+        AccessPoint quiet = new AccessPoint("Home", "00:00:00:00:00:0d", PSK, -60, 2462);
+        List<AccessPoint> scan = new ArrayList<>(Arrays.asList(busy, quiet));
+        for (int i = 0; i < 3; i++) {
+            scan.add(new AccessPoint("Neighbour" + i, "00:00:00:00:01:0" + i, PSK, -80, 2412));
+        }
+        expect("an access point on a busy channel loses", quiet, scan.toArray(new AccessPoint[scan.size()]));
+
+        AccessPoint ceiling = new AccessPoint("Home", "00:00:00:00:00:0e", PSK, BssidSelector.LEVEL_CEILING, 2437);
+        AccessPoint above = new AccessPoint("Home", "00:00:00:00:00:0f", PSK, BssidSelector.LEVEL_CEILING + 5, 2437);
+        expect("equal scores go to the stronger signal", above, ceiling, above);
+
+        AccessPoint unknownChannel = new AccessPoint("Home", "00:00:00:00:00:10", PSK, -50, 0);
+        expect("a frequency outside the wifi bands only loses the band bonus", unknownChannel,
+                unknownChannel, far);
+    }
+
+    private static void expect(String name, AccessPoint expected, AccessPoint... accessPoints) {
+        List<AccessPoint> scan = Arrays.asList(accessPoints);
+        AccessPoint fromList = BssidSelector.select(scan, Ssid.of("Home"));
+        AccessPoint fromIndex = BssidSelector.select(new ScanIndex(scan), Ssid.of("Home"));
+        Checks.check(name, fromList == expected && fromIndex == expected,
+                "expected " + expected + ", list " + fromList + ", index " + fromIndex);
+    }
+
+    private static void checkRandomScans(int scans) {
+        Random random = new Random(1);
+        int mismatches = 0;
+        int wrongFirst = 0;
+        String example = "none";
+        for (int n = 0; n < scans; n++) {
+            List<AccessPoint> scan = randomScan(random);
+            ScanIndex index = new ScanIndex(scan);
+            for (String text : SSIDS) {
+                Ssid ssid = Ssid.of(text);
+                AccessPoint expected = reference(scan, ssid);
+                AccessPoint fromList = BssidSelector.select(scan, ssid);
+                AccessPoint fromIndex = BssidSelector.select(index, ssid);
+                if (fromList != expected || fromIndex != expected) {
+                    if (mismatches++ == 0) {
+                        example = "ssid " + text + " in " + scan + ": expected " + expected + ", list "
+                                + fromList + ", index " + fromIndex;
+                    }
+                }
+                if (index.find(ssid) != first(scan, ssid)) {
+                    wrongFirst++;
+                }
+            }
+        }
+        Checks.check(scans + " random scans: list and index select the reference access point", mismatches == 0,
+                mismatches + " mismatches, first " + example);
+        Checks.check(scans + " random scans: the index finds the first access point in scan order", wrongFirst == 0,
+                wrongFirst + " wrong");
+    }
+
+    private static List<AccessPoint> randomScan(Random random) {
+        int size = random.nextInt(40);
+        List<AccessPoint> scan = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String ssid = SSIDS[random.nextInt(SSIDS.length - 1)];
+            String bssid = String.format("02:00:00:00:%02x:%02x", i >> 8, i & 0xff);
+            // coarse levels so equal scores and the tie rule come up often
+            int level = -95 + 5 * random.nextInt(14);
+            scan.add(new AccessPoint(ssid, bssid, PSK, level, FREQUENCIES[random.nextInt(FREQUENCIES.length)],
+                    WIDTHS[random.nextInt(WIDTHS.length)]));
+        }
+        return scan;
+    }
+
+    /**
+     * Score every access point of the network against a naive count of its channel neighbours;
+     * the highest score wins, then the stronger signal, then the first in scan order
+     */
+    private static AccessPoint reference(List<AccessPoint> scan, Ssid ssid) {
+        AccessPoint best = null;
+        int bestScore = 0;
+        for (AccessPoint accessPoint : scan) {
+            if (!ssid.matchesText(accessPoint.getSsid())) {
+                continue;
+            }
+            int slot = BssidSelector.channelSlot(accessPoint.getFrequency());
+            int neighbours = 0;
+            for (AccessPoint other : scan) {
+                if (other != accessPoint && slot >= 0
+                        && BssidSelector.channelSlot(other.getFrequency()) == slot) {
+                    neighbours++;
+                }
+            }
+            int score = BssidSelector.score(accessPoint, neighbours);
+            if (best == null || score > bestScore
+                    || (score == bestScore && accessPoint.getLevel() > best.getLevel())) {
+                best = accessPoint;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static AccessPoint first(List<AccessPoint> scan, Ssid ssid) {
+        for (AccessPoint accessPoint : scan) {
+            if (ssid.matchesText(accessPoint.getSsid())) {
+                return accessPoint;
+            }
+        }
+        return null;
+    }
+}
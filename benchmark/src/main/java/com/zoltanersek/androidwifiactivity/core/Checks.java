@@ -0,0 +1,37 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+/**
+ * Reports the checks of the check programs in this module: prints one line per check and, once
+ * the program is done, a summary. A program that had a failed check exits with 1.
+ */
+public final class Checks {
+
+    private static int failures;
+
+    private Checks() {
+    }
+
+    /**
+     * Print the outcome of one check
+     *
+     * @param name   what was checked
+     * @param passed true if the check passed
+     * @param detail what was seen, printed after the name
+     */
+    public static void check(String name, boolean passed, Object detail) {
+        if (!passed) {
+            failures++;
+        }
+        System.out.println((passed ? "ok   " : "FAIL ") + name + ": " + detail);
+    }
+
+    /**
+     * Print the summary, and exit with 1 if a check failed
+     */
+    public static void finish() {
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
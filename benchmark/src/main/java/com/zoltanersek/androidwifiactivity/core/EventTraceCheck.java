@@ -0,0 +1,162 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that a binary {@link EventTrace} export decodes to the same JSON lines the trace writes
+ * directly: once through the {@link EventTraceDecoder} tool for a ring that has not filled up and
+ * one that wrapped many times, then for random capacities and event counts, and for exports cut
+ * short. Events cover every type, unknown types, negative values and details, and BSSIDs with
+ * every bit set. Exits with 1 if a check fails. Argument: number of random traces (1000 by
+ * default).
+ * <pre>
+ * ./gradlew -q :benchmark:checkEventTrace -Ptraces=1000
+ * </pre>
+ */
+public final class EventTraceCheck {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long EXPORT_NANOS = 5000000000000L;
+    private static final long EXPORT_MILLIS = 1500000000000L;
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 8 + 4;
+
+    private EventTraceCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int traces = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        Random random = new Random(1);
+        checkDecoder("a ring that has not filled up", fill(new EventTrace(64), 40, random), 40);
+        checkDecoder("a ring that wrapped", fill(new EventTrace(64), 1000, random), 64);
+        checkRandomTraces(traces, random);
+        Checks.finish();
+    }
+
+    /**
+     * Export the trace to a file, decode it with the tool and compare with the JSON lines
+     */
+    private static void checkDecoder(String name, EventTrace trace, int expected) throws IOException {
+        File binary = File.createTempFile("trace", ".bin");
+        File json = File.createTempFile("trace", ".jsonl");
+        try {
+            OutputStream out = new FileOutputStream(binary);
+            try {
+                trace.writeBinary(out, EXPORT_NANOS, EXPORT_MILLIS);
+            } finally {
+                out.close();
+            }
+            EventTraceDecoder.main(new String[]{binary.getPath(), json.getPath()});
+            String decoded = new String(Files.readAllBytes(json.toPath()), UTF_8);
+            String direct = jsonLines(trace);
+            Checks.check(name + ": the decoder writes the JSON lines of the trace",
+                    decoded.equals(direct) && lines(direct) == expected,
+                    lines(decoded) + " lines decoded, " + lines(direct) + " written, " + expected + " expected");
+        } finally {
+            binary.delete();
+            json.delete();
+        }
+    }
+
+    private static void checkRandomTraces(int traces, Random random) throws IOException {
+        int mismatches = 0;
+        int wrongCounts = 0;
+        int wrongPrefixes = 0;
+        int wrapped = 0;
+        String example = "none";
+        for (int n = 0; n < traces; n++) {
+            int capacity = 1 << random.nextInt(9);
+            int events = random.nextInt(4 * capacity);
+            EventTrace trace = fill(new EventTrace(capacity), events, random);
+            if (events > capacity) {
+                wrapped++;
+            }
+            byte[] binary = binary(trace);
+            String direct = jsonLines(trace);
+            StringWriter decoded = new StringWriter();
+            int count = EventTrace.decode(new ByteArrayInputStream(binary), decoded);
+            if (!decoded.toString().equals(direct) && mismatches++ == 0) {
+                example = "capacity " + capacity + ", " + events + " events";
+            }
+            if (count != Math.min(events, capacity) || lines(direct) != count) {
+                wrongCounts++;
+            }
+            // an export cut short decodes to the lines of the events before the cut
+            int cut = random.nextInt(binary.length + 1);
+            StringWriter truncated = new StringWriter();
+            try {
+                EventTrace.decode(new ByteArrayInputStream(Arrays.copyOf(binary, cut)), truncated);
+                if (!direct.startsWith(truncated.toString())) {
+                    wrongPrefixes++;
+                }
+            } catch (IOException e) {
+                // only a cut header is not a trace
+                if (cut >= HEADER_SIZE) {
+                    wrongPrefixes++;
+                }
+            }
+        }
+        Checks.check(traces + " random traces, " + wrapped + " wrapped: decoded binary equals the JSON lines",
+                mismatches == 0 && wrongCounts == 0,
+                mismatches + " mismatches, " + wrongCounts + " wrong counts, first " + example);
+        Checks.check(traces + " random traces: a cut export decodes to a prefix of the JSON lines",
+                wrongPrefixes == 0, wrongPrefixes + " wrong");
+    }
+
+    private static EventTrace fill(EventTrace trace, int events, Random random) {
+        long time = EXPORT_NANOS - 3600L * 1000000000L;
+        for (int i = 0; i < events; i++) {
+            time += random.nextInt(50000000);
+            // the known types and two that are not
+            int type = random.nextInt(7);
+            int value;
+            switch (type) {
+                case EventTrace.NETWORK_STATE:
+                    value = random.nextInt(EventTrace.NETWORK_STATES.length + 2);
+                    break;
+                case EventTrace.SUPPLICANT_STATE:
+                    value = random.nextInt(EventTrace.SUPPLICANT_STATES.length + 2);
+                    break;
+                default:
+                    // values are kept in 24 bits
+                    value = random.nextBoolean() ? random.nextInt(3) - 1 : random.nextInt(1 << 24) - (1 << 23);
+                    break;
+            }
+            int detail = random.nextBoolean() ? -1 : random.nextInt();
+            long bssid = random.nextInt(4) == 0 ? 0 : random.nextLong() & 0xffffffffffffL;
+            trace.record(time, type, value, detail, bssid);
+        }
+        return trace;
+    }
+
+    private static byte[] binary(EventTrace trace) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.writeBinary(out, EXPORT_NANOS, EXPORT_MILLIS);
+        return out.toByteArray();
+    }
+
+    private static String jsonLines(EventTrace trace) throws IOException {
+        StringWriter out = new StringWriter();
+        trace.writeJsonLines(out, EXPORT_NANOS, EXPORT_MILLIS);
+        return out.toString();
+    }
+
+    private static int lines(String text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
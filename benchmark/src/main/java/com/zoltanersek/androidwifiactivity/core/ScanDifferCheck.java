@@ -0,0 +1,231 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks the changes {@link ScanDiffer} reports against a plain model that keeps the last
+ * reported access point per BSSID in a map. Random scans draw from a pool of a few hundred
+ * BSSIDs, so the differ grows and removes entries from the middle of its probe runs; signals
+ * drift by small steps so slow drift has to add up to the threshold, and some scans carry
+ * malformed BSSIDs that must be ignored. Exits with 1 if a check fails. Argument: number of
+ * scans (10000 by default).
+ * <pre>
+ * ./gradlew -q :benchmark:checkScanDiffer -Pscans=10000
+ * </pre>
+ */
+public final class ScanDifferCheck {
+
+    private static final int LEVEL_THRESHOLD = 5;
+    private static final int POOL = 300;
+    private static final String[] SSIDS = {"Home", "Office", "Cafe"};
+    private static final String[] CAPABILITIES = {"[WPA2-PSK-CCMP][ESS]", "[WPA3-SAE-CCMP][ESS]", "[ESS]"};
+    private static final int[] FREQUENCIES = {2412, 2437, 5180, 5745};
+    private static final String[] MALFORMED = {null, "", "not a bssid", "00:11:22:33:44", "zz:00:00:00:00:00"};
+
+    private ScanDifferCheck() {
+    }
+
+    public static void main(String[] args) {
+        int scans = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        checkRandomScans(scans);
+        checkClear();
+        Checks.finish();
+    }
+
+    private static void checkRandomScans(int scans) {
+        Random random = new Random(1);
+        ScanDiffer differ = new ScanDiffer(LEVEL_THRESHOLD);
+        Map<String, AccessPoint> known = new HashMap<>();
+        AccessPoint[] current = new AccessPoint[POOL];
+        Recorder recorder = new Recorder();
+        int mismatches = 0;
+        int wrongCounts = 0;
+        int wrongState = 0;
+        int changes = 0;
+        int maxSize = 0;
+        String example = "none";
+        for (int n = 0; n < scans; n++) {
+            List<AccessPoint> scan = randomScan(random, current);
+            recorder.known = new HashMap<>(known);
+            List<String> expected = expectedChanges(known, scan);
+            recorder.changes.clear();
+            // every tenth scan only updates the known state
+            boolean quiet = n % 10 == 9;
+            int reported = differ.update(scan, quiet ? null : recorder);
+            changes += reported;
+            maxSize = Math.max(maxSize, differ.size());
+            if (reported != expected.size()) {
+                wrongCounts++;
+            }
+            if (!quiet) {
+                List<String> actual = new ArrayList<>(recorder.changes);
+                Collections.sort(actual);
+                Collections.sort(expected);
+                if (!actual.equals(expected) && mismatches++ == 0) {
+                    example = "scan " + n + ": expected " + expected + ", reported " + actual;
+                }
+            }
+            if (differ.size() != known.size() || !sameState(differ, known)) {
+                wrongState++;
+            }
+        }
+        Checks.check(scans + " random scans: changes match the model", mismatches == 0 && wrongCounts == 0,
+                changes + " changes, largest known set " + maxSize + ", " + mismatches + " mismatches, "
+                        + wrongCounts + " wrong counts, first " + example);
+        Checks.check(scans + " random scans: known access points match the model", wrongState == 0,
+                wrongState + " scans with a different known state");
+    }
+
+    private static void checkClear() {
+        ScanDiffer differ = new ScanDiffer(LEVEL_THRESHOLD);
+        List<AccessPoint> scan = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            scan.add(accessPoint(i, "Home", CAPABILITIES[0], -60, 2412));
+        }
+        differ.update(scan, null);
+        differ.clear();
+        Recorder recorder = new Recorder();
+        recorder.known = new HashMap<>();
+        int reported = differ.update(scan, recorder);
+        boolean allAdded = true;
+        for (String change : recorder.changes) {
+            allAdded &= change.startsWith("added ");
+        }
+        Checks.check("after clear() every access point is new again", differ.size() == 40 && reported == 40 && allAdded,
+                "size " + differ.size() + ", reported " + reported + ", all added " + allAdded);
+    }
+
+    /**
+     * Move the pool one step: access points come and go, signals drift, and now and then one
+     * changes channel, width, security or name
+     */
+    private static List<AccessPoint> randomScan(Random random, AccessPoint[] current) {
+        List<AccessPoint> scan = new ArrayList<>();
+        for (int i = 0; i < POOL; i++) {
+            AccessPoint accessPoint = current[i];
+            if (accessPoint == null) {
+                if (random.nextInt(10) == 0) {
+                    current[i] = accessPoint(i, SSIDS[random.nextInt(SSIDS.length)], CAPABILITIES[0],
+                            -90 + random.nextInt(50), FREQUENCIES[random.nextInt(FREQUENCIES.length)]);
+                }
+            } else if (random.nextInt(20) == 0) {
+                current[i] = null;
+            } else {
+                current[i] = mutate(random, i, accessPoint);
+            }
+            // an access point in range is missing from a scan now and then
+            if (current[i] != null && random.nextInt(50) != 0) {
+                scan.add(current[i]);
+            }
+        }
+        if (random.nextInt(4) == 0) {
+            scan.add(new AccessPoint("Broken", MALFORMED[random.nextInt(MALFORMED.length)], CAPABILITIES[0], -50, 2412));
+        }
+        Collections.shuffle(scan, random);
+        return scan;
+    }
+
+    private static AccessPoint mutate(Random random, int i, AccessPoint accessPoint) {
+        int level = accessPoint.getLevel() + random.nextInt(5) - 2;
+        int frequency = accessPoint.getFrequency();
+        int width = accessPoint.getChannelWidth();
+        String capabilities = accessPoint.getCapabilities();
+        String ssid = accessPoint.getSsid();
+        switch (random.nextInt(200)) {
+            case 0:
+                frequency = FREQUENCIES[random.nextInt(FREQUENCIES.length)];
+                break;
+            case 1:
+                width = width == 20 ? 40 : 20;
+                break;
+            case 2:
+                capabilities = CAPABILITIES[random.nextInt(CAPABILITIES.length)];
+                break;
+            case 3:
+                ssid = SSIDS[random.nextInt(SSIDS.length)];
+                break;
+            default:
+                break;
+        }
+        return new AccessPoint(ssid, accessPoint.getBssid(), capabilities, level, frequency, width);
+    }
+
+    private static AccessPoint accessPoint(int i, String ssid, String capabilities, int level, int frequency) {
+        return new AccessPoint(ssid, String.format("02:00:00:00:%02x:%02x", i >> 8, i & 0xff), capabilities, level,
+                frequency);
+    }
+
+    /**
+     * The changes the model expects, and the model updated to the scan
+     */
+    private static List<String> expectedChanges(Map<String, AccessPoint> known, List<AccessPoint> scan) {
+        List<String> changes = new ArrayList<>();
+        Map<String, AccessPoint> seen = new HashMap<>();
+        for (AccessPoint current : scan) {
+            if (MacAddresses.parse(current.getBssid()) == 0) {
+                continue;
+            }
+            seen.put(current.getBssid(), current);
+            AccessPoint previous = known.get(current.getBssid());
+            if (previous == null) {
+                known.put(current.getBssid(), current);
+                changes.add("added " + current.getBssid());
+            } else if (Math.abs(current.getLevel() - previous.getLevel()) >= LEVEL_THRESHOLD
+                    || current.getFrequency() != previous.getFrequency()
+                    || current.getChannelWidth() != previous.getChannelWidth()
+                    || !current.getCapabilities().equals(previous.getCapabilities())
+                    || !current.getSsid().equals(previous.getSsid())) {
+                known.put(current.getBssid(), current);
+                changes.add("changed " + current.getBssid());
+            }
+        }
+        for (String bssid : new ArrayList<>(known.keySet())) {
+            if (!seen.containsKey(bssid)) {
+                known.remove(bssid);
+                changes.add("removed " + bssid);
+            }
+        }
+        return changes;
+    }
+
+    private static boolean sameState(ScanDiffer differ, Map<String, AccessPoint> known) {
+        for (Map.Entry<String, AccessPoint> entry : known.entrySet()) {
+            if (differ.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the reported changes; a removed or changed access point must be the one the model
+     * knew before the scan
+     */
+    private static final class Recorder implements ScanDiffer.Listener {
+
+        final List<String> changes = new ArrayList<>();
+        Map<String, AccessPoint> known;
+
+        @Override
+        public void onAdded(AccessPoint accessPoint) {
+            changes.add("added " + accessPoint.getBssid());
+        }
+
+        @Override
+        public void onRemoved(AccessPoint accessPoint) {
+            changes.add((known.get(accessPoint.getBssid()) == accessPoint ? "removed " : "removed a stale state ")
+                    + accessPoint.getBssid());
+        }
+
+        @Override
+        public void onChanged(AccessPoint previous, AccessPoint current) {
+            changes.add((known.get(current.getBssid()) == previous ? "changed " : "changed from a stale state ")
+                    + current.getBssid());
+        }
+    }
+}
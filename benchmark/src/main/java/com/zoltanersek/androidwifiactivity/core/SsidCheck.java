@@ -0,0 +1,158 @@
+package com.zoltanersek.androidwifiactivity.core;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks {@link Ssid} against the encoder of the JDK: the forms Android reports an SSID in, then
+ * random texts with characters of every UTF-8 length and unpaired surrogates, and random bytes
+ * that are not UTF-8. For each, the hash without an instance, the matching of the text, quoted
+ * and hex forms and the round trip through {@link Ssid#toConfigString()} must agree with
+ * {@link String#getBytes}. Exits with 1 if a check fails. Argument: number of random SSIDs
+ * (100000 by default).
+ * <pre>
+ * ./gradlew -q :benchmark:checkSsid -Pssids=100000
+ * </pre>
+ */
+public final class SsidCheck {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // ASCII, two and three byte characters, a surrogate pair and both halves unpaired
+    private static final char[] CHARS = {'a', 'Z', '0', ' ', '"', '\u00e9', '\u00ff', '\u07ff', '\u0800',
+            '\u4e2d', '\uffff', '\ud83d', '\ude00'};
+
+    private SsidCheck() {
+    }
+
+    public static void main(String[] args) {
+        int ssids = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        checkForms();
+        checkRandomTexts(ssids);
+        checkRandomBytes(ssids);
+        Checks.finish();
+    }
+
+    private static void checkForms() {
+        Ssid home = Ssid.of("Home");
+        Checks.check("quoted, hex and plain forms match", home.matches("\"Home\"") && home.matches("486f6d65")
+                && home.matches("486F6D65") && home.matches("Home") && home.matchesText("Home"), home);
+        Checks.check("other networks do not match", !home.matches("\"Home2\"") && !home.matches("486f6d")
+                && !home.matches("\"home\"") && !home.matchesText("Hom") && !home.matchesText(null), home);
+        Checks.check("the placeholder, null and empty match nothing and parse to UNKNOWN",
+                !home.matches(Ssid.UNKNOWN_SSID) && !home.matches(null) && !Ssid.UNKNOWN.matches("\"\"")
+                        && !Ssid.UNKNOWN.matchesText("") && Ssid.parse(Ssid.UNKNOWN_SSID) == Ssid.UNKNOWN
+                        && Ssid.parse(null) == Ssid.UNKNOWN && Ssid.parse("") == Ssid.UNKNOWN
+                        && Ssid.of("") == Ssid.UNKNOWN, Ssid.UNKNOWN_SSID);
+        Checks.check("parse takes quoted and hex forms", home.equals(Ssid.parse("\"Home\""))
+                && home.equals(Ssid.parse("486f6d65")) && home.equals(Ssid.parse("Home")), home);
+
+        Ssid quoted = Ssid.of("\"Lobby\"");
+        Checks.check("an SSID that starts and ends with a quote keeps its quotes",
+                quoted.matches("\"\"Lobby\"\"") && !quoted.matches("\"Lobby\"") && quoted.matchesText("\"Lobby\"")
+                        && quoted.equals(Ssid.parse(quoted.toConfigString())), quoted.toConfigString());
+
+        Ssid hexLooking = Ssid.of("cafe");
+        Checks.check("a plain text SSID that looks like hex is matched by its quoted form",
+                hexLooking.matches("\"cafe\"") && hexLooking.matches("63616665") && !hexLooking.matches("cafe"),
+                hexLooking.toConfigString());
+
+        Ssid latin1 = Ssid.of(new byte[]{'C', 'a', 'f', (byte) 0xe9});
+        Checks.check("bytes that are not UTF-8 are configured and matched as hex",
+                "436166e9".equals(latin1.toConfigString()) && latin1.matches("436166E9")
+                        && !latin1.matches("\"Caf\u00e9\"") && latin1.equals(Ssid.parse("436166e9")),
+                latin1.toConfigString());
+    }
+
+    private static void checkRandomTexts(int ssids) {
+        Random random = new Random(1);
+        int hashes = 0;
+        int matches = 0;
+        int roundTrips = 0;
+        int others = 0;
+        String example = "none";
+        String previous = "x";
+        for (int n = 0; n < ssids; n++) {
+            String text = randomText(random);
+            byte[] bytes = text.getBytes(UTF_8);
+            Ssid ssid = Ssid.of(text);
+            if (Ssid.hash(text) != ssid.hashCode() || ssid.hashCode() != Arrays.hashCode(bytes)
+                    || ssid.hashCode() != Ssid.of(bytes).hashCode()) {
+                hashes++;
+                example = escape(text);
+            }
+            if (!ssid.matchesText(text) || !ssid.matches('"' + text + '"') || !ssid.matches(hex(bytes))) {
+                matches++;
+                example = escape(text);
+            }
+            if (!ssid.equals(Ssid.parse(ssid.toConfigString())) || !Arrays.equals(bytes, ssid.getBytes())) {
+                roundTrips++;
+                example = escape(text);
+            }
+            // the last text, or a text that differs in one character
+            String other = random.nextBoolean() ? previous : mutate(random, text);
+            boolean same = Arrays.equals(bytes, other.getBytes(UTF_8));
+            if (ssid.matchesText(other) != same || ssid.matches('"' + other + '"') != same
+                    || ssid.equals(Ssid.of(other)) != same) {
+                others++;
+                example = escape(text) + " against " + escape(other);
+            }
+            previous = text;
+        }
+        Checks.check(ssids + " random texts: hash equals the hash of the UTF-8 bytes", hashes == 0, hashes + " wrong");
+        Checks.check(ssids + " random texts: text, quoted and hex forms match", matches == 0, matches + " wrong");
+        Checks.check(ssids + " random texts: config string parses back", roundTrips == 0, roundTrips + " wrong");
+        Checks.check(ssids + " random texts: other texts match only with the same bytes", others == 0,
+                others + " wrong, last " + example);
+    }
+
+    private static void checkRandomBytes(int ssids) {
+        Random random = new Random(2);
+        int wrong = 0;
+        String example = "none";
+        for (int n = 0; n < ssids; n++) {
+            byte[] bytes = new byte[1 + random.nextInt(32)];
+            random.nextBytes(bytes);
+            Ssid ssid = Ssid.of(bytes);
+            boolean utf8 = Arrays.equals(bytes, new String(bytes, UTF_8).getBytes(UTF_8));
+            String config = ssid.toConfigString();
+            if (!ssid.matches(hex(bytes)) || !ssid.equals(Ssid.parse(config)) || !ssid.matches(config)
+                    || config.startsWith("\"") != utf8 || ssid.hashCode() != Arrays.hashCode(bytes)) {
+                wrong++;
+                example = hex(bytes);
+            }
+        }
+        Checks.check(ssids + " random byte SSIDs: hex form matches and config string parses back", wrong == 0,
+                wrong + " wrong, last " + example);
+    }
+
+    private static String randomText(Random random) {
+        char[] chars = new char[1 + random.nextInt(16)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = CHARS[random.nextInt(CHARS.length)];
+        }
+        return new String(chars);
+    }
+
+    private static String mutate(Random random, String text) {
+        char[] chars = text.toCharArray();
+        chars[random.nextInt(chars.length)] = CHARS[random.nextInt(CHARS.length)];
+        return new String(chars);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b & 0xff));
+        }
+        return builder.toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            builder.append(String.format("\\u%04x", (int) text.charAt(i)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,311 @@
+package com.zoltanersek.androidwifiactivity.sim;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectStatus;
+import com.zoltanersek.androidwifiactivity.core.ConnectionCoordinator;
+import com.zoltanersek.androidwifiactivity.core.ConnectionEngine;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+import com.zoltanersek.androidwifiactivity.core.RetryPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Stress test of many callers connecting at once on a {@link SimulatedWifiPlatform}. Callers
+ * arrive in bursts, each for one of a few networks and with a random priority, and some cancel,
+ * before or after their result. Some callers for the office have the wrong password. The same
+ * callers run once with an engine each, all fighting over the one wifi stack, and once through a
+ * {@link ConnectionCoordinator}. Every caller that did not cancel before its result must receive
+ * exactly one result, no caller more than one, and callers with different passwords must never
+ * share a result. Arguments: number of callers (20000 by default) and seed (1 by default).
+ * <pre>
+ * ./gradlew -q :benchmark:simulateConcurrent -Pcallers=20000 -Pseed=1
+ * </pre>
+ */
+public final class ConcurrentConnectTest {
+
+    // the popular networks come up more often, so callers for the same network overlap
+    private static final String[] SSIDS = {"Office", "Office", "Office", "Home", "Home", "Cafe", "Legacy", "Missing"};
+    private static final Map<String, String> PASSWORDS = new HashMap<>();
+    private static final int SECONDS_TIMEOUT = 15;
+    private static final int BURST_SIZE = 50;
+    private static final int BURST_WINDOW_MILLIS = 4000;
+    private static final double CANCEL_RATE = 0.1;
+    private static final double WRONG_PASSWORD_RATE = 0.1;
+    private static final int PRIORITIES = 3;
+
+    static {
+        PASSWORDS.put("Office", "office-password");
+        PASSWORDS.put("Home", "home-password");
+        PASSWORDS.put("Cafe", null);
+        PASSWORDS.put("Legacy", "legacy");
+        PASSWORDS.put("Missing", "missing");
+    }
+
+    private ConcurrentConnectTest() {
+    }
+
+    public static void main(String[] args) {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        System.out.println("== an engine per caller");
+        boolean passed = run(callers, seed, false);
+        System.out.println();
+        System.out.println("== coordinator");
+        passed &= run(callers, seed, true);
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return true if every caller that did not cancel before its result received exactly one
+     * result, no caller more than one, and no result went to callers with different passwords
+     */
+    private static boolean run(int callerCount, long seed, boolean coordinated) {
+        final VirtualClock clock = new VirtualClock();
+        final SimulatedWifiPlatform platform = ConnectLoadTest.createEnvironment(seed).build(clock);
+        final ConnectionCoordinator coordinator = new ConnectionCoordinator(clock);
+        final Handshakes handshakes = new Handshakes();
+        ConnectOptions[][] options = createOptions();
+        Random random = new Random(seed);
+
+        List<Caller> callers = new ArrayList<>(callerCount);
+        int engines = 0;
+        long begin = System.nanoTime();
+        for (int burst = 0; burst * BURST_SIZE < callerCount; burst++) {
+            int size = Math.min(BURST_SIZE, callerCount - burst * BURST_SIZE);
+            for (int i = 0; i < size; i++) {
+                String ssid = SSIDS[random.nextInt(SSIDS.length)];
+                ConnectOptions callerOptions = options[random.nextInt(PRIORITIES)][random.nextInt(2)];
+                String pass = ssid.equals("Office") && random.nextDouble() < WRONG_PASSWORD_RATE
+                        ? "wrong-password" : PASSWORDS.get(ssid);
+                final Caller caller = new Caller(clock, handshakes, ssid, pass);
+                if (coordinated) {
+                    caller.request = coordinator.newRequest(platform, ssid, pass, SECONDS_TIMEOUT, callerOptions,
+                            caller);
+                } else {
+                    caller.engine = new ConnectionEngine(platform, ssid, pass, SECONDS_TIMEOUT, callerOptions, caller);
+                    engines++;
+                }
+                callers.add(caller);
+                long arrival = random.nextInt(BURST_WINDOW_MILLIS);
+                clock.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        caller.start();
+                    }
+                }, arrival);
+                if (random.nextDouble() < CANCEL_RATE) {
+                    clock.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            caller.cancel();
+                        }
+                    }, arrival + random.nextInt(2 * SECONDS_TIMEOUT * 1000));
+                }
+            }
+            clock.runUntilIdle();
+            platform.disconnect();
+            clock.advance(30000 + random.nextInt(30000));
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        if (coordinated) {
+            engines = coordinator.getEnginesStarted();
+        }
+
+        Map<ConnectStatus, Integer> statuses = new EnumMap<>(ConnectStatus.class);
+        long[] waits = new long[callers.size()];
+        int connected = 0;
+        int cancelled = 0;
+        int lost = 0;
+        int duplicated = 0;
+        int mixed = 0;
+        // result -> password of the first caller that received it
+        Map<ConnectResult, String> passwords = new IdentityHashMap<>();
+        for (Caller caller : callers) {
+            if (caller.results > 1) {
+                duplicated++;
+            }
+            if (caller.received != null) {
+                if (!passwords.containsKey(caller.received)) {
+                    passwords.put(caller.received, caller.pass);
+                } else if (!equals(passwords.get(caller.received), caller.pass)) {
+                    mixed++;
+                }
+            }
+            if (caller.cancelled) {
+                cancelled++;
+                continue;
+            }
+            if (caller.results == 0) {
+                lost++;
+                continue;
+            }
+            ConnectStatus status = caller.result.getStatus();
+            Integer count = statuses.get(status);
+            statuses.put(status, count == null ? 1 : count + 1);
+            if (caller.result.isConnected()) {
+                waits[connected++] = caller.resultTime - caller.startTime;
+            }
+        }
+        int answered = callers.size() - cancelled - lost;
+
+        System.out.printf(Locale.US, "%d callers in %.2f s, %d cancelled; %d engines started%n",
+                callers.size(), seconds, cancelled, engines);
+        if (coordinated) {
+            System.out.printf(Locale.US, "joined an attempt %d, preempted attempts %d%n",
+                    coordinator.getRequestsJoined(), coordinator.getPreemptions());
+        }
+        for (Map.Entry<ConnectStatus, Integer> entry : statuses.entrySet()) {
+            System.out.printf(Locale.US, "  %-20s %6.2f%%%n", entry.getKey(), 100.0 * entry.getValue() / answered);
+        }
+        Arrays.sort(waits, 0, connected);
+        if (connected > 0) {
+            System.out.printf(Locale.US, "virtual time from start to connected, ms: p50=%d p90=%d p99=%d max=%d%n",
+                    waits[connected / 2], waits[Math.min(connected - 1, connected * 9 / 10)],
+                    waits[Math.min(connected - 1, connected * 99 / 100)], waits[connected - 1]);
+        }
+        System.out.printf(Locale.US, "service calls per caller %.2f, scans started %d, throttled %d%n",
+                (double) platform.getServiceCallCount() / callers.size(), platform.getScansStarted(),
+                platform.getScansThrottled());
+        System.out.printf(Locale.US, "handshakes started while another network associated: %d%n",
+                handshakes.overlaps);
+        System.out.printf(Locale.US, "callers without a result %d, with more than one %d, "
+                + "with the result of another password %d%n", lost, duplicated, mixed);
+        return lost == 0 && duplicated == 0 && mixed == 0;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static ConnectOptions[][] createOptions() {
+        ConnectOptions[][] options = new ConnectOptions[PRIORITIES][];
+        RetryPolicy retryPolicy = new RetryPolicy.Builder().build();
+        for (int priority = 0; priority < PRIORITIES; priority++) {
+            options[priority] = new ConnectOptions[]{
+                    new ConnectOptions.Builder().setPriority(priority).build(),
+                    new ConnectOptions.Builder().setPriority(priority).setRetryPolicy(retryPolicy).build(),
+            };
+        }
+        return options;
+    }
+
+    /**
+     * Counts the handshakes that start while a handshake with another network is under way, so
+     * one of them disconnects the other
+     */
+    private static final class Handshakes {
+
+        // SSID -> callers associating with it
+        private final Map<String, Integer> associating = new HashMap<>();
+        private int overlaps;
+
+        void enter(String ssid) {
+            for (Map.Entry<String, Integer> entry : associating.entrySet()) {
+                if (!entry.getKey().equals(ssid) && entry.getValue() > 0) {
+                    overlaps++;
+                    break;
+                }
+            }
+            Integer count = associating.get(ssid);
+            associating.put(ssid, count == null ? 1 : count + 1);
+        }
+
+        void leave(String ssid) {
+            associating.put(ssid, associating.get(ssid) - 1);
+        }
+    }
+
+    /**
+     * One caller, with either an engine of its own or a request to the coordinator
+     */
+    private static final class Caller implements ConnectionEngine.Callback {
+
+        private final VirtualClock clock;
+        private final Handshakes handshakes;
+        private final String ssid;
+        private final String pass;
+        private ConnectionEngine engine;
+        private ConnectionCoordinator.Request request;
+        private boolean associating;
+        private boolean cancelled;
+        private int results;
+        private ConnectResult result;
+        // the last result received, also after cancelling
+        private ConnectResult received;
+        private long startTime;
+        private long resultTime;
+
+        Caller(VirtualClock clock, Handshakes handshakes, String ssid, String pass) {
+            this.clock = clock;
+            this.handshakes = handshakes;
+            this.ssid = ssid;
+            this.pass = pass;
+        }
+
+        void start() {
+            startTime = clock.now();
+            if (engine != null) {
+                engine.start();
+            } else {
+                request.start();
+            }
+        }
+
+        void cancel() {
+            if (results == 0) {
+                cancelled = true;
+                setAssociating(false);
+            }
+            // after the result this only lets go of the request, like a screen that closes
+            if (engine != null) {
+                engine.cancel();
+            } else {
+                request.cancel();
+            }
+        }
+
+        @Override
+        public void onStateChanged(ConnectionState state) {
+            if (!cancelled) {
+                setAssociating(state == ConnectionState.ASSOCIATING);
+            }
+        }
+
+        @Override
+        public void onResult(ConnectResult result) {
+            results++;
+            received = result;
+            if (cancelled) {
+                // a result already on its way when the caller cancelled
+                return;
+            }
+            setAssociating(false);
+            this.result = result;
+            resultTime = clock.now();
+        }
+
+        private void setAssociating(boolean associating) {
+            if (associating == this.associating) {
+                return;
+            }
+            this.associating = associating;
+            if (associating) {
+                handshakes.enter(ssid);
+            } else {
+                handshakes.leave(ssid);
+            }
+        }
+    }
+}
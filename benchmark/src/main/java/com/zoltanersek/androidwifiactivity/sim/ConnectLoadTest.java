@@ -0,0 +1,203 @@
+package com.zoltanersek.androidwifiactivity.sim;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectPath;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectStatus;
+import com.zoltanersek.androidwifiactivity.core.ConnectionEngine;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+import com.zoltanersek.androidwifiactivity.core.RetryPolicy;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs many connection attempts of the {@link ConnectionEngine} against a
+ * {@link SimulatedWifiPlatform} and reports the throughput of the state machine on this JVM and
+ * the distribution of the virtual time to connect per path. The same attempts run with configured
+ * networks and broadcasts, with network requests and callbacks, and with configured networks and
+ * a scan prewarmed while the user types, so the ways of joining and the prewarm can be compared.
+ * Arguments: number of attempts (100000 by default) and seed
+ * (1 by default).
+ * <pre>
+ * ./gradlew -q :benchmark:simulate -Pattempts=100000 -Pseed=1
+ * </pre>
+ */
+public final class ConnectLoadTest {
+
+    private static final String[] SSIDS = {"Home", "Office", "Cafe", "Legacy", "Missing"};
+    private static final String[] PASSWORDS = {"home-password", "office-password", null, "legacy", "missing"};
+    private static final int SECONDS_TIMEOUT = 15;
+    // time between the screen opening, which prewarms the scan, and the user pressing connect
+    private static final int MIN_THINK_MILLIS = 1000;
+    private static final int MAX_THINK_MILLIS = 5000;
+    private static final ConnectOptions[] OPTIONS = {
+            ConnectOptions.DEFAULT,
+            new ConnectOptions.Builder().setSavedNetworkFastPath(true).build(),
+            new ConnectOptions.Builder().setNetworkCache(true).setAdaptiveTimeout(true).build(),
+            new ConnectOptions.Builder().setRetryPolicy(new RetryPolicy.Builder().build()).build(),
+    };
+
+    private ConnectLoadTest() {
+    }
+
+    /**
+     * @param seed seed of the environment
+     * @return a platform with a few networks to join among background access points, with
+     * flapping links and occasional authentication failures
+     */
+    public static SimulatedWifiPlatform.Builder createEnvironment(long seed) {
+        SimulatedWifiPlatform.Builder builder = new SimulatedWifiPlatform.Builder()
+                .setSeed(seed)
+                .setAuthFailureRate(0.01)
+                .setFlapRate(0.05, 1000)
+                .addAccessPoint(new AccessPoint("Home", "10:00:00:00:00:01", "[WPA2-PSK-CCMP][ESS]", -55, 5180, 80), "home-password")
+                .addAccessPoint(new AccessPoint("Office", "10:00:00:00:01:01", "[WPA2-PSK-CCMP][ESS]", -70, 2412, 20), "office-password")
+                .addAccessPoint(new AccessPoint("Office", "10:00:00:00:01:02", "[WPA2-PSK-CCMP][ESS]", -62, 5500, 40), "office-password")
+                .addAccessPoint(new AccessPoint("Office", "10:00:00:00:01:03", "[WPA2-PSK-CCMP][ESS]", -80, 5745, 80), "office-password")
+                .addAccessPoint(new AccessPoint("Cafe", "10:00:00:00:02:01", "[ESS]", -67, 2437, 20), null)
+                .addAccessPoint(new AccessPoint("Legacy", "10:00:00:00:03:01", "[WEP][ESS]", -73, 2462, 20), "legacy");
+        Random random = new Random(seed);
+        for (int i = 0; i < 40; i++) {
+            String bssid = String.format(Locale.US, "20:00:00:00:%02x:%02x", i / 256, i % 256);
+            builder.addAccessPoint(new AccessPoint("Neighbour-" + i, bssid, "[WPA2-PSK-CCMP][ESS]",
+                    -60 - random.nextInt(35), i % 2 == 0 ? 2412 + 5 * random.nextInt(13) : 5180 + 20 * random.nextInt(8)), "x");
+        }
+        return builder;
+    }
+
+    public static void main(String[] args) {
+        int attempts = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        System.out.println("== configured networks, broadcasts");
+        run(attempts, seed, false, false);
+        System.out.println();
+        System.out.println("== network requests, callbacks");
+        run(attempts, seed, true, false);
+        System.out.println();
+        System.out.println("== configured networks, broadcasts, scan prewarmed while the user types");
+        run(attempts, seed, false, true);
+    }
+
+    private static void run(int attempts, long seed, boolean networkRequests, boolean prewarm) {
+        VirtualClock clock = new VirtualClock();
+        SimulatedWifiPlatform platform = createEnvironment(seed).setNetworkRequests(networkRequests).build(clock);
+        Random random = new Random(seed);
+        final ConnectResult[] last = new ConnectResult[1];
+        ConnectionEngine.Callback callback = new ConnectionEngine.Callback() {
+            @Override
+            public void onStateChanged(ConnectionState state) {
+            }
+
+            @Override
+            public void onResult(ConnectResult result) {
+                last[0] = result;
+            }
+        };
+
+        Map<ConnectStatus, Integer> statuses = new EnumMap<>(ConnectStatus.class);
+        Map<ConnectPath, Samples> paths = new EnumMap<>(ConnectPath.class);
+        Samples all = new Samples();
+        int[] attemptCounts = new int[8];
+        long tasks = 0;
+        long serviceCalls = 0;
+        int scansFromCache = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < attempts; i++) {
+            int network = random.nextInt(SSIDS.length);
+            // a wrong password now and then
+            String password = random.nextInt(50) == 0 ? "wrong" : PASSWORDS[network];
+            ConnectOptions options = OPTIONS[random.nextInt(OPTIONS.length)];
+            platform.disconnect();
+            long gap = 5000 + random.nextInt(55000);
+            long think = MIN_THINK_MILLIS + random.nextInt(MAX_THINK_MILLIS - MIN_THINK_MILLIS + 1);
+            if (prewarm) {
+                clock.advance(gap - think);
+                platform.prewarmScan(options.getPrewarmFreshnessMillis());
+                clock.advance(think);
+            } else {
+                clock.advance(gap);
+            }
+            last[0] = null;
+            new ConnectionEngine(platform, SSIDS[network], password, SECONDS_TIMEOUT, options, callback).start();
+            tasks += clock.runUntilIdle();
+            ConnectResult result = last[0];
+            Integer count = statuses.get(result.getStatus());
+            statuses.put(result.getStatus(), count == null ? 1 : count + 1);
+            serviceCalls += result.getMetrics().getServiceCalls();
+            if (result.getMetrics().isScanFromCache()) {
+                scansFromCache++;
+            }
+            attemptCounts[Math.min(result.getMetrics().getAttempts(), attemptCounts.length) - 1]++;
+            if (result.isConnected()) {
+                long millis = result.getMetrics().getTotalMillis();
+                all.add(millis);
+                Samples samples = paths.get(result.getPath());
+                if (samples == null) {
+                    samples = new Samples();
+                    paths.put(result.getPath(), samples);
+                }
+                samples.add(millis);
+            }
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.printf(Locale.US, "%d attempts in %.2f s: %.0f attempts/s, %.0f loop tasks/s%n",
+                attempts, seconds, attempts / seconds, tasks / seconds);
+        for (Map.Entry<ConnectStatus, Integer> entry : statuses.entrySet()) {
+            System.out.printf(Locale.US, "  %-20s %6.2f%%%n", entry.getKey(), 100.0 * entry.getValue() / attempts);
+        }
+        System.out.print("tries per attempt:");
+        for (int i = 0; i < attemptCounts.length; i++) {
+            if (attemptCounts[i] > 0) {
+                System.out.printf(Locale.US, " %d: %d", i + 1, attemptCounts[i]);
+            }
+        }
+        System.out.println();
+        System.out.printf(Locale.US, "service calls per attempt: %.2f%n", (double) serviceCalls / attempts);
+        System.out.printf(Locale.US, "scan results already there: %.2f%%%n", 100.0 * scansFromCache / attempts);
+        System.out.println("virtual time to connect, ms:");
+        all.print("all");
+        for (Map.Entry<ConnectPath, Samples> entry : paths.entrySet()) {
+            entry.getValue().print(entry.getKey().toString());
+        }
+        System.out.printf(Locale.US, "scans started %d, throttled %d, served from cache %d; auth failures %d, flaps %d%n",
+                platform.getScansStarted(), platform.getScansThrottled(), platform.getScansServedFromCache(),
+                platform.getAuthFailures(), platform.getFlaps());
+        if (prewarm) {
+            System.out.printf(Locale.US, "scans prewarmed %d, served from prewarm %d%n",
+                    platform.getScansPrewarmed(), platform.getScansServedFromPrewarm());
+        }
+    }
+
+    /**
+     * Growable array of durations
+     */
+    private static final class Samples {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void print(String label) {
+            Arrays.sort(values, 0, size);
+            System.out.printf(Locale.US, "  %-20s n=%-7d p50=%-6d p90=%-6d p99=%-6d max=%d%n", label, size,
+                    percentile(0.5), percentile(0.9), percentile(0.99), values[size - 1]);
+        }
+
+        private long percentile(double p) {
+            return values[Math.min(size - 1, (int) (p * size))];
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.zoltanersek.androidwifiactivity.sim;
+
+import com.zoltanersek.androidwifiactivity.core.Checks;
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectionEngine;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+import com.zoltanersek.androidwifiactivity.core.ListenerRegistry;
+import com.zoltanersek.androidwifiactivity.core.RetryPolicy;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that the broadcast receiver shared through the {@code WifiEventHub} does not leak: the
+ * {@link ListenerRegistry} behind the hub is hammered with subscribe and unsubscribe cycles from
+ * several threads while broadcasts are dispatched, and connection attempts on a
+ * {@link SimulatedWifiPlatform} are started and cancelled at random points. Afterwards no listener
+ * may be left, the receiver must be unregistered and no cancelled attempt may report a result.
+ * Exits with 1 if a check fails. Argument: number of cycles (10000 by default).
+ * <pre>
+ * ./gradlew -q :benchmark:checkEventHub -Pcycles=10000
+ * </pre>
+ */
+public final class EventHubCheck {
+
+    private static final int THREADS = 4;
+    private static final String[] SSIDS = {"Home", "Office", "Cafe", "Missing"};
+    private static final String[] PASSWORDS = {"home-password", "office-password", null, "missing"};
+
+    private EventHubCheck() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        checkRegistry(cycles);
+        checkEngine(cycles);
+        Checks.finish();
+    }
+
+    private static void checkRegistry(final int cycles) throws InterruptedException {
+        final AtomicInteger attached = new AtomicInteger();
+        final AtomicInteger attaches = new AtomicInteger();
+        final ListenerRegistry<Runnable> registry = new ListenerRegistry<>(new ListenerRegistry.Source() {
+            @Override
+            public void attach() {
+                attached.incrementAndGet();
+                attaches.incrementAndGet();
+            }
+
+            @Override
+            public void detach() {
+                attached.decrementAndGet();
+            }
+        });
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < cycles; i++) {
+                        final boolean[] called = new boolean[1];
+                        Runnable listener = new Runnable() {
+                            @Override
+                            public void run() {
+                                called[0] = true;
+                            }
+                        };
+                        registry.add(listener);
+                        // a broadcast arrives, and the listener sometimes leaves from within it
+                        for (Runnable subscribed : registry) {
+                            subscribed.run();
+                            if (subscribed == listener && random.nextBoolean()) {
+                                registry.remove(listener);
+                            }
+                        }
+                        if (!called[0]) {
+                            throw new AssertionError("a subscribed listener missed a broadcast");
+                        }
+                        registry.remove(listener);
+                    }
+                    done.countDown();
+                }
+            }, "subscriber-" + t).start();
+        }
+        done.await();
+        Checks.check("registry: " + THREADS + " threads x " + cycles + " subscribe/unsubscribe cycles",
+                registry.size() == 0 && !registry.isAttached() && attached.get() == 0,
+                "listeners " + registry.size() + ", receiver registrations " + attaches.get()
+                        + ", still registered " + attached.get());
+    }
+
+    private static void checkEngine(int cycles) {
+        VirtualClock clock = new VirtualClock();
+        SimulatedWifiPlatform platform = ConnectLoadTest.createEnvironment(1).build(clock);
+        ConnectOptions[] options = {
+                ConnectOptions.DEFAULT,
+                new ConnectOptions.Builder().setSavedNetworkFastPath(true).setNetworkCache(true).build(),
+                new ConnectOptions.Builder().setRetryPolicy(new RetryPolicy.Builder().build()).build(),
+        };
+        Random random = new Random(1);
+        final int[] results = new int[1];
+        ConnectionEngine.Callback callback = new ConnectionEngine.Callback() {
+            @Override
+            public void onStateChanged(ConnectionState state) {
+            }
+
+            @Override
+            public void onResult(ConnectResult result) {
+                results[0]++;
+            }
+        };
+        int cancelled = 0;
+        int lateResults = 0;
+        for (int i = 0; i < cycles; i++) {
+            int network = random.nextInt(SSIDS.length);
+            ConnectionEngine engine = new ConnectionEngine(platform, SSIDS[network], PASSWORDS[network], 15,
+                    options[random.nextInt(options.length)], callback);
+            engine.start();
+            // cancel while scanning, associating, waiting to retry, or after the result
+            clock.runFor(random.nextInt(8000));
+            if (!engine.getState().isTerminal()) {
+                cancelled++;
+            }
+            int before = results[0];
+            engine.cancel();
+            clock.runUntilIdle();
+            // a cancelled attempt that still gets link changes was not unsubscribed
+            lateResults += results[0] - before;
+            platform.disconnect();
+            clock.advance(30000);
+        }
+        Checks.check("engine: " + cycles + " start/cancel cycles",
+                platform.getLinkListenerCount() == 0 && platform.getPendingScanCount() == 0
+                        && !platform.isReceiverRegistered() && lateResults == 0,
+                "cancelled " + cancelled + ", finished " + results[0] + ", results after cancel " + lateResults
+                        + "; link listeners "
+                        + platform.getLinkListenerCount() + ", pending scans " + platform.getPendingScanCount()
+                        + ", receiver registered " + platform.isReceiverRegistered());
+    }
+}
@@ -0,0 +1,36 @@
+package com.zoltanersek.androidwifiactivity.sim;
+
+import com.zoltanersek.androidwifiactivity.core.ConnectDurationHistory;
+import com.zoltanersek.androidwifiactivity.core.ConnectionStore;
+import com.zoltanersek.androidwifiactivity.core.NetworkCache;
+
+/**
+ * {@link ConnectionStore} kept in memory, the simulated counterpart of the files of the app
+ */
+public final class MemoryConnectionStore implements ConnectionStore {
+
+    private final ConnectDurationHistory history = new ConnectDurationHistory(64);
+    private final NetworkCache cache = new NetworkCache(32);
+
+    @Override
+    public long getAdaptiveTimeoutMillis(String ssid, long timeoutMillis) {
+        return history.getTimeoutMillis(ssid, timeoutMillis);
+    }
+
+    @Override
+    public void recordConnectDuration(String ssid, long durationMillis) {
+        history.record(ssid, durationMillis);
+    }
+
+    @Override
+    public NetworkCache.Entry getCachedNetwork(String ssid, int cacheSize) {
+        cache.setMaxEntries(cacheSize);
+        return cache.get(ssid);
+    }
+
+    @Override
+    public void putCachedNetwork(NetworkCache.Entry entry, int cacheSize) {
+        cache.setMaxEntries(cacheSize);
+        cache.put(entry);
+    }
+}
@@ -0,0 +1,184 @@
+package com.zoltanersek.androidwifiactivity.sim;
+
+import com.zoltanersek.androidwifiactivity.core.Checks;
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectPath;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectionEngine;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+import com.zoltanersek.androidwifiactivity.core.MacAddresses;
+import com.zoltanersek.androidwifiactivity.core.NetworkCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks the {@link NetworkCache}: loading its binary form skips damaged records and keeps the
+ * intact ones, and a truncated file or one of an unknown version never fails the load. Then
+ * checks the {@link ConnectionEngine} on a {@link SimulatedWifiPlatform} that redacts the BSSID
+ * of the connected access point, as Android does without the location permission: the redacted
+ * BSSID is never cached, and a redacted or malformed BSSID cached by an older version is not
+ * pinned. Exits with 1 if a check fails.
+ * <pre>
+ * ./gradlew -q :benchmark:checkNetworkCache
+ * </pre>
+ */
+public final class NetworkCacheCheck {
+
+    private static final int CAPABILITIES = 0;
+    private static final String[] SSIDS = {"Home", "Office", "Caf\u00e9", "Lobby", "\u4e2d\u6587"};
+    private static final int HEADER_SIZE = 7;
+
+    private NetworkCacheCheck() {
+    }
+
+    public static void main(String[] args) {
+        checkAddresses();
+        checkLoad();
+        checkEngine();
+        Checks.finish();
+    }
+
+    private static void checkAddresses() {
+        Checks.check("a BSSID is normalized to lower case", "aa:bb:cc:dd:ee:0f".equals(
+                MacAddresses.normalize("AA:BB:CC:DD:EE:0F")), MacAddresses.normalize("AA:BB:CC:DD:EE:0F"));
+        boolean unknown = true;
+        for (String bssid : new String[]{MacAddresses.REDACTED, null, "", "any", "00:11:22:33:44",
+                "00-11-22-33-44-55", "zz:11:22:33:44:55", "00:00:00:00:00:00"}) {
+            unknown &= MacAddresses.normalize(bssid) == null;
+        }
+        Checks.check("redacted, malformed and zero BSSIDs are unknown", unknown, MacAddresses.REDACTED);
+    }
+
+    private static void checkLoad() {
+        NetworkCache cache = new NetworkCache(SSIDS.length);
+        for (int i = 0; i < SSIDS.length; i++) {
+            // one network without a known access point
+            String bssid = i == 3 ? null : String.format("10:00:00:00:00:%02x", i);
+            cache.put(new NetworkCache.Entry(SSIDS[i], i, bssid, 2412 + 5 * i, CAPABILITIES, 1000L * i));
+        }
+        // written least recently used first, in the order of SSIDS
+        byte[] data = cache.toByteArray();
+        List<String> expected = describe(cache);
+        int[] ends = recordEnds(data);
+
+        NetworkCache loaded = new NetworkCache(SSIDS.length);
+        int read = loaded.load(data);
+        Checks.check("an intact file loads every record", read == SSIDS.length && describe(loaded).equals(expected),
+                describe(loaded));
+
+        int wrong = 0;
+        for (int record = 0; record < ends.length; record++) {
+            byte[] damaged = data.clone();
+            // a byte in the middle of the body, past the length and checksum
+            int start = record == 0 ? HEADER_SIZE : ends[record - 1];
+            damaged[start + 6 + (ends[record] - start - 6) / 2] ^= 0x5a;
+            read = loaded.load(damaged);
+            List<String> remaining = new ArrayList<>(expected);
+            remaining.set(record, null);
+            if (read != SSIDS.length - 1 || !describe(loaded).equals(remaining)) {
+                wrong++;
+            }
+        }
+        Checks.check("a damaged record is skipped and the others are kept", wrong == 0,
+                ends.length + " records damaged one at a time, " + wrong + " wrong");
+
+        wrong = 0;
+        for (int length = 0; length < data.length; length++) {
+            read = loaded.load(Arrays.copyOf(data, length));
+            int complete = 0;
+            while (complete < ends.length && ends[complete] <= length) {
+                complete++;
+            }
+            if (read != complete || loaded.size() != complete || (length < HEADER_SIZE && read != 0)) {
+                wrong++;
+            }
+        }
+        Checks.check("a truncated file keeps the records before the cut, a cut header loads empty", wrong == 0,
+                data.length + " lengths, " + wrong + " wrong");
+
+        loaded.load(data);
+        byte[] version = data.clone();
+        version[4]++;
+        read = loaded.load(version);
+        Checks.check("an unknown version loads empty", read == 0 && loaded.size() == 0, read + " read");
+
+        loaded.load(data);
+        byte[] magic = data.clone();
+        magic[0] ^= 0xff;
+        read = loaded.load(magic);
+        Checks.check("a file that is not a cache loads empty", read == 0 && loaded.size() == 0, read + " read");
+    }
+
+    private static void checkEngine() {
+        VirtualClock clock = new VirtualClock();
+        SimulatedWifiPlatform platform = ConnectLoadTest.createEnvironment(1).setAuthFailureRate(0).setFlapRate(0, 0)
+                .setRedactBssid(true).build(clock);
+        ConnectOptions options = new ConnectOptions.Builder().setNetworkCache(true).build();
+        int size = options.getNetworkCacheSize();
+
+        ConnectResult result = connect(clock, platform, options);
+        NetworkCache.Entry entry = platform.getStore().getCachedNetwork("Office", size);
+        Checks.check("a redacted BSSID is not cached", result.isConnected() && entry != null
+                && entry.getBssid() == null, entry);
+
+        result = connect(clock, platform, options);
+        Checks.check("the cached network is joined without its access point", result.isConnected()
+                && result.getPath() == ConnectPath.CACHED, result);
+
+        for (String bssid : new String[]{MacAddresses.REDACTED, "not a bssid"}) {
+            // as an older version cached it
+            platform.getStore().putCachedNetwork(new NetworkCache.Entry("Office", entry.getNetworkId(), bssid,
+                    entry.getFrequency(), entry.getCapabilities(), entry.getLastSuccessMillis()), size);
+            result = connect(clock, platform, options);
+            Checks.check("a cached BSSID " + bssid + " is not pinned", result.isConnected()
+                    && result.getPath() == ConnectPath.CACHED, result);
+        }
+    }
+
+    private static ConnectResult connect(VirtualClock clock, SimulatedWifiPlatform platform, ConnectOptions options) {
+        platform.disconnect();
+        clock.advance(60000);
+        final ConnectResult[] result = new ConnectResult[1];
+        new ConnectionEngine(platform, "Office", "office-password", 15, options, new ConnectionEngine.Callback() {
+            @Override
+            public void onStateChanged(ConnectionState state) {
+            }
+
+            @Override
+            public void onResult(ConnectResult connectResult) {
+                result[0] = connectResult;
+            }
+        }).start();
+        clock.runUntilIdle();
+        return result[0];
+    }
+
+    /**
+     * @return the entries of the cache in the order of {@link #SSIDS}, null for a missing one
+     */
+    private static List<String> describe(NetworkCache cache) {
+        List<String> entries = new ArrayList<>();
+        for (String ssid : SSIDS) {
+            NetworkCache.Entry entry = cache.get(ssid);
+            entries.add(entry == null ? null : entry.toString());
+        }
+        return entries;
+    }
+
+    /**
+     * @return the offset after each record of the binary form
+     */
+    private static int[] recordEnds(byte[] data) {
+        int count = ((data[5] & 0xff) << 8) | (data[6] & 0xff);
+        int[] ends = new int[count];
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            int length = ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+            offset += 2 + 4 + length;
+            ends[i] = offset;
+        }
+        return ends;
+    }
+}
@@ -0,0 +1,237 @@
+package com.zoltanersek.androidwifiactivity.sim;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.zoltanersek.androidwifiactivity.core.Checks;
+import com.zoltanersek.androidwifiactivity.core.ConnectOptions;
+import com.zoltanersek.androidwifiactivity.core.ConnectResult;
+import com.zoltanersek.androidwifiactivity.core.ConnectStatus;
+import com.zoltanersek.androidwifiactivity.core.ConnectionEngine;
+import com.zoltanersek.androidwifiactivity.core.ConnectionMetrics;
+import com.zoltanersek.androidwifiactivity.core.ConnectionPhase;
+import com.zoltanersek.androidwifiactivity.core.ConnectionState;
+import com.zoltanersek.androidwifiactivity.core.ProbeResult;
+import com.zoltanersek.androidwifiactivity.core.ProbeStatus;
+import com.zoltanersek.androidwifiactivity.core.ReachabilityProbe;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.Charset;
+
+/**
+ * Checks the {@link ReachabilityProbe} against a local stand-in for the probe endpoint that
+ * answers like a working network, a captive portal, a broken endpoint or a slow one, and the
+ * validation stage of the {@link ConnectionEngine} against a {@link SimulatedWifiPlatform} with
+ * captive portals and probes that get no answer. Prints every check and exits with 1 if one fails.
+ * <pre>
+ * ./gradlew -q :benchmark:checkProbe
+ * </pre>
+ */
+public final class ReachabilityProbeCheck {
+
+    private ReachabilityProbeCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        final String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        server.createContext("/generate_204", new Responder(204, null, null, 0));
+        server.createContext("/empty_200", new Responder(200, null, null, 0));
+        server.createContext("/health", new Responder(200, null, "ok", 0));
+        server.createContext("/portal_redirect", new Responder(302, base + "/login", null, 0));
+        server.createContext("/portal_page", new Responder(200, null, "<html>Sign in</html>", 0));
+        server.createContext("/error", new Responder(503, null, "unavailable", 0));
+        server.createContext("/slow", new Responder(204, null, null, 1500));
+        server.start();
+        try {
+            checkProbes(base);
+        } finally {
+            server.stop(0);
+        }
+        checkEngine();
+        Checks.finish();
+    }
+
+    private static void checkProbes(String base) throws IOException {
+        ProbeResult result = probe(base + "/generate_204").run();
+        Checks.check("204 is reachable", result.getStatus() == ProbeStatus.REACHABLE && result.getResponseCode() == 204
+                && result.getRttMillis() >= 0 && result.getTtfbMillis() >= 0, result);
+
+        result = probe(base + "/empty_200").run();
+        Checks.check("empty 200 is reachable", result.getStatus() == ProbeStatus.REACHABLE, result);
+
+        result = probe(base + "/portal_redirect").run();
+        Checks.check("redirect is a captive portal", result.getStatus() == ProbeStatus.CAPTIVE_PORTAL
+                && (base + "/login").equals(result.getPortalUrl()), result);
+
+        result = probe(base + "/portal_page").run();
+        Checks.check("page is a captive portal", result.getStatus() == ProbeStatus.CAPTIVE_PORTAL
+                && result.getPortalUrl() == null, result);
+
+        result = probe(base + "/error").run();
+        Checks.check("503 is unreachable", result.getStatus() == ProbeStatus.UNREACHABLE
+                && result.getResponseCode() == 503, result);
+
+        result = new ReachabilityProbe.Builder().setUrl(base + "/slow").setTimeouts(1000, 300).build().run();
+        Checks.check("read timeout is unreachable", result.getStatus() == ProbeStatus.UNREACHABLE
+                && result.getRttMillis() >= 0 && result.getTtfbMillis() == -1, result);
+
+        result = new ReachabilityProbe.Builder().setUrl(base + "/health").setExpectedResponseCode(200).build().run();
+        Checks.check("expected 200 is reachable", result.getStatus() == ProbeStatus.REACHABLE, result);
+
+        result = new ReachabilityProbe.Builder().setUrl(base + "/portal_redirect").setExpectedResponseCode(302).build()
+                .run();
+        Checks.check("expected redirect is reachable without a portal", result.getStatus() == ProbeStatus.REACHABLE
+                && result.getPortalUrl() == null, result);
+
+        ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        int closedPort = socket.getLocalPort();
+        socket.close();
+        result = probe("http://127.0.0.1:" + closedPort + "/generate_204").run();
+        Checks.check("closed port is unreachable", result.getStatus() == ProbeStatus.UNREACHABLE
+                && result.getResponseCode() == -1 && result.getRttMillis() == -1, result);
+    }
+
+    private static void checkEngine() {
+        ReachabilityProbe probe = new ReachabilityProbe.Builder().setAttempts(3, 500).build();
+        ConnectOptions options = new ConnectOptions.Builder().setReachabilityProbe(probe).build();
+
+        ConnectResult result = connect(ConnectLoadTest.createEnvironment(1), "Home", "home-password", options);
+        Checks.check("engine connects once the probe gets through", result.isConnected()
+                && result.getMetrics().getProbeAttempts() == 1
+                && result.getMetrics().getProbeResult().getStatus() == ProbeStatus.REACHABLE
+                && result.getMetrics().getTimestamp(ConnectionPhase.VALIDATED)
+                > result.getMetrics().getTimestamp(ConnectionPhase.IP_OBTAINED), result);
+
+        SimulatedWifiPlatform.Builder portal = ConnectLoadTest.createEnvironment(1).addCaptivePortal("Cafe");
+        result = connect(portal, "Cafe", null, options);
+        Checks.check("engine reports the captive portal", result.getStatus() == ConnectStatus.CAPTIVE_PORTAL
+                && result.getMetrics().getProbeResult().getPortalUrl() != null
+                && !result.getMetrics().hasPhase(ConnectionPhase.VALIDATED), result);
+
+        result = connect(ConnectLoadTest.createEnvironment(1).setProbe(40, 1), "Home", "home-password", options);
+        Checks.check("engine gives up after the probe attempts", result.getStatus() == ConnectStatus.UNREACHABLE
+                && result.getMetrics().getProbeAttempts() == 3
+                && !result.getMetrics().hasPhase(ConnectionPhase.VALIDATED), result);
+
+        result = connect(ConnectLoadTest.createEnvironment(1), "Home", "home-password", ConnectOptions.DEFAULT);
+        Checks.check("engine without a probe does not probe", result.isConnected()
+                && result.getMetrics().getProbeResult() == null, result);
+        // connect() fails if the metrics change after the result
+        ConnectionMetrics metrics = result.getMetrics();
+        Checks.check("engine without a probe reports the validation of the system with the result",
+                metrics.getTimestamp(ConnectionPhase.VALIDATED) > metrics.getTimestamp(ConnectionPhase.IP_OBTAINED)
+                        && metrics.getTimestamp(ConnectionPhase.VALIDATED) <= metrics.getEndTime(), result);
+
+        result = connect(ConnectLoadTest.createEnvironment(1).addCaptivePortal("Cafe"), "Cafe", null,
+                ConnectOptions.DEFAULT);
+        metrics = result.getMetrics();
+        long wait = metrics.getEndTime() - metrics.getTimestamp(ConnectionPhase.IP_OBTAINED);
+        Checks.check("engine without a probe reports a network that is never validated after the wait",
+                result.isConnected() && !metrics.hasPhase(ConnectionPhase.VALIDATED) && wait >= 3000 && wait < 4000,
+                result);
+
+        result = connect(ConnectLoadTest.createEnvironment(1).setNetworkRequests(true), "Home", "home-password",
+                ConnectOptions.DEFAULT);
+        metrics = result.getMetrics();
+        Checks.check("engine does not wait for the validation of a requested network", result.isConnected()
+                && metrics.isNetworkRequest() && !metrics.hasPhase(ConnectionPhase.VALIDATED)
+                && metrics.getEndTime() == metrics.getTimestamp(ConnectionPhase.IP_OBTAINED), result);
+
+        int connected = 0;
+        int unreachable = 0;
+        VirtualClock clock = new VirtualClock();
+        SimulatedWifiPlatform platform = ConnectLoadTest.createEnvironment(2).setProbe(40, 0.5).build(clock);
+        for (int i = 0; i < 1000; i++) {
+            platform.disconnect();
+            clock.advance(60000);
+            result = connect(clock, platform, "Home", "home-password", options);
+            if (result.isConnected()) {
+                connected++;
+            } else if (result.getStatus() == ConnectStatus.UNREACHABLE) {
+                unreachable++;
+            }
+        }
+        // 1 in 8 attempts fails all 3 probes
+        Checks.check("probes are retried", connected > 800 && unreachable > 60 && unreachable < 200,
+                "connected " + connected + ", unreachable " + unreachable);
+    }
+
+    private static ConnectResult connect(SimulatedWifiPlatform.Builder environment, String ssid, String password,
+                                         ConnectOptions options) {
+        VirtualClock clock = new VirtualClock();
+        return connect(clock, environment.build(clock), ssid, password, options);
+    }
+
+    private static ConnectResult connect(VirtualClock clock, SimulatedWifiPlatform platform, String ssid,
+                                         String password, ConnectOptions options) {
+        final ConnectResult[] result = new ConnectResult[1];
+        final String[] reported = new String[1];
+        new ConnectionEngine(platform, ssid, password, 15, options, new ConnectionEngine.Callback() {
+            @Override
+            public void onStateChanged(ConnectionState state) {
+            }
+
+            @Override
+            public void onResult(ConnectResult connectResult) {
+                result[0] = connectResult;
+                reported[0] = connectResult.getMetrics().toString();
+            }
+        }).start();
+        clock.runUntilIdle();
+        if (result[0] != null && !reported[0].equals(result[0].getMetrics().toString())) {
+            throw new AssertionError("the metrics changed after they were reported: " + reported[0] + " -> "
+                    + result[0].getMetrics());
+        }
+        if (result[0] != null && result[0].getStatus() == ConnectStatus.CAPTIVE_PORTAL
+                && !platform.isConnectedTo(Ssid.of(ssid))) {
+            throw new AssertionError("the network behind the portal must stay connected");
+        }
+        return result[0];
+    }
+
+    private static ReachabilityProbe probe(String url) {
+        return new ReachabilityProbe.Builder().setUrl(url).build();
+    }
+
+    /**
+     * Answers every request with a fixed response after a delay
+     */
+    private static final class Responder implements HttpHandler {
+
+        private final int code;
+        private final String location;
+        private final byte[] body;
+        private final long delayMillis;
+
+        Responder(int code, String location, String body, long delayMillis) {
+            this.code = code;
+            this.location = location;
+            this.body = body != null ? body.getBytes(Charset.forName("UTF-8")) : null;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (location != null) {
+                exchange.getResponseHeaders().set("Location", location);
+            }
+            exchange.sendResponseHeaders(code, body != null ? body.length : -1);
+            if (body != null) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+            }
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,824 @@
+package com.zoltanersek.androidwifiactivity.sim;
+
+import com.zoltanersek.androidwifiactivity.core.AccessPoint;
+import com.zoltanersek.androidwifiactivity.core.Capabilities;
+import com.zoltanersek.androidwifiactivity.core.ConnectionStore;
+import com.zoltanersek.androidwifiactivity.core.EngineLoop;
+import com.zoltanersek.androidwifiactivity.core.ForeignNetworkPolicy;
+import com.zoltanersek.androidwifiactivity.core.LinkEvent;
+import com.zoltanersek.androidwifiactivity.core.LinkInfo;
+import com.zoltanersek.androidwifiactivity.core.ListenerRegistry;
+import com.zoltanersek.androidwifiactivity.core.MacAddresses;
+import com.zoltanersek.androidwifiactivity.core.NetworkSpec;
+import com.zoltanersek.androidwifiactivity.core.ProbeResult;
+import com.zoltanersek.androidwifiactivity.core.ProbeStatus;
+import com.zoltanersek.androidwifiactivity.core.ReachabilityProbe;
+import com.zoltanersek.androidwifiactivity.core.SecurityType;
+import com.zoltanersek.androidwifiactivity.core.Ssid;
+import com.zoltanersek.androidwifiactivity.core.TokenBucket;
+import com.zoltanersek.androidwifiactivity.core.WifiPlatform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Simulated wifi stack on a {@link VirtualClock}. It models the parts of the Android wifi service
+ * a connection attempt depends on: scans that take time, the scan budget of Android 9 and later
+ * with cached results and background scans, saved configurations, association, the 4-way handshake
+ * with wrong passwords and random authentication failures, DHCP, and links that drop right after
+ * the handshake and come back. All randomness comes from one seeded {@link Random}, so a run is
+ * reproducible. Create instances with {@link Builder}.
+ * <p>
+ * Link changes of configured networks reach the listeners after a broadcast delay. With network
+ * requests enabled, as on Android 10, requested networks report through callbacks after a shorter
+ * callback delay. The system scans for a request itself and asks the user to approve it, unless
+ * the request names one access point approved before and the last scan is recent; then it joins
+ * at once. A prewarmed scan is kept and served to scan requests that accept results of its age,
+ * like the {@code ScanScheduler} of the library does.
+ * <p>
+ * Reachability probes take two round trips. Networks added as captive portals redirect them, and
+ * a probe right after connecting fails now and then, as when DHCP is slow. The system validates a
+ * connected network after a validation delay, except behind a captive portal, and reports it
+ * through a callback.
+ * <p>
+ * The {@link ForeignNetworkPolicy} is ignored: configurations of other networks never interfere.
+ * Every platform method that reaches the wifi service on Android counts as one service call.
+ */
+public final class SimulatedWifiPlatform implements WifiPlatform {
+
+    /**
+     * Age up to which the system joins an approved access point from its last scan results
+     */
+    private static final long REQUEST_SCAN_MAX_AGE_MILLIS = 20 * 1000;
+
+    private final VirtualClock clock;
+    private final ConnectionStore store = new MemoryConnectionStore();
+    private final Random random;
+    private final List<AccessPoint> accessPoints;
+    private final Map<String, String> passwords;
+    private final long scanDelayMillis;
+    private final int scanJitterMillis;
+    private final long systemScanIntervalMillis;
+    private final TokenBucket scanBudget;
+    private final long associationDelayMillis;
+    private final long handshakeDelayMillis;
+    private final long dhcpDelayMillis;
+    private final double authFailureRate;
+    private final double flapRate;
+    private final long flapRecoveryMillis;
+    private final boolean networkRequests;
+    private final boolean redactBssid;
+    private final long broadcastDelayMillis;
+    private final long callbackDelayMillis;
+    private final long requestApprovalMillis;
+    private final Set<String> captivePortals;
+    private final long probeRttMillis;
+    private final double probeFailureRate;
+    private final long validationDelayMillis;
+
+    private final Map<Integer, NetworkSpec> configurations = new HashMap<>();
+    private int nextNetworkId;
+    // like the platform on a device, the broadcast receiver is registered while link listeners are
+    private final ListenerRegistry<LinkListener> linkListeners = new ListenerRegistry<>(new ListenerRegistry.Source() {
+        @Override
+        public void attach() {
+            receiverRegistrations++;
+        }
+
+        @Override
+        public void detach() {
+            receiverRegistrations--;
+        }
+    });
+    private int receiverRegistrations;
+    private final List<ScanListener> pendingScans = new ArrayList<>();
+    private boolean scanInFlight;
+    private boolean systemScanScheduled;
+    private long lastScanTime = -1;
+    private boolean prewarmPending;
+    private long prewarmScanTime = -1;
+    private EngineLoop.Cancellable linkStep;
+    private int connectedNetworkId = -1;
+    private AccessPoint connectedAccessPoint;
+    private EngineLoop.Cancellable requestStep;
+    private boolean connectedByRequest;
+    private EngineLoop.Cancellable validationStep;
+    private boolean validated;
+    private final Set<String> approvedBssids = new HashSet<>();
+
+    private long scansStarted;
+    private long scansThrottled;
+    private long scansServedFromCache;
+    private long scansPrewarmed;
+    private long scansServedFromPrewarm;
+    private long authFailures;
+    private long flaps;
+    private int serviceCalls;
+
+    private SimulatedWifiPlatform(Builder builder, VirtualClock clock) {
+        this.clock = clock;
+        this.random = new Random(builder.seed);
+        this.accessPoints = Collections.unmodifiableList(new ArrayList<>(builder.accessPoints));
+        this.passwords = new HashMap<>(builder.passwords);
+        this.scanDelayMillis = builder.scanDelayMillis;
+        this.scanJitterMillis = builder.scanJitterMillis;
+        this.systemScanIntervalMillis = builder.systemScanIntervalMillis;
+        this.scanBudget = new TokenBucket(builder.scanBudget, builder.scanWindowMillis, clock.now());
+        this.associationDelayMillis = builder.associationDelayMillis;
+        this.handshakeDelayMillis = builder.handshakeDelayMillis;
+        this.dhcpDelayMillis = builder.dhcpDelayMillis;
+        this.authFailureRate = builder.authFailureRate;
+        this.flapRate = builder.flapRate;
+        this.flapRecoveryMillis = builder.flapRecoveryMillis;
+        this.networkRequests = builder.networkRequests;
+        this.redactBssid = builder.redactBssid;
+        this.broadcastDelayMillis = builder.broadcastDelayMillis;
+        this.callbackDelayMillis = builder.callbackDelayMillis;
+        this.requestApprovalMillis = builder.requestApprovalMillis;
+        this.captivePortals = new HashSet<>(builder.captivePortals);
+        this.probeRttMillis = builder.probeRttMillis;
+        this.probeFailureRate = builder.probeFailureRate;
+        this.validationDelayMillis = builder.validationDelayMillis;
+    }
+
+    public long getScansStarted() {
+        return scansStarted;
+    }
+
+    public long getScansThrottled() {
+        return scansThrottled;
+    }
+
+    public long getScansServedFromCache() {
+        return scansServedFromCache;
+    }
+
+    public long getScansPrewarmed() {
+        return scansPrewarmed;
+    }
+
+    public long getScansServedFromPrewarm() {
+        return scansServedFromPrewarm;
+    }
+
+    public long getAuthFailures() {
+        return authFailures;
+    }
+
+    public long getFlaps() {
+        return flaps;
+    }
+
+    /**
+     * @return number of link listeners added and not removed
+     */
+    public int getLinkListenerCount() {
+        return linkListeners.size();
+    }
+
+    /**
+     * @return number of scan requests waiting for results
+     */
+    public int getPendingScanCount() {
+        return pendingScans.size();
+    }
+
+    /**
+     * @return true while the broadcast receiver would be registered on a device
+     */
+    public boolean isReceiverRegistered() {
+        return receiverRegistrations > 0;
+    }
+
+    @Override
+    public int getServiceCallCount() {
+        return serviceCalls;
+    }
+
+    /**
+     * Forget all saved configurations and drop the link
+     */
+    public void forgetNetworks() {
+        disconnect();
+        configurations.clear();
+    }
+
+    @Override
+    public EngineLoop getLoop() {
+        return clock;
+    }
+
+    @Override
+    public ConnectionStore getStore() {
+        return store;
+    }
+
+    @Override
+    public boolean isConnectedTo(Ssid ssid) {
+        serviceCalls++;
+        return connectedAccessPoint != null && connectedAccessPoint.hasSsid(ssid);
+    }
+
+    @Override
+    public boolean isValidated() {
+        serviceCalls++;
+        return connectedAccessPoint != null && validated;
+    }
+
+    @Override
+    public LinkInfo getConnectionInfo() {
+        serviceCalls++;
+        if (connectedAccessPoint == null) {
+            return new LinkInfo(-1, null, 0);
+        }
+        return new LinkInfo(connectedNetworkId, redactBssid ? MacAddresses.REDACTED : connectedAccessPoint.getBssid(),
+                connectedAccessPoint.getFrequency());
+    }
+
+    @Override
+    public void disconnect() {
+        serviceCalls++;
+        cancelLinkStep();
+        cancelRequestStep();
+        cancelValidation();
+        connectedNetworkId = -1;
+        connectedAccessPoint = null;
+        connectedByRequest = false;
+    }
+
+    @Override
+    public int findSavedNetwork(Ssid ssid) {
+        serviceCalls++;
+        for (Map.Entry<Integer, NetworkSpec> entry : configurations.entrySet()) {
+            if (entry.getValue().getSsid().equals(ssid)) {
+                return entry.getKey();
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int addNetwork(NetworkSpec spec, ForeignNetworkPolicy policy) {
+        serviceCalls++;
+        int networkId = findSavedNetwork(spec.getSsid());
+        if (networkId == -1) {
+            networkId = nextNetworkId++;
+        }
+        configurations.put(networkId, spec);
+        return networkId;
+    }
+
+    @Override
+    public boolean enableNetwork(int networkId) {
+        serviceCalls++;
+        NetworkSpec spec = configurations.get(networkId);
+        if (spec == null) {
+            return false;
+        }
+        disconnect();
+        AccessPoint accessPoint = findAccessPoint(spec);
+        if (accessPoint != null) {
+            scheduleAssociation(networkId, spec, accessPoint, associationDelayMillis);
+        }
+        // out of range: the supplicant keeps looking and nothing is broadcast
+        return true;
+    }
+
+    @Override
+    public void removeNetwork(int networkId) {
+        serviceCalls++;
+        configurations.remove(networkId);
+        if (networkId == connectedNetworkId) {
+            disconnect();
+        }
+    }
+
+    @Override
+    public boolean isNetworkRequestSupported() {
+        return networkRequests;
+    }
+
+    @Override
+    public void requestNetwork(NetworkSpec spec, long timeoutMillis) {
+        serviceCalls++;
+        releaseNetworkRequest();
+        final AccessPoint accessPoint = findAccessPoint(spec);
+        if (accessPoint == null || !acceptsCredentials(spec, accessPoint) || random.nextDouble() < authFailureRate) {
+            if (accessPoint != null) {
+                authFailures++;
+            }
+            // the system keeps looking until the request times out
+            requestStep = clock.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    requestStep = null;
+                    deliver(LinkEvent.UNAVAILABLE, callbackDelayMillis);
+                }
+            }, timeoutMillis);
+            return;
+        }
+        long now = clock.now();
+        long delay = 0;
+        boolean approved = spec.getBssid() != null && approvedBssids.contains(spec.getBssid());
+        if (!approved || lastScanTime < 0 || now - lastScanTime > REQUEST_SCAN_MAX_AGE_MILLIS) {
+            delay += scanDelayMillis + random.nextInt(scanJitterMillis + 1);
+            if (!approved) {
+                delay += requestApprovalMillis;
+            }
+        }
+        delay += associationDelayMillis + handshakeDelayMillis;
+        while (random.nextDouble() < flapRate) {
+            // the callback only reports the network once the link holds
+            flaps++;
+            delay += flapRecoveryMillis + associationDelayMillis + handshakeDelayMillis;
+        }
+        delay += dhcpDelayMillis;
+        requestStep = clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                requestStep = null;
+                approvedBssids.add(accessPoint.getBssid());
+                connectedNetworkId = -1;
+                connectedAccessPoint = accessPoint;
+                connectedByRequest = true;
+                // a requested network has no internet capability, the system never validates it
+                cancelValidation();
+                validated = false;
+                deliver(LinkEvent.NETWORK_CONNECTED, callbackDelayMillis);
+            }
+        }, delay);
+    }
+
+    @Override
+    public void releaseNetworkRequest() {
+        serviceCalls++;
+        cancelRequestStep();
+        if (connectedByRequest) {
+            cancelValidation();
+            connectedAccessPoint = null;
+            connectedByRequest = false;
+        }
+    }
+
+    @Override
+    public void requestScan(ScanListener listener, long maxCacheAgeMillis, long prewarmMaxAgeMillis) {
+        long now = clock.now();
+        if (prewarmScanTime >= 0 && prewarmMaxAgeMillis > 0 && now - prewarmScanTime <= prewarmMaxAgeMillis) {
+            scansServedFromPrewarm++;
+            listener.onScanResults(accessPoints, true);
+            return;
+        }
+        if (scanInFlight) {
+            pendingScans.add(listener);
+            return;
+        }
+        if (scanBudget.tryAcquire(now)) {
+            pendingScans.add(listener);
+            startScan();
+            return;
+        }
+        scansThrottled++;
+        if (lastScanTime >= 0 && maxCacheAgeMillis > 0 && now - lastScanTime <= maxCacheAgeMillis) {
+            scansServedFromCache++;
+            listener.onScanResults(accessPoints, true);
+            return;
+        }
+        // wait for the next scan the system runs on its own
+        pendingScans.add(listener);
+        scheduleSystemScan();
+    }
+
+    @Override
+    public void prewarmScan(long freshnessMillis) {
+        long now = clock.now();
+        if (prewarmScanTime >= 0 && now - prewarmScanTime <= freshnessMillis) {
+            return;
+        }
+        prewarmPending = true;
+        if (scanInFlight) {
+            return;
+        }
+        if (scanBudget.tryAcquire(now)) {
+            scansPrewarmed++;
+            startScan();
+            return;
+        }
+        scansThrottled++;
+        // the next system scan fills the window
+        scheduleSystemScan();
+    }
+
+    private void startScan() {
+        scansStarted++;
+        scanInFlight = true;
+        clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                scanInFlight = false;
+                deliverScanResults();
+            }
+        }, scanDelayMillis + random.nextInt(scanJitterMillis + 1));
+    }
+
+    private void scheduleSystemScan() {
+        if (!systemScanScheduled) {
+            systemScanScheduled = true;
+            long now = clock.now();
+            clock.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    systemScanScheduled = false;
+                    deliverScanResults();
+                }
+            }, systemScanIntervalMillis - now % systemScanIntervalMillis);
+        }
+    }
+
+    @Override
+    public void cancelScan(ScanListener listener) {
+        pendingScans.remove(listener);
+    }
+
+    @Override
+    public void addLinkListener(LinkListener listener) {
+        linkListeners.add(listener);
+    }
+
+    @Override
+    public void removeLinkListener(LinkListener listener) {
+        linkListeners.remove(listener);
+    }
+
+    private void deliverScanResults() {
+        lastScanTime = clock.now();
+        if (prewarmPending) {
+            prewarmPending = false;
+            prewarmScanTime = lastScanTime;
+        }
+        if (pendingScans.isEmpty()) {
+            return;
+        }
+        List<ScanListener> listeners = new ArrayList<>(pendingScans);
+        pendingScans.clear();
+        for (ScanListener listener : listeners) {
+            listener.onScanResults(accessPoints, false);
+        }
+    }
+
+    /**
+     * @return the access point the configuration associates with: the pinned one, otherwise the
+     * strongest with the SSID; null if none is in range
+     */
+    private AccessPoint findAccessPoint(NetworkSpec spec) {
+        AccessPoint best = null;
+        for (AccessPoint accessPoint : accessPoints) {
+            if (!accessPoint.hasSsid(spec.getSsid())) {
+                continue;
+            }
+            if (spec.getBssid() != null) {
+                if (spec.getBssid().equals(accessPoint.getBssid())) {
+                    return accessPoint;
+                }
+            } else if (best == null || accessPoint.getLevel() > best.getLevel()) {
+                best = accessPoint;
+            }
+        }
+        return best;
+    }
+
+    private boolean acceptsCredentials(NetworkSpec spec, AccessPoint accessPoint) {
+        SecurityType actual = Capabilities.getSecurityType(Capabilities.parse(accessPoint.getCapabilities()));
+        if (actual != spec.getSecurityType()) {
+            return false;
+        }
+        return actual == SecurityType.OPEN || spec.getPassword() != null
+                && spec.getPassword().equals(passwords.get(accessPoint.getBssid()));
+    }
+
+    private void scheduleAssociation(final int networkId, final NetworkSpec spec, final AccessPoint accessPoint,
+                                     long delayMillis) {
+        linkStep = clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                dispatch(LinkEvent.ASSOCIATING);
+                linkStep = clock.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        handshake(networkId, spec, accessPoint);
+                    }
+                }, handshakeDelayMillis);
+            }
+        }, delayMillis);
+    }
+
+    private void handshake(final int networkId, NetworkSpec spec, final AccessPoint accessPoint) {
+        linkStep = null;
+        dispatch(LinkEvent.FOUR_WAY_HANDSHAKE);
+        if (!acceptsCredentials(spec, accessPoint) || random.nextDouble() < authFailureRate) {
+            authFailures++;
+            dispatch(LinkEvent.AUTH_FAILED);
+            return;
+        }
+        dispatch(LinkEvent.COMPLETED);
+        if (random.nextDouble() < flapRate) {
+            // the link drops before DHCP finishes and the supplicant associates again
+            flaps++;
+            dispatch(LinkEvent.OTHER);
+            scheduleAssociation(networkId, spec, accessPoint, flapRecoveryMillis);
+            return;
+        }
+        linkStep = clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                linkStep = null;
+                connectedNetworkId = networkId;
+                connectedAccessPoint = accessPoint;
+                connectedByRequest = false;
+                dispatch(LinkEvent.NETWORK_CONNECTED);
+                scheduleValidation(accessPoint);
+            }
+        }, dhcpDelayMillis);
+    }
+
+    /**
+     * The system probes a network once it is connected and reports it validated, unless a captive
+     * portal answers
+     */
+    private void scheduleValidation(AccessPoint accessPoint) {
+        cancelValidation();
+        if (captivePortals.contains(accessPoint.getSsid())) {
+            return;
+        }
+        validationStep = clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                validationStep = null;
+                validated = true;
+                deliver(LinkEvent.VALIDATED, callbackDelayMillis);
+            }
+        }, validationDelayMillis);
+    }
+
+    private void cancelValidation() {
+        if (validationStep != null) {
+            validationStep.cancel();
+            validationStep = null;
+        }
+        validated = false;
+    }
+
+    private void cancelLinkStep() {
+        if (linkStep != null) {
+            linkStep.cancel();
+            linkStep = null;
+        }
+    }
+
+    private void cancelRequestStep() {
+        if (requestStep != null) {
+            requestStep.cancel();
+            requestStep = null;
+        }
+    }
+
+    @Override
+    public void probe(ReachabilityProbe probe, final ProbeListener listener) {
+        final ProbeResult result;
+        if (connectedAccessPoint == null || random.nextDouble() < probeFailureRate) {
+            result = new ProbeResult(ProbeStatus.UNREACHABLE, -1, -1, -1, null);
+        } else if (captivePortals.contains(connectedAccessPoint.getSsid())) {
+            result = new ProbeResult(ProbeStatus.CAPTIVE_PORTAL, 302, probeRttMillis, probeRttMillis,
+                    "http://portal.example/login");
+        } else {
+            result = new ProbeResult(ProbeStatus.REACHABLE, probe.getExpectedResponseCode(), probeRttMillis,
+                    probeRttMillis, null);
+        }
+        clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProbeResult(result);
+            }
+        }, 2 * probeRttMillis);
+    }
+
+    /**
+     * Broadcast a link change of a configured network
+     */
+    private void dispatch(LinkEvent event) {
+        deliver(event, broadcastDelayMillis);
+    }
+
+    private void deliver(final LinkEvent event, long delayMillis) {
+        clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // listeners remove themselves while the event is dispatched
+                for (LinkListener listener : linkListeners) {
+                    listener.onLinkEvent(event);
+                }
+            }
+        }, delayMillis);
+    }
+
+    /**
+     * Describes the simulated environment and the timing of the wifi stack
+     */
+    public static final class Builder {
+
+        private final List<AccessPoint> accessPoints = new ArrayList<>();
+        private final Map<String, String> passwords = new HashMap<>();
+        private long scanDelayMillis = 2500;
+        private int scanJitterMillis = 1000;
+        private long systemScanIntervalMillis = 60 * 1000;
+        private int scanBudget = 4;
+        private long scanWindowMillis = 2 * 60 * 1000;
+        private long associationDelayMillis = 150;
+        private long handshakeDelayMillis = 100;
+        private long dhcpDelayMillis = 400;
+        private double authFailureRate;
+        private double flapRate;
+        private long flapRecoveryMillis = 1000;
+        private boolean networkRequests;
+        private boolean redactBssid;
+        private long broadcastDelayMillis = 30;
+        private long callbackDelayMillis = 5;
+        private long requestApprovalMillis = 3000;
+        private final Set<String> captivePortals = new HashSet<>();
+        private long probeRttMillis = 40;
+        private double probeFailureRate;
+        private long validationDelayMillis = 300;
+        private long seed = 1;
+
+        /**
+         * Put an access point in range
+         *
+         * @param accessPoint the access point as a scan reports it
+         * @param password    password it accepts, null for open networks
+         * @return this builder
+         */
+        public Builder addAccessPoint(AccessPoint accessPoint, String password) {
+            accessPoints.add(accessPoint);
+            passwords.put(accessPoint.getBssid(), password);
+            return this;
+        }
+
+        /**
+         * @param delayMillis minimum duration of a scan, 2500 by default
+         * @param jitterMillis random time added to each scan, 1000 by default
+         * @return this builder
+         */
+        public Builder setScanDelayMillis(long delayMillis, int jitterMillis) {
+            this.scanDelayMillis = delayMillis;
+            this.scanJitterMillis = jitterMillis;
+            return this;
+        }
+
+        /**
+         * @param budget       scans allowed per window, 4 by default as on Android 9
+         * @param windowMillis length of the window, 2 minutes by default
+         * @return this builder
+         */
+        public Builder setScanBudget(int budget, long windowMillis) {
+            this.scanBudget = budget;
+            this.scanWindowMillis = windowMillis;
+            return this;
+        }
+
+        /**
+         * @param intervalMillis period of the scans the system runs on its own, 60 seconds by default
+         * @return this builder
+         */
+        public Builder setSystemScanIntervalMillis(long intervalMillis) {
+            this.systemScanIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * @param associationMillis time to associate, 150 by default
+         * @param handshakeMillis   time of the 4-way handshake, 100 by default
+         * @param dhcpMillis        time to obtain an address, 400 by default
+         * @return this builder
+         */
+        public Builder setLinkDelays(long associationMillis, long handshakeMillis, long dhcpMillis) {
+            this.associationDelayMillis = associationMillis;
+            this.handshakeDelayMillis = handshakeMillis;
+            this.dhcpDelayMillis = dhcpMillis;
+            return this;
+        }
+
+        /**
+         * @param rate probability that a handshake with the right password fails anyway, 0 by default
+         * @return this builder
+         */
+        public Builder setAuthFailureRate(double rate) {
+            this.authFailureRate = rate;
+            return this;
+        }
+
+        /**
+         * @param rate           probability that the link drops after the handshake, 0 by default
+         * @param recoveryMillis time until the supplicant associates again, 1000 by default
+         * @return this builder
+         */
+        public Builder setFlapRate(double rate, long recoveryMillis) {
+            this.flapRate = rate;
+            this.flapRecoveryMillis = recoveryMillis;
+            return this;
+        }
+
+        /**
+         * @param supported true to join networks with network requests as on Android 10, false by
+         *                  default
+         * @return this builder
+         */
+        public Builder setNetworkRequests(boolean supported) {
+            this.networkRequests = supported;
+            return this;
+        }
+
+        /**
+         * @param redact true to report the connected access point as {@link MacAddresses#REDACTED},
+         *               as Android does without the location permission, false by default
+         * @return this builder
+         */
+        public Builder setRedactBssid(boolean redact) {
+            this.redactBssid = redact;
+            return this;
+        }
+
+        /**
+         * @param broadcastMillis delay of a link change broadcast, 30 by default
+         * @param callbackMillis  delay of a network request callback, 5 by default
+         * @return this builder
+         */
+        public Builder setEventDelays(long broadcastMillis, long callbackMillis) {
+            this.broadcastDelayMillis = broadcastMillis;
+            this.callbackDelayMillis = callbackMillis;
+            return this;
+        }
+
+        /**
+         * @param approvalMillis time the user takes to approve a network request for an access
+         *                       point not approved before, 3000 by default
+         * @return this builder
+         */
+        public Builder setRequestApprovalMillis(long approvalMillis) {
+            this.requestApprovalMillis = approvalMillis;
+            return this;
+        }
+
+        /**
+         * @param ssid SSID of a network whose reachability probes a captive portal answers
+         * @return this builder
+         */
+        public Builder addCaptivePortal(String ssid) {
+            captivePortals.add(ssid);
+            return this;
+        }
+
+        /**
+         * @param rttMillis   round trip to the probe endpoint, 40 by default
+         * @param failureRate probability that a probe gets no answer although the network is
+         *                    connected, 0 by default
+         * @return this builder
+         */
+        public Builder setProbe(long rttMillis, double failureRate) {
+            this.probeRttMillis = rttMillis;
+            this.probeFailureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * @param delayMillis time from connecting until the system validated the network, 300
+         *                    by default
+         * @return this builder
+         */
+        public Builder setValidationDelay(long delayMillis) {
+            this.validationDelayMillis = delayMillis;
+            return this;
+        }
+
+        /**
+         * @param seed seed of the random source, 1 by default
+         * @return this builder
+         */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param clock clock the platform runs on
+         * @return the platform
+         */
+        public SimulatedWifiPlatform build(VirtualClock clock) {
+            return new SimulatedWifiPlatform(this, clock);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.zoltanersek.androidwifiactivity.sim;
+
+import com.zoltanersek.androidwifiactivity.core.EngineLoop;
+
+import java.util.PriorityQueue;
+
+/**
+ * {@link EngineLoop} on a virtual clock. Tasks run on the calling thread when {@link #runUntilIdle()}
+ * is called; the clock jumps straight to the next task, so a connection attempt that takes seconds
+ * of virtual time runs in microseconds and always in the same order.
+ */
+public final class VirtualClock implements EngineLoop {
+
+    /**
+     * Wall clock time at virtual time zero
+     */
+    private static final long EPOCH_MILLIS = 1500000000000L;
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private long now;
+    private long sequence;
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return EPOCH_MILLIS + now;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        schedule(task, 0);
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delayMillis) {
+        Task scheduled = new Task(task, now + Math.max(0, delayMillis), sequence++);
+        queue.add(scheduled);
+        return scheduled;
+    }
+
+    /**
+     * Move the clock forward without running anything, for idle time between attempts. Tasks due
+     * before the new time run at the new time.
+     *
+     * @param millis time to skip
+     */
+    public void advance(long millis) {
+        now += millis;
+    }
+
+    /**
+     * Run tasks in time order until none is left. Cancelled tasks are dropped without moving the
+     * clock.
+     *
+     * @return number of tasks run
+     */
+    public int runUntilIdle() {
+        int count = 0;
+        Task task;
+        while ((task = queue.poll()) != null) {
+            if (task.cancelled) {
+                continue;
+            }
+            now = Math.max(now, task.time);
+            task.runnable.run();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Run the tasks due within the next {@code millis} in time order, then move the clock to the
+     * end of that time, for stopping an attempt part way
+     *
+     * @param millis time to run
+     * @return number of tasks run
+     */
+    public int runFor(long millis) {
+        long end = now + millis;
+        int count = 0;
+        Task task;
+        while ((task = queue.peek()) != null && task.time <= end) {
+            queue.poll();
+            if (task.cancelled) {
+                continue;
+            }
+            now = Math.max(now, task.time);
+            task.runnable.run();
+            count++;
+        }
+        now = Math.max(now, end);
+        return count;
+    }
+
+    /**
+     * @return number of tasks waiting, including cancelled ones
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private static final class Task implements Cancellable, Comparable<Task> {
+
+        private final Runnable runnable;
+        private final long time;
+        private final long sequence;
+        private boolean cancelled;
+
+        Task(Runnable runnable, long time, long sequence) {
+            this.runnable = runnable;
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}